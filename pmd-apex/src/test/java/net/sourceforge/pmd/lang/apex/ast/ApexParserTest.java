@@ -11,14 +11,17 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import net.sourceforge.pmd.lang.apex.ApexParserOptions;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.xpath.internal.FileNameXPathFunction;
 
@@ -147,6 +150,50 @@ public class ApexParserTest extends ApexParserTestBase {
         assertEquals("/** Comment on m1 */", ((ASTFormalComment) comment2).getToken());
     }
 
+    @Test
+    public void ignoresCommentMarkersInStrings() {
+
+        String code = "public class SimpleClass {\n" // line 1
+            + "    String a = 'it\\'s not // a comment';\n" // line 2
+            + "    String b = '/** not a comment */';\n" // line 3
+            + "    /** Comment on m1 */\n" // line 4
+            + "    public void method1() {\n" // line 5
+            + "    }\n" // line 6
+            + "}\n"; // line 7
+
+        ApexNode<Compilation> root = parse(code);
+
+        List<ASTFormalComment> comments = root.findDescendantsOfType(ASTFormalComment.class);
+        assertEquals(1, comments.size());
+        assertEquals("/** Comment on m1 */", comments.get(0).getToken());
+        assertPosition(comments.get(0), 4, 5, 4, 24);
+    }
+
+    @Test
+    public void parsesCommentsWithWindowsLineEndings() {
+
+        String code = "public class SimpleClass {\r\n" // line 1
+            + "    Integer a = 1; // NOPMD because\r\n" // line 2
+            + "    /** Comment on m1 */\r\n" // line 3
+            + "    public void method1() { // NOPMD\r\n" // line 4
+            + "    }\r\n" // line 5
+            + "}\r\n"; // line 6
+
+        ApexParserOptions options = new ApexParserOptions();
+        options.setSuppressMarker("NOPMD");
+        ApexParser parser = new ApexParser(options);
+        ApexNode<Compilation> root = parser.parse(new StringReader(code));
+
+        Map<Integer, String> suppressMap = parser.getSuppressMap();
+        assertEquals(2, suppressMap.size());
+        assertEquals("because", suppressMap.get(2));
+        assertEquals("", suppressMap.get(4));
+
+        List<ASTFormalComment> comments = root.findDescendantsOfType(ASTFormalComment.class);
+        assertEquals(1, comments.size());
+        assertPosition(comments.get(0), 3, 5, 3, 24);
+    }
+
     @Test
     public void parsesRealWorldClasses() throws Exception {
         File directory = new File("src/test/resources");
@@ -17,9 +17,12 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -46,6 +49,7 @@ import net.sourceforge.pmd.processor.AbstractPMDProcessor;
 import net.sourceforge.pmd.processor.MonoThreadProcessor;
 import net.sourceforge.pmd.processor.MultiThreadProcessor;
 import net.sourceforge.pmd.renderers.Renderer;
+import net.sourceforge.pmd.stat.Metric;
 import net.sourceforge.pmd.util.ClasspathClassLoader;
 import net.sourceforge.pmd.util.FileUtil;
 import net.sourceforge.pmd.util.IOUtil;
@@ -54,6 +58,7 @@ import net.sourceforge.pmd.util.database.DBURI;
 import net.sourceforge.pmd.util.database.SourceObject;
 import net.sourceforge.pmd.util.datasource.DataSource;
 import net.sourceforge.pmd.util.datasource.ReaderDataSource;
+import net.sourceforge.pmd.util.datasource.internal.AbstractDataSource;
 import net.sourceforge.pmd.util.log.ScopedLogHandlersManager;
 
 /**
@@ -226,8 +231,14 @@ public class PMD {
     public static int doPMD(PMDConfiguration configuration) {
 
         // Load the RuleSets
-        final RuleSetFactory ruleSetFactory = RuleSetLoader.fromPmdConfig(configuration).toFactory();
-        final RuleSets ruleSets = RulesetsFactoryUtils.getRuleSetsWithBenchmark(configuration.getRuleSets(), ruleSetFactory);
+        final RuleSets ruleSets;
+        if (configuration.getRuleSetSnapshot() != null) {
+            ruleSets = RulesetsFactoryUtils.getRuleSetsWithBenchmark(configuration.getRuleSets(),
+                    RuleSetLoader.fromPmdConfig(configuration), configuration.getRuleSetSnapshot());
+        } else {
+            final RuleSetFactory ruleSetFactory = RuleSetLoader.fromPmdConfig(configuration).toFactory();
+            ruleSets = RulesetsFactoryUtils.getRuleSetsWithBenchmark(configuration.getRuleSets(), ruleSetFactory);
+        }
         if (ruleSets == null) {
             return PMDCommandLineInterface.NO_ERRORS_STATUS;
         }
@@ -244,15 +255,16 @@ public class PMD {
                 renderer.start();
             }
 
-            Report report;
+            // the violations are only counted, the renderer gets them file by file
+            final ViolationCounter violationCounter = new ViolationCounter();
             try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.FILE_PROCESSING)) {
-                report = processFiles(configuration, Arrays.asList(ruleSets.getAllRuleSets()), files, renderers);
+                processFiles(configuration, Arrays.asList(ruleSets.getAllRuleSets()), files, renderers, violationCounter);
             }
 
             try (TimedOperation rto = TimeTracker.startOperation(TimedOperationCategory.REPORTING)) {
                 renderer.end();
                 renderer.flush();
-                return report.getViolations().size();
+                return violationCounter.count.get();
             }
         } catch (Exception e) {
             String message = e.getMessage();
@@ -364,10 +376,48 @@ public class PMD {
         return report;
     }
 
+    /**
+     * Runs PMD without accumulating the violations in a global report. The
+     * report of each file is only given to the renderers and the listener.
+     */
+    private static void processFiles(final PMDConfiguration configuration,
+                                     final List<RuleSet> rulesets,
+                                     final Collection<? extends DataSource> files,
+                                     final List<Renderer> renderers,
+                                     final ThreadSafeReportListener listener) {
+        encourageToUseIncrementalAnalysis(configuration);
+        Report report = new Report();
+        report.addListener(configuration.getAnalysisCache());
+        report.addListener(listener);
+
+        List<DataSource> sortedFiles = new ArrayList<>(files);
+        sortFiles(configuration, sortedFiles);
+
+        RuleContext ctx = new RuleContext();
+        ctx.setReport(report);
+        AbstractPMDProcessor processor = newFileProcessor(configuration);
+        processor.setMergeFileReports(false);
+        processor.processFiles(new RuleSets(rulesets), sortedFiles, ctx, renderers);
+        configuration.getAnalysisCache().persist();
+    }
+
     private static void sortFiles(final PMDConfiguration configuration, final List<DataSource> files) {
         if (configuration.isStressTest()) {
             // randomize processing order
             Collections.shuffle(files);
+        } else if (configuration.isLargestFilesFirst() && configuration.getThreads() > 0) {
+            // process the largest files first, so that they don't end up
+            // being analyzed last while the other threads are idle
+            final Map<DataSource, Long> sizes = new IdentityHashMap<>();
+            for (final DataSource file : files) {
+                sizes.put(file, file instanceof AbstractDataSource ? ((AbstractDataSource) file).getSizeHint() : -1L);
+            }
+            Collections.sort(files, new Comparator<DataSource>() {
+                @Override
+                public int compare(DataSource left, DataSource right) {
+                    return Long.compare(sizes.get(right), sizes.get(left));
+                }
+            });
         } else {
             final boolean useShortNames = configuration.isReportShortNames();
             final String inputPaths = configuration.getInputPaths();
@@ -656,4 +706,18 @@ public class PMD {
             return true;
         }
     }
+
+    private static class ViolationCounter implements ThreadSafeReportListener {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void ruleViolationAdded(RuleViolation ruleViolation) {
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void metricAdded(Metric metric) {
+            // ignored
+        }
+    }
 }
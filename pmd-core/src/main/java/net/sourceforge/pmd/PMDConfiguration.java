@@ -10,8 +10,14 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 
+import net.sourceforge.pmd.annotation.Experimental;
+import net.sourceforge.pmd.cache.AbstractAnalysisCache;
 import net.sourceforge.pmd.cache.AnalysisCache;
+import net.sourceforge.pmd.cache.ContentAddressedAnalysisCache;
+import net.sourceforge.pmd.cache.DirectoryResultStore;
 import net.sourceforge.pmd.cache.FileAnalysisCache;
+import net.sourceforge.pmd.cache.HttpResultStore;
+import net.sourceforge.pmd.cache.MappedFileAnalysisCache;
 import net.sourceforge.pmd.cache.NoopAnalysisCache;
 import net.sourceforge.pmd.cli.PmdParametersParseResult;
 import net.sourceforge.pmd.lang.LanguageRegistry;
@@ -80,6 +86,8 @@ import net.sourceforge.pmd.util.ClasspathClassLoader;
  * as randomizing the order of file processing. {@link #isStressTest()}</li>
  * <li>An indicator of whether PMD should log benchmarking information.
  * {@link #isBenchmark()}</li>
+ * <li>An indicator of whether PMD should schedule the largest files first,
+ * on a work-stealing pool. {@link #isLargestFilesFirst()}</li>
  * </ul>
  */
 public class PMDConfiguration extends AbstractConfiguration {
@@ -87,11 +95,13 @@ public class PMDConfiguration extends AbstractConfiguration {
     private String suppressMarker = PMD.SUPPRESS_MARKER;
     private int threads = Runtime.getRuntime().availableProcessors();
     private ClassLoader classLoader = getClass().getClassLoader();
+    private File classpathIndexFile;
     private LanguageVersionDiscoverer languageVersionDiscoverer = new LanguageVersionDiscoverer();
     private LanguageVersion forceLanguageVersion;
 
     // Rule and source file options
     private String ruleSets;
+    private File ruleSetSnapshot;
     private RulePriority minimumPriority = RulePriority.LOW;
     private String inputPaths;
     private String inputUri;
@@ -109,8 +119,11 @@ public class PMDConfiguration extends AbstractConfiguration {
 
     private boolean stressTest;
     private boolean benchmark;
+    private boolean largestFilesFirst;
     private AnalysisCache analysisCache = new NoopAnalysisCache();
     private boolean ignoreIncrementalAnalysis;
+    private boolean fastAnalysisCacheChecksum;
+    private boolean mappedAnalysisCache;
 
     /**
      * Get the suppress marker. This is the source level marker used to indicate
@@ -198,6 +211,16 @@ public class PMDConfiguration extends AbstractConfiguration {
         }
         if (classpath != null) {
             classLoader = new ClasspathClassLoader(classpath, classLoader);
+            configureClasspathIndex();
+        }
+    }
+
+    /**
+     * Stores the index of the auxclasspath next to the analysis cache, if any.
+     */
+    private void configureClasspathIndex() {
+        if (classLoader instanceof ClasspathClassLoader) {
+            ((ClasspathClassLoader) classLoader).setIndexFile(classpathIndexFile);
         }
     }
 
@@ -307,6 +330,36 @@ public class PMDConfiguration extends AbstractConfiguration {
         this.ruleSets = ruleSets;
     }
 
+    /**
+     * Get the file in which the resolved rulesets are recorded, to be
+     * loaded faster next time. Null if the rulesets are always loaded
+     * from their XML.
+     *
+     * @return The ruleset snapshot file, may be null
+     *
+     * @see RuleSetLoader#loadFromResources(java.util.Collection, File)
+     * @since 6.42.0
+     */
+    @Experimental
+    public File getRuleSetSnapshot() {
+        return ruleSetSnapshot;
+    }
+
+    /**
+     * Set the file in which the resolved rulesets are recorded. A value
+     * of {@code null} loads the rulesets from their XML, every time.
+     *
+     * @param ruleSetSnapshotLocation
+     *            the path of the snapshot file, may be null
+     *
+     * @see RuleSetLoader#loadFromResources(java.util.Collection, File)
+     * @since 6.42.0
+     */
+    @Experimental
+    public void setRuleSetSnapshotLocation(String ruleSetSnapshotLocation) {
+        this.ruleSetSnapshot = ruleSetSnapshotLocation == null ? null : new File(ruleSetSnapshotLocation);
+    }
+
     /**
      * Get the minimum priority threshold when loading Rules from RuleSets.
      *
@@ -569,6 +622,32 @@ public class PMDConfiguration extends AbstractConfiguration {
         this.benchmark = benchmark;
     }
 
+    /**
+     * Return whether files are scheduled largest first. If this value is
+     * <code>true</code> then PMD will process the files in descending order
+     * of their size, on a work-stealing thread pool, so that a few very large
+     * files don't end up being analyzed last while all other threads are idle.
+     * This has no effect if stress testing is enabled, or if PMD runs
+     * single-threaded.
+     *
+     * @return <code>true</code> if largest files are scheduled first,
+     *         <code>false</code> otherwise.
+     */
+    public boolean isLargestFilesFirst() {
+        return largestFilesFirst;
+    }
+
+    /**
+     * Set whether files are scheduled largest first.
+     *
+     * @param largestFilesFirst
+     *            Whether to schedule the largest files first.
+     * @see #isLargestFilesFirst()
+     */
+    public void setLargestFilesFirst(boolean largestFilesFirst) {
+        this.largestFilesFirst = largestFilesFirst;
+    }
+
     /**
      * Whether PMD should exit with status 4 (the default behavior, true) if
      * violations are found or just with 0 (to not break the build, e.g.).
@@ -645,12 +724,119 @@ public class PMDConfiguration extends AbstractConfiguration {
      * Sets the location of the analysis cache to be used. This will automatically configure
      * and appropriate AnalysisCache implementation.
      *
+     * <p>The cache file is a {@link FileAnalysisCache}, or a {@link MappedFileAnalysisCache}
+     * if {@link #setMappedAnalysisCache(boolean)} was enabled before.
+     *
+     * <p>The cache file also stores the index of the jars of the auxclasspath,
+     * which makes the lookups of classes faster, see {@link #prependClasspath(String)}.
+     *
      * @param cacheLocation The location of the analysis cache to be used.
+     *
+     * @see #setSharedAnalysisCacheLocation(String)
      */
     public void setAnalysisCacheLocation(final String cacheLocation) {
-        setAnalysisCache(cacheLocation == null
-                                 ? new NoopAnalysisCache()
-                                 : new FileAnalysisCache(new File(cacheLocation)));
+        classpathIndexFile = null;
+        if (cacheLocation == null) {
+            setAnalysisCache(new NoopAnalysisCache());
+        } else {
+            final AbstractAnalysisCache cache = mappedAnalysisCache
+                    ? new MappedFileAnalysisCache(new File(cacheLocation))
+                    : new FileAnalysisCache(new File(cacheLocation));
+            cache.setFastChecksum(fastAnalysisCacheChecksum);
+            setAnalysisCache(cache);
+            classpathIndexFile = new File(cacheLocation + ".auxclasspath");
+        }
+        configureClasspathIndex();
+    }
+
+    /**
+     * Sets the location of a {@link ContentAddressedAnalysisCache shared analysis cache},
+     * whose entries are addressed by the contents of the analyzed files, instead of
+     * a cache file. The location is either an HTTP(S) URL, under which the entries are
+     * read and written with {@code GET} and {@code PUT} requests, or the path of a directory,
+     * which is created if needed. This replaces the cache set with
+     * {@link #setAnalysisCacheLocation(String)}.
+     *
+     * <p>A directory also stores the index of the jars of the auxclasspath,
+     * which makes the lookups of classes faster, see {@link #prependClasspath(String)}.
+     *
+     * @param sharedCacheLocation The URL or the directory of the shared cache,
+     *                            null to disable the analysis cache
+     *
+     * @since 6.42.0
+     */
+    @Experimental
+    public void setSharedAnalysisCacheLocation(final String sharedCacheLocation) {
+        classpathIndexFile = null;
+        if (sharedCacheLocation == null) {
+            setAnalysisCache(new NoopAnalysisCache());
+        } else if (sharedCacheLocation.startsWith("http://") || sharedCacheLocation.startsWith("https://")) {
+            setAnalysisCache(new ContentAddressedAnalysisCache(new HttpResultStore(sharedCacheLocation), this));
+        } else {
+            setAnalysisCache(
+                    new ContentAddressedAnalysisCache(new DirectoryResultStore(new File(sharedCacheLocation)), this));
+            classpathIndexFile = new File(sharedCacheLocation, "auxclasspath.index");
+        }
+        configureClasspathIndex();
+    }
+
+    /**
+     * Returns whether the cache file is memory-mapped and indexed.
+     *
+     * @see #setMappedAnalysisCache(boolean)
+     * @since 6.42.0
+     */
+    @Experimental
+    public boolean isMappedAnalysisCache() {
+        return mappedAnalysisCache;
+    }
+
+    /**
+     * Sets whether the cache file is memory-mapped and indexed by file, see
+     * {@link MappedFileAnalysisCache}, so that only the results of the analyzed
+     * files are read. This applies to the cache file set afterwards with
+     * {@link #setAnalysisCacheLocation(String)}. A cache file written in the
+     * other format is replaced on the next analysis.
+     *
+     * @param mapped Whether to use a memory-mapped cache file
+     *
+     * @since 6.42.0
+     */
+    @Experimental
+    public void setMappedAnalysisCache(final boolean mapped) {
+        this.mappedAnalysisCache = mapped;
+    }
+
+    /**
+     * Returns whether the cache file computes the checksums of the changed
+     * files with xxHash, instead of Adler32.
+     *
+     * @see #setFastAnalysisCacheChecksum(boolean)
+     * @since 6.42.0
+     */
+    @Experimental
+    public boolean isFastAnalysisCacheChecksum() {
+        return fastAnalysisCacheChecksum;
+    }
+
+    /**
+     * Sets whether the cache file computes the checksums of the changed
+     * files with xxHash, instead of Adler32, which is faster on large files.
+     * The checksums of the files which changed since the previous analysis
+     * don't match anymore when this setting changes, so these files are
+     * analyzed again. This doesn't apply to a shared cache, whose entries
+     * are addressed by a hash of the contents of the files.
+     *
+     * @param fastChecksum Whether to use the fast checksum
+     *
+     * @since 6.42.0
+     */
+    @Experimental
+    public void setFastAnalysisCacheChecksum(final boolean fastChecksum) {
+        this.fastAnalysisCacheChecksum = fastChecksum;
+        if (analysisCache instanceof AbstractAnalysisCache) {
+            ((AbstractAnalysisCache) analysisCache).setFastChecksum(fastChecksum);
+        }
     }
 
 
@@ -20,6 +20,7 @@ import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 
+import net.sourceforge.pmd.annotation.ThreadSafe;
 import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.benchmark.TimedOperation;
 import net.sourceforge.pmd.benchmark.TimedOperationCategory;
@@ -29,6 +30,7 @@ import net.sourceforge.pmd.lang.LanguageVersion;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.rule.RuleReference;
 import net.sourceforge.pmd.lang.rule.XPathRule;
+import net.sourceforge.pmd.lang.rule.xpath.XPathVersion;
 import net.sourceforge.pmd.util.filter.Filter;
 import net.sourceforge.pmd.util.filter.Filters;
 
@@ -86,6 +88,14 @@ public class RuleSet implements ChecksumAware {
     }
 
     public RuleSet(final RuleSet rs) {
+        this(rs, false);
+    }
+
+    /**
+     * Copies the given ruleset. The rules are deep copied, unless they are
+     * thread-safe and {@code shareThreadSafeRules} is true.
+     */
+    private RuleSet(final RuleSet rs, final boolean shareThreadSafeRules) {
         checksum = rs.checksum;
         fileName = rs.fileName;
         name = rs.name;
@@ -93,7 +103,7 @@ public class RuleSet implements ChecksumAware {
 
         rules = new ArrayList<>(rs.rules.size());
         for (final Rule rule : rs.rules) {
-            rules.add(rule.deepCopy());
+            rules.add(shareThreadSafeRules && isThreadSafe(rule) ? rule : rule.deepCopy());
         }
 
         excludePatterns = rs.excludePatterns; // we can share immutable lists of immutable elements
@@ -101,6 +111,37 @@ public class RuleSet implements ChecksumAware {
         filter = rs.filter; // filters are immutable, can be shared
     }
 
+    /**
+     * Returns a copy of the given ruleset, to be used by another thread.
+     * The {@link ThreadSafe thread-safe} rules are shared with the original
+     * ruleset, the other ones are deep copied.
+     *
+     * @param original the original rule set to copy from
+     *
+     * @return the copy
+     */
+    /* package */ static RuleSet forkForThread(RuleSet original) {
+        return new RuleSet(original, true);
+    }
+
+    /**
+     * Returns true if the class of the given rule, or of the rule it
+     * references, is annotated with {@link ThreadSafe}. XPath rules are
+     * only thread-safe if they are evaluated by Saxon.
+     */
+    /* package */ static boolean isThreadSafe(Rule rule) {
+        Rule actualRule = rule;
+        while (actualRule instanceof RuleReference) {
+            actualRule = ((RuleReference) actualRule).getRule();
+        }
+        if (actualRule instanceof XPathRule) {
+            // the Jaxen expressions are not shared, see XPathRule
+            final XPathVersion version = ((XPathRule) actualRule).getVersion();
+            return version != null && version != XPathVersion.XPATH_1_0;
+        }
+        return actualRule.getClass().isAnnotationPresent(ThreadSafe.class);
+    }
+
     /**
      * Creates a new ruleset containing a single rule. The ruleset will
      * have default description, name, and null file name.
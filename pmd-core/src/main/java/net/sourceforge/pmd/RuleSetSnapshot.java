@@ -0,0 +1,631 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.Adler32;
+import java.util.zip.CheckedInputStream;
+
+import net.sourceforge.pmd.RuleSet.RuleSetBuilder;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.rule.RuleReference;
+import net.sourceforge.pmd.properties.PropertyDescriptor;
+import net.sourceforge.pmd.properties.PropertyDescriptorField;
+import net.sourceforge.pmd.properties.PropertyTypeId;
+import net.sourceforge.pmd.properties.builders.PropertyDescriptorExternalBuilder;
+import net.sourceforge.pmd.util.ResourceLoader;
+
+/**
+ * A binary snapshot of resolved rulesets, see {@link RuleSetLoader#loadFromResources(Collection, File)}.
+ *
+ * <p>The rules are recorded in their final state, so that reading them
+ * back doesn't parse any XML nor resolve any rule reference. They are
+ * rebuilt with the same setters, in the same order, as the XML loader
+ * does, so that the rules are indistinguishable from XML loaded ones.
+ * The snapshot is only used if it was written by the same PMD version,
+ * for the same rulesets and loader settings, and if none of the ruleset
+ * resources which were read to resolve the rulesets changed since. The
+ * resources are compared by their Adler32 checksum, like {@link RuleSet#getChecksum()}.
+ */
+final class RuleSetSnapshot {
+
+    private static final Logger LOG = Logger.getLogger(RuleSetSnapshot.class.getName());
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte CONCRETE_RULE = 0;
+    private static final byte RULE_REFERENCE = 1;
+
+    private RuleSetSnapshot() {
+        // utility class
+    }
+
+    /**
+     * Reads the rulesets of the snapshot file, or returns null if the file
+     * doesn't exist, can't be read, or is stale.
+     *
+     * @param file           The snapshot file
+     * @param key            The rulesets and loader settings the snapshot must be written for
+     * @param resourceLoader The resource loader of the rulesets and of the rule classes
+     */
+    static List<RuleSet> read(File file, String key, ResourceLoader resourceLoader) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION || !PMDVersion.VERSION.equals(in.readUTF())) {
+                LOG.info("Ruleset snapshot invalidated, PMD version changed.");
+                return null;
+            }
+            if (!key.equals(readString(in))) {
+                LOG.info("Ruleset snapshot invalidated, rulesets or settings changed.");
+                return null;
+            }
+            final int sourceCount = in.readInt();
+            for (int i = 0; i < sourceCount; i++) {
+                final String source = readString(in);
+                if (in.readLong() != getChecksum(source, resourceLoader)) {
+                    LOG.info("Ruleset snapshot invalidated, " + source + " changed.");
+                    return null;
+                }
+            }
+
+            final int ruleSetCount = in.readInt();
+            final List<RuleSet> ruleSets = new ArrayList<>(ruleSetCount);
+            for (int i = 0; i < ruleSetCount; i++) {
+                ruleSets.add(readRuleSet(in, resourceLoader));
+            }
+            return ruleSets;
+        } catch (RuleSetNotFoundException e) {
+            LOG.info("Ruleset snapshot invalidated, " + e.getMessage());
+            return null;
+        } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Cannot read the ruleset snapshot " + file + ", the rulesets are loaded again", e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the given rulesets to the snapshot file. The snapshot is written to
+     * a temporary file which is then moved in place, so that an interrupted run
+     * doesn't leave a truncated snapshot. Failures are only logged, as the
+     * rulesets are loaded from their resources next time.
+     *
+     * @param file           The snapshot file
+     * @param key            The rulesets and loader settings of the snapshot
+     * @param sources        The ruleset resources which were read to resolve the rulesets
+     * @param resourceLoader The resource loader of the rulesets
+     * @param ruleSets       The rulesets
+     */
+    static void write(File file, String key, Collection<String> sources, ResourceLoader resourceLoader,
+                      List<RuleSet> ruleSets) {
+        Path tempFile = null;
+        try {
+            final File directory = file.getAbsoluteFile().getParentFile();
+            tempFile = Files.createTempFile(directory.toPath(), file.getName(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tempFile.toFile())))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(PMDVersion.VERSION);
+                writeString(out, key);
+                out.writeInt(sources.size());
+                for (String source : sources) {
+                    writeString(out, source);
+                    out.writeLong(getChecksum(source, resourceLoader));
+                }
+
+                out.writeInt(ruleSets.size());
+                for (RuleSet ruleSet : ruleSets) {
+                    writeRuleSet(out, ruleSet);
+                }
+            }
+            try {
+                Files.move(tempFile, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuleSetNotFoundException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Cannot write the ruleset snapshot " + file, e);
+        } finally {
+            deleteTempFile(tempFile);
+        }
+    }
+
+    private static void deleteTempFile(Path tempFile) {
+        if (tempFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Cannot delete the incomplete ruleset snapshot " + tempFile, e);
+        }
+    }
+
+    private static long getChecksum(String source, ResourceLoader resourceLoader)
+            throws IOException, RuleSetNotFoundException {
+        try (CheckedInputStream in = new CheckedInputStream(resourceLoader.loadResourceAsStream(source), new Adler32())) {
+            final byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) {
+                // only the checksum is needed
+            }
+            return in.getChecksum().getValue();
+        }
+    }
+
+    private static void writeRuleSet(DataOutputStream out, RuleSet ruleSet) throws IOException {
+        out.writeLong(ruleSet.getChecksum());
+        writeString(out, ruleSet.getFileName());
+        writeString(out, ruleSet.getName());
+        writeString(out, ruleSet.getDescription());
+        writePatterns(out, ruleSet.getFileInclusions());
+        writePatterns(out, ruleSet.getFileExclusions());
+        out.writeInt(ruleSet.getRules().size());
+        for (Rule rule : ruleSet.getRules()) {
+            writeRule(out, rule);
+        }
+    }
+
+    private static RuleSet readRuleSet(DataInputStream in, ResourceLoader resourceLoader)
+            throws IOException, ReflectiveOperationException {
+        final RuleSetBuilder builder = new RuleSetBuilder(in.readLong())
+                .withFileName(readString(in))
+                .withName(readString(in))
+                .withDescription(readString(in))
+                .withFileInclusions(readPatterns(in))
+                .withFileExclusions(readPatterns(in));
+        final int ruleCount = in.readInt();
+        for (int i = 0; i < ruleCount; i++) {
+            builder.addRule(readRule(in, resourceLoader, new Overrides()));
+        }
+        return builder.build();
+    }
+
+    private static void writePatterns(DataOutputStream out, List<Pattern> patterns) throws IOException {
+        out.writeInt(patterns.size());
+        for (Pattern pattern : patterns) {
+            writeString(out, pattern.pattern());
+            out.writeInt(pattern.flags());
+        }
+    }
+
+    private static List<Pattern> readPatterns(DataInputStream in) throws IOException {
+        final int count = in.readInt();
+        final List<Pattern> patterns = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final String regex = readString(in);
+            patterns.add(Pattern.compile(regex, in.readInt()));
+        }
+        return patterns;
+    }
+
+    private static void writeRule(DataOutputStream out, Rule rule) throws IOException {
+        if (rule instanceof RuleReference) {
+            out.writeByte(RULE_REFERENCE);
+            writeRuleReference(out, (RuleReference) rule);
+        } else {
+            out.writeByte(CONCRETE_RULE);
+            writeConcreteRule(out, rule);
+        }
+    }
+
+    /**
+     * Reads a rule.
+     *
+     * @param overrides The attributes which are overridden by the rule references
+     *                  to this rule, see {@link Overrides}
+     */
+    private static Rule readRule(DataInputStream in, ResourceLoader resourceLoader, Overrides overrides)
+            throws IOException, ReflectiveOperationException {
+        final byte kind = in.readByte();
+        if (kind == RULE_REFERENCE) {
+            return readRuleReference(in, resourceLoader, overrides);
+        } else if (kind == CONCRETE_RULE) {
+            return readConcreteRule(in, resourceLoader, overrides);
+        }
+        throw new IOException("Unknown kind of rule " + kind);
+    }
+
+    private static void writeConcreteRule(DataOutputStream out, Rule rule) throws IOException {
+        writeString(out, rule.getClass().getName());
+        writeString(out, rule.getRuleClass());
+        writeString(out, rule.getName());
+        writeString(out, rule.getLanguage() == null ? null : rule.getLanguage().getTerseName());
+        writeString(out, rule.getMinimumLanguageVersion() == null ? null : rule.getMinimumLanguageVersion().getVersion());
+        writeString(out, rule.getMaximumLanguageVersion() == null ? null : rule.getMaximumLanguageVersion().getVersion());
+        writeString(out, rule.getSince());
+        writeString(out, rule.getMessage());
+        writeString(out, rule.getExternalInfoUrl());
+        out.writeBoolean(rule.isDeprecated());
+        writeString(out, rule.getDescription());
+        out.writeInt(rule.getPriority().getPriority());
+        writeStrings(out, rule.getExamples());
+        out.writeBoolean(rule.isDfa());
+        out.writeBoolean(rule.isMultifile());
+        out.writeBoolean(rule.isTypeResolution());
+
+        final List<PropertyDescriptor<?>> externalDescriptors = new ArrayList<>();
+        for (PropertyDescriptor<?> descriptor : rule.getPropertyDescriptors()) {
+            if (descriptor.isDefinedExternally()) {
+                externalDescriptors.add(descriptor);
+            }
+        }
+        out.writeInt(externalDescriptors.size());
+        for (PropertyDescriptor<?> descriptor : externalDescriptors) {
+            writeString(out, PropertyTypeId.typeIdFor(descriptor.type(), descriptor.isMultiValue()));
+            final Map<PropertyDescriptorField, String> attributes = descriptor.attributeValuesById();
+            out.writeInt(attributes.size());
+            for (Map.Entry<PropertyDescriptorField, String> attribute : attributes.entrySet()) {
+                writeString(out, attribute.getKey().attributeName());
+                writeString(out, attribute.getValue());
+            }
+        }
+        writePropertyValues(out, rule.getOverriddenPropertiesByPropertyDescriptor());
+        writeString(out, rule.getRuleSetName());
+    }
+
+    /**
+     * Rebuilds a rule like {@link net.sourceforge.pmd.rules.RuleFactory#buildRule(org.w3c.dom.Element)}.
+     */
+    private static Rule readConcreteRule(DataInputStream in, ResourceLoader resourceLoader, Overrides overrides)
+            throws IOException, ReflectiveOperationException {
+        final Rule rule = resourceLoader.loadRuleFromClassPath(readString(in));
+        rule.setRuleClass(readString(in));
+        rule.setName(readString(in));
+
+        final Language language = LanguageRegistry.findLanguageByTerseName(readString(in));
+        if (rule.getLanguage() == null) {
+            rule.setLanguage(language);
+        }
+        final String minimumLanguageVersion = readString(in);
+        if (minimumLanguageVersion != null) {
+            rule.setMinimumLanguageVersion(rule.getLanguage().getVersion(minimumLanguageVersion));
+        }
+        final String maximumLanguageVersion = readString(in);
+        if (maximumLanguageVersion != null) {
+            rule.setMaximumLanguageVersion(rule.getLanguage().getVersion(maximumLanguageVersion));
+        }
+
+        rule.setSince(readString(in));
+        final String message = readString(in);
+        rule.setMessage(overrides.message ? null : message);
+        final String externalInfoUrl = readString(in);
+        rule.setExternalInfoUrl(overrides.externalInfoUrl ? null : externalInfoUrl);
+        rule.setDeprecated(in.readBoolean());
+        final String description = readString(in);
+        rule.setDescription(overrides.description ? null : description);
+        final RulePriority priority = RulePriority.valueOf(in.readInt());
+        rule.setPriority(overrides.priority ? null : priority);
+
+        final List<String> examples = readStrings(in);
+        if (overrides.example != null && !examples.isEmpty()
+                && overrides.example.equals(examples.get(examples.size() - 1))) {
+            // the last example was added by a rule reference
+            examples.remove(examples.size() - 1);
+        }
+        for (String example : examples) {
+            rule.addExample(example);
+        }
+
+        if (in.readBoolean()) {
+            rule.setDfa(true);
+        }
+        if (in.readBoolean()) {
+            rule.setMultifile(true);
+        }
+        if (in.readBoolean()) {
+            rule.setTypeResolution(true);
+        }
+
+        final int descriptorCount = in.readInt();
+        for (int i = 0; i < descriptorCount; i++) {
+            final PropertyDescriptor<?> descriptor = readPropertyDescriptor(in);
+            if (rule.getPropertyDescriptor(descriptor.name()) == null) {
+                rule.definePropertyDescriptor(descriptor);
+            }
+        }
+        readPropertyValues(in, rule, overrides);
+        rule.setRuleSetName(readString(in));
+        return rule;
+    }
+
+    private static PropertyDescriptor<?> readPropertyDescriptor(DataInputStream in) throws IOException {
+        final String typeId = readString(in);
+        final PropertyDescriptorExternalBuilder<?> factory = PropertyTypeId.factoryFor(typeId);
+        if (factory == null) {
+            throw new IOException("No property descriptor factory for type: " + typeId);
+        }
+        final Map<PropertyDescriptorField, String> attributes = new HashMap<>();
+        final int attributeCount = in.readInt();
+        for (int i = 0; i < attributeCount; i++) {
+            final PropertyDescriptorField field = PropertyDescriptorField.getConstant(readString(in));
+            attributes.put(field, readString(in));
+        }
+        return factory.build(attributes);
+    }
+
+    private static void writePropertyValues(DataOutputStream out, Map<PropertyDescriptor<?>, Object> values)
+            throws IOException {
+        out.writeInt(values.size());
+        for (Map.Entry<PropertyDescriptor<?>, Object> entry : values.entrySet()) {
+            writeString(out, entry.getKey().name());
+            writeString(out, entry.getValue() == null ? null : asDelimitedString(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> String asDelimitedString(PropertyDescriptor<T> descriptor, Object value) {
+        return descriptor.asDelimitedString((T) value);
+    }
+
+    /**
+     * Sets the property values of the rule like
+     * {@link net.sourceforge.pmd.rules.RuleFactory} does. The overridden
+     * properties are set to null on the concrete rule, and skipped on the
+     * rule references.
+     */
+    private static void readPropertyValues(DataInputStream in, Rule rule, Overrides overrides) throws IOException {
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            final String name = readString(in);
+            final String value = readString(in);
+            final PropertyDescriptor<?> descriptor = rule.getPropertyDescriptor(name);
+            if (descriptor == null) {
+                throw new IOException("Cannot set non-existent property '" + name + "' on Rule " + rule.getName());
+            }
+            if (!overrides.properties.contains(name)) {
+                setProperty(rule, descriptor, value);
+            } else if (!(rule instanceof RuleReference)) {
+                rule.setProperty(descriptor, null);
+            }
+        }
+    }
+
+    private static <T> void setProperty(Rule rule, PropertyDescriptor<T> descriptor, String value) {
+        rule.setProperty(descriptor, value == null ? null : descriptor.valueFrom(value));
+    }
+
+    private static void writeRuleReference(DataOutputStream out, RuleReference reference) throws IOException {
+        final RuleSetReference ruleSetReference = reference.getRuleSetReference();
+        out.writeBoolean(ruleSetReference != null);
+        if (ruleSetReference != null) {
+            writeString(out, ruleSetReference.getRuleSetFileName());
+            out.writeBoolean(ruleSetReference.isAllRules());
+            writeStrings(out, ruleSetReference.getExcludes());
+        }
+
+        writeString(out, reference.getOverriddenName());
+        writeString(out, reference.getOverriddenMessage());
+        writeString(out, reference.getOverriddenExternalInfoUrl());
+        writeString(out, reference.getOverriddenDescription());
+        out.writeBoolean(reference.isDeprecated());
+        out.writeInt(reference.getOverriddenPriority() == null ? 0 : reference.getOverriddenPriority().getPriority());
+        final List<String> examples = reference.getOverriddenExamples();
+        writeString(out, examples == null || examples.isEmpty() ? null : examples.get(examples.size() - 1));
+        writeString(out, reference.getOverriddenMinimumLanguageVersion() == null
+                ? null : reference.getOverriddenMinimumLanguageVersion().getVersion());
+        writeString(out, reference.getOverriddenMaximumLanguageVersion() == null
+                ? null : reference.getOverriddenMaximumLanguageVersion().getVersion());
+        writePropertyValues(out, reference.getOverriddenPropertiesByPropertyDescriptor());
+
+        writeRule(out, reference.getRule());
+    }
+
+    /**
+     * Rebuilds a rule reference like {@link net.sourceforge.pmd.rules.RuleFactory#decorateRule(Rule, RuleSetReference, org.w3c.dom.Element)}.
+     * The setters of a rule reference also set the attributes of the referenced
+     * rule, but only record an override if the value is different. The attributes
+     * which are overridden are thus left unset on the referenced rules, and set
+     * through the outermost reference which overrides them.
+     */
+    private static Rule readRuleReference(DataInputStream in, ResourceLoader resourceLoader, Overrides overrides)
+            throws IOException, ReflectiveOperationException {
+        RuleSetReference ruleSetReference = null;
+        if (in.readBoolean()) {
+            final String fileName = readString(in);
+            final boolean allRules = in.readBoolean();
+            ruleSetReference = new RuleSetReference(fileName, allRules, new LinkedHashSet<>(readStrings(in)));
+        }
+
+        final String name = readString(in);
+        final String message = readString(in);
+        final String externalInfoUrl = readString(in);
+        final String description = readString(in);
+        final boolean deprecated = in.readBoolean();
+        final int priority = in.readInt();
+        final String example = readString(in);
+        final String minimumLanguageVersion = readString(in);
+        final String maximumLanguageVersion = readString(in);
+
+        // the property values are read before the referenced rule, but set after it
+        final int propertyCount = in.readInt();
+        final List<String> propertyNames = new ArrayList<>(propertyCount);
+        final List<String> propertyValues = new ArrayList<>(propertyCount);
+        for (int i = 0; i < propertyCount; i++) {
+            propertyNames.add(readString(in));
+            propertyValues.add(readString(in));
+        }
+
+        final Overrides referencedOverrides = overrides.with(message, externalInfoUrl, description,
+                priority != 0, example, propertyNames);
+        final Rule referencedRule = readRule(in, resourceLoader, referencedOverrides);
+
+        final RuleReference reference = new RuleReference(referencedRule, ruleSetReference);
+        if (deprecated) {
+            reference.setDeprecated(true);
+        }
+        if (name != null) {
+            // the name doesn't propagate to the referenced rule
+            reference.setName(name);
+        }
+        if (message != null && !overrides.message) {
+            reference.setMessage(message);
+        }
+        if (externalInfoUrl != null && !overrides.externalInfoUrl) {
+            reference.setExternalInfoUrl(externalInfoUrl);
+        }
+        if (description != null && !overrides.description) {
+            reference.setDescription(description);
+        }
+        if (example != null && overrides.example == null) {
+            reference.addExample(example);
+        }
+        if (priority != 0 && !overrides.priority) {
+            reference.setPriority(RulePriority.valueOf(priority));
+        }
+        if (minimumLanguageVersion != null) {
+            reference.setMinimumLanguageVersion(reference.getLanguage().getVersion(minimumLanguageVersion));
+        }
+        if (maximumLanguageVersion != null) {
+            reference.setMaximumLanguageVersion(reference.getLanguage().getVersion(maximumLanguageVersion));
+        }
+        for (int i = 0; i < propertyCount; i++) {
+            if (!overrides.properties.contains(propertyNames.get(i))) {
+                final PropertyDescriptor<?> descriptor = reference.getPropertyDescriptor(propertyNames.get(i));
+                if (descriptor == null) {
+                    throw new IOException("Cannot set non-existent property '" + propertyNames.get(i)
+                                              + "' on Rule " + reference.getName());
+                }
+                setProperty(reference, descriptor, propertyValues.get(i));
+            }
+        }
+        return reference;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+        } else {
+            // not writeUTF, which is limited to 64K
+            final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            writeString(out, string);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        final int count = in.readInt();
+        final List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+
+    /**
+     * The attributes of a rule which are overridden by the rule references to it.
+     * The value of an override is the same on all the references of a chain,
+     * as the setters of a reference set the attribute on the referenced rule.
+     * The overridden attributes, including the priority, are left unset (null)
+     * on the referenced rule, so that the setter of the reference always records
+     * its override.
+     */
+    private static final class Overrides {
+
+        private boolean message;
+        private boolean externalInfoUrl;
+        private boolean description;
+        private boolean priority;
+        private String example;
+        private final Set<String> properties = new HashSet<>();
+
+        Overrides with(String message, String externalInfoUrl, String description,
+                       boolean priority, String example, Collection<String> properties) {
+            final Overrides overrides = new Overrides();
+            overrides.message = this.message || message != null;
+            overrides.externalInfoUrl = this.externalInfoUrl || externalInfoUrl != null;
+            overrides.description = this.description || description != null;
+            overrides.priority = this.priority || priority;
+            overrides.example = this.example != null ? this.example : example;
+            overrides.properties.addAll(this.properties);
+            overrides.properties.addAll(properties);
+            return overrides;
+        }
+    }
+
+    /**
+     * A resource loader which records the names of the loaded resources.
+     * The rule set factories created by a factory share its resource loader,
+     * so that all the ruleset resources read to resolve the rulesets are recorded.
+     */
+    static final class RecordingResourceLoader extends ResourceLoader {
+
+        private final ResourceLoader delegate;
+        private final Set<String> loadedResources = new LinkedHashSet<>();
+
+        RecordingResourceLoader(ResourceLoader delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public InputStream loadResourceAsStream(String name) throws RuleSetNotFoundException {
+            final InputStream in = delegate.loadResourceAsStream(name);
+            loadedResources.add(name);
+            return in;
+        }
+
+        @Override
+        public InputStream loadClassPathResourceAsStream(String name) throws IOException {
+            return delegate.loadClassPathResourceAsStream(name);
+        }
+
+        @Override
+        public InputStream loadClassPathResourceAsStreamOrThrow(String name) throws RuleSetNotFoundException {
+            return delegate.loadClassPathResourceAsStreamOrThrow(name);
+        }
+
+        @Override
+        public Rule loadRuleFromClassPath(String clazz)
+                throws ClassNotFoundException, IllegalAccessException, InstantiationException {
+            return delegate.loadRuleFromClassPath(clazz);
+        }
+
+        Set<String> getLoadedResources() {
+            return loadedResources;
+        }
+    }
+}
@@ -53,6 +53,22 @@ public class RuleSets {
         }
     }
 
+    /**
+     * Returns a copy of these rulesets, to be used by another thread. The rules
+     * which are {@link net.sourceforge.pmd.annotation.ThreadSafe thread-safe}
+     * are shared with the copy, the other ones are deep copied as with
+     * {@link #RuleSets(RuleSets)}. The rule chain of the copy is its own.
+     *
+     * @return The copy
+     */
+    public RuleSets forkForThread() {
+        final RuleSets copy = new RuleSets();
+        for (final RuleSet rs : ruleSets) {
+            copy.addRuleSet(RuleSet.forkForThread(rs));
+        }
+        return copy;
+    }
+
     /**
      * Public constructor. Add the given rule set.
      *
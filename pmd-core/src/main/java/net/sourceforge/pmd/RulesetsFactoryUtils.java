@@ -4,6 +4,7 @@
 
 package net.sourceforge.pmd;
 
+import java.io.File;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -79,6 +80,39 @@ public final class RulesetsFactoryUtils {
         }
     }
 
+    /**
+     * See {@link #getRuleSetsWithBenchmark(String, RuleSetFactory)}. The
+     * rulesets are loaded through the given snapshot file, see
+     * {@link RuleSetLoader#loadFromResources(java.util.Collection, File)}.
+     *
+     * @param rulesets
+     *            the string with the rulesets to load
+     * @param loader
+     *            the ruleset loader
+     * @param snapshotFile
+     *            the ruleset snapshot file
+     * @return the rulesets
+     * @throws IllegalArgumentException
+     *             if rulesets is empty (means, no rules have been found) or if
+     *             a ruleset couldn't be found.
+     */
+    @InternalApi
+    static RuleSets getRuleSetsWithBenchmark(String rulesets, RuleSetLoader loader, File snapshotFile) {
+        try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.LOAD_RULES)) {
+            RuleSets ruleSets = new RuleSets(loader.loadWithSnapshot(RuleSetReferenceId.parse(rulesets), snapshotFile));
+            printRuleNamesInDebug(ruleSets);
+            if (ruleSets.ruleCount() == 0) {
+                String msg = "No rules found. Maybe you misspelled a rule name? (" + rulesets + ')';
+                LOG.log(Level.SEVERE, msg);
+                throw new IllegalArgumentException(msg);
+            }
+            return ruleSets;
+        } catch (RuleSetLoadException e) {
+            LOG.log(Level.SEVERE, "Ruleset not found", e);
+            throw new IllegalArgumentException(e);
+        }
+    }
+
     /**
      * @deprecated Use a {@link RuleSetLoader}
      */
@@ -17,6 +17,9 @@ import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.benchmark.TimedOperation;
 import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.cache.AbstractAnalysisCache;
+import net.sourceforge.pmd.cache.AnalysisCache;
+import net.sourceforge.pmd.internal.util.TextDocument;
 import net.sourceforge.pmd.lang.AbstractParser;
 import net.sourceforge.pmd.lang.Language;
 import net.sourceforge.pmd.lang.LanguageVersion;
@@ -24,8 +27,10 @@ import net.sourceforge.pmd.lang.LanguageVersionHandler;
 import net.sourceforge.pmd.lang.Parser;
 import net.sourceforge.pmd.lang.VisitorStarter;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.NodeIndex;
 import net.sourceforge.pmd.lang.ast.ParseException;
 import net.sourceforge.pmd.lang.xpath.Initializer;
+import net.sourceforge.pmd.util.datasource.DataSource;
 
 /**
  * Source code processor is internal.
@@ -87,6 +92,30 @@ public class SourceCodeProcessor {
      *             not be parsed, or other error is encountered.
      */
     public void processSourceCode(Reader sourceCode, RuleSets ruleSets, RuleContext ctx) throws PMDException {
+        processSourceCode(sourceCode, null, ruleSets, ctx);
+    }
+
+    /**
+     * Processes the data source against a rule set, like {@link #processSourceCode(Reader, RuleSets, RuleContext)}.
+     * The file is read at most once, with the configured source encoding:
+     * its contents are shared by the analysis cache and the parser.
+     *
+     * @param dataSource
+     *            The source to analyze.
+     * @param ruleSets
+     *            The collection of rules to process against the file.
+     * @param ctx
+     *            The context in which PMD is operating.
+     * @throws PMDException
+     *             if the source could not be read or parsed, or other error is
+     *             encountered.
+     */
+    public void processSourceCode(DataSource dataSource, RuleSets ruleSets, RuleContext ctx) throws PMDException {
+        processSourceCode(null, new TextDocument(dataSource, configuration.getSourceEncoding()), ruleSets, ctx);
+    }
+
+    private void processSourceCode(Reader sourceCode, TextDocument document, RuleSets ruleSets, RuleContext ctx)
+            throws PMDException {
         determineLanguage(ctx);
 
         // make sure custom XPath functions are initialized
@@ -94,16 +123,31 @@ public class SourceCodeProcessor {
 
         // Coarse check to see if any RuleSet applies to file, will need to do a finer RuleSet specific check later
         if (ruleSets.applies(ctx.getSourceCodeFile())) {
-            if (isCacheUpToDate(ctx)) {
+            if (isCacheUpToDate(ctx, document)) {
                 reportCachedRuleViolations(ctx);
             } else {
-                processSourceCodeWithoutCache(sourceCode, ruleSets, ctx);
+                Reader reader = sourceCode != null ? sourceCode : openReader(document, ctx);
+                processSourceCodeWithoutCache(reader, ruleSets, ctx);
             }
         }
     }
 
-    private boolean isCacheUpToDate(final RuleContext ctx) {
-        return configuration.getAnalysisCache().isUpToDate(ctx.getSourceCodeFile());
+    private boolean isCacheUpToDate(final RuleContext ctx, final TextDocument document) {
+        final AnalysisCache cache = configuration.getAnalysisCache();
+        if (document != null && cache instanceof AbstractAnalysisCache) {
+            // the file is hashed from the document, which is then parsed
+            return ((AbstractAnalysisCache) cache).isUpToDate(ctx.getSourceCodeFile(), document);
+        }
+        return cache.isUpToDate(ctx.getSourceCodeFile());
+    }
+
+    private Reader openReader(final TextDocument document, final RuleContext ctx) throws PMDException {
+        try {
+            return document.newReader();
+        } catch (IOException e) {
+            configuration.getAnalysisCache().analysisFailed(ctx.getSourceCodeFile());
+            throw new PMDException("IO exception: " + e.getMessage(), e);
+        }
     }
 
     private void reportCachedRuleViolations(final RuleContext ctx) {
@@ -135,6 +179,8 @@ public class SourceCodeProcessor {
         try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.PARSER)) {
             Node rootNode = AbstractParser.doParse(parser, String.valueOf(ctx.getSourceCodeFile()), sourceCode);
             ctx.getReport().suppress(parser.getSuppressMap());
+            // index the nodes once, for the rule chain, the XPath rules and the AST traversals
+            NodeIndex.get(rootNode);
             return rootNode;
         }
     }
@@ -0,0 +1,32 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Indicates that the instances of a rule class may be applied to several
+ * files by several threads at the same time. Such a rule doesn't keep any
+ * state about the file it is applied to in its fields, only in the
+ * {@link net.sourceforge.pmd.RuleContext} or in the nodes of the file.
+ * The rule instances are then shared by the threads which analyse the files,
+ * instead of being copied for each thread.
+ *
+ * <p>The annotation is not inherited: a subclass of a thread-safe rule must
+ * be annotated itself.
+ *
+ * @since 6.42.0
+ */
+@Experimental
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ThreadSafe {
+}
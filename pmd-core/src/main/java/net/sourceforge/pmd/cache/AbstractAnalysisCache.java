@@ -34,6 +34,7 @@ import net.sourceforge.pmd.benchmark.TimeTracker;
 import net.sourceforge.pmd.benchmark.TimedOperation;
 import net.sourceforge.pmd.benchmark.TimedOperationCategory;
 import net.sourceforge.pmd.cache.internal.ClasspathFingerprinter;
+import net.sourceforge.pmd.internal.util.TextDocument;
 import net.sourceforge.pmd.stat.Metric;
 
 /**
@@ -54,6 +55,7 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
     protected long rulesetChecksum;
     protected long auxClassPathChecksum;
     protected long executionClassPathChecksum;
+    private boolean fastChecksum;
 
     /**
      * Creates a new empty cache
@@ -64,15 +66,42 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
         updatedResultsCache = new ConcurrentHashMap<>();
     }
 
+    /**
+     * Sets whether the checksum of changed files is computed with xxHash,
+     * instead of Adler32. This is faster on large files. Changing this
+     * setting between two analyses invalidates the checksums of all files
+     * whose attributes changed.
+     *
+     * @param fastChecksum Whether to use the fast checksum
+     */
+    public void setFastChecksum(final boolean fastChecksum) {
+        this.fastChecksum = fastChecksum;
+    }
+
     @Override
     public boolean isUpToDate(final File sourceFile) {
+        return isUpToDate(sourceFile, null);
+    }
+
+    /**
+     * Like {@link #isUpToDate(File)}, but the file is hashed from the
+     * given document, whose contents are then reused to parse the file
+     * if it changed.
+     *
+     * @param sourceFile The file to check in the cache
+     * @param document   The contents of the file, may be null
+     *
+     * @return True if the cache is a hit, false otherwise
+     */
+    public boolean isUpToDate(final File sourceFile, final TextDocument document) {
         try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "up-to-date check")) {
-            // There is a new file being analyzed, prepare entry in updated cache
-            final AnalysisResult updatedResult = new AnalysisResult(sourceFile);
-            updatedResultsCache.put(sourceFile.getPath(), updatedResult);
+            // Check the old cache
+            final AnalysisResult analysisResult = getPreviousResult(sourceFile.getPath());
 
-            // Now check the old cache
-            final AnalysisResult analysisResult = fileResultsCache.get(sourceFile.getPath());
+            // There is a new file being analyzed, prepare entry in updated cache.
+            // The file is only hashed if its attributes changed since the previous analysis
+            final AnalysisResult updatedResult = new AnalysisResult(sourceFile, analysisResult, fastChecksum, document);
+            updatedResultsCache.put(sourceFile.getPath(), updatedResult);
 
             // is this a known file? has it changed?
             final boolean result = analysisResult != null
@@ -87,13 +116,15 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
                 }
             }
 
+            // the counter of the timing report is the number of hits
+            to.close(result ? 1 : 0);
             return result;
         }
     }
 
     @Override
     public List<RuleViolation> getCachedViolations(final File sourceFile) {
-        final AnalysisResult analysisResult = fileResultsCache.get(sourceFile.getPath());
+        final AnalysisResult analysisResult = getPreviousResult(sourceFile.getPath());
 
         if (analysisResult == null) {
             // new file, avoid nulls
@@ -109,6 +140,25 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
     }
 
 
+    /**
+     * Returns the result of the previous analysis of the given file, if any.
+     *
+     * @param fileName The path of the file
+     *
+     * @return The previous result, or null if the file is not in the cache
+     */
+    protected AnalysisResult getPreviousResult(final String fileName) {
+        return fileResultsCache.get(fileName);
+    }
+
+    /**
+     * Drops the results of the previous analysis, because the cache
+     * is not valid for the current analysis.
+     */
+    protected void clearPreviousResults() {
+        fileResultsCache.clear();
+    }
+
     /**
      * Returns true if the cache exists. If so, normal cache validity checks
      * will be performed. Otherwise, the cache is necessarily invalid (e.g. on a first run).
@@ -155,7 +205,7 @@ public abstract class AbstractAnalysisCache implements AnalysisCache {
 
             if (!cacheIsValid) {
                 // Clear the cache
-                fileResultsCache.clear();
+                clearPreviousResults();
             }
 
             // Update the local checksums
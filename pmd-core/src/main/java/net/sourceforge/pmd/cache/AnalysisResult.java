@@ -8,8 +8,10 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.zip.Adler32;
 import java.util.zip.CheckedInputStream;
 
@@ -17,37 +19,128 @@ import org.apache.commons.io.IOUtils;
 
 import net.sourceforge.pmd.RuleViolation;
 import net.sourceforge.pmd.annotation.InternalApi;
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperation;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.cache.internal.XxHash64;
+import net.sourceforge.pmd.internal.util.TextDocument;
 
 /**
  * The result of a single file analysis.
  * Includes a checksum of the file and the complete list of violations detected.
+ * It also includes the size, the last modification time and the file key
+ * (eg the inode) of the file, which allow to tell that a file is unchanged
+ * without computing its checksum.
  * @deprecated This is internal API, will be hidden with 7.0.0
  */
 @Deprecated
 @InternalApi
 public class AnalysisResult {
 
+    /** Value of the file attributes when they are unknown. */
+    public static final long UNKNOWN = -1;
+
+    /**
+     * Files modified less than this before being analyzed may be modified again
+     * within the resolution of the file system timestamps, without their
+     * modification time changing. Their modification time is not recorded.
+     */
+    private static final long RACY_MODIFICATION_MILLIS = 2000;
+
     private final long fileChecksum;
+    private final long fileSize;
+    private final long lastModified;
+    private final long fileKey;
     private final List<RuleViolation> violations;
 
     public AnalysisResult(final long fileChecksum, final List<RuleViolation> violations) {
+        this(fileChecksum, UNKNOWN, UNKNOWN, UNKNOWN, violations);
+    }
+
+    public AnalysisResult(final long fileChecksum, final long fileSize, final long lastModified,
+                          final long fileKey, final List<RuleViolation> violations) {
         this.fileChecksum = fileChecksum;
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.fileKey = fileKey;
         this.violations = violations;
     }
 
     public AnalysisResult(final File sourceFile) {
-        this(computeFileChecksum(sourceFile), new ArrayList<RuleViolation>());
+        this(sourceFile, null, false);
     }
 
-    private static long computeFileChecksum(final File sourceFile) {
-        try (
-            CheckedInputStream stream = new CheckedInputStream(
-                new BufferedInputStream(Files.newInputStream(sourceFile.toPath())), new Adler32());
-        ) {
-            // Just read it, the CheckedInputStream will update the checksum on it's own
-            IOUtils.skipFully(stream, sourceFile.length());
+    /**
+     * Creates a new result for the given file, without violations. If the
+     * size, last modification time and file key of the file match those of
+     * the previous result, the checksum of the previous result is reused.
+     * Otherwise, the checksum of the file contents is computed.
+     *
+     * @param sourceFile     The analyzed file
+     * @param previousResult The result of the previous analysis, may be null
+     * @param fastChecksum   Whether to compute the checksum with {@link XxHash64}
+     *                       instead of {@link Adler32}
+     */
+    public AnalysisResult(final File sourceFile, final AnalysisResult previousResult, final boolean fastChecksum) {
+        this(sourceFile, previousResult, fastChecksum, null);
+    }
+
+    /**
+     * Like {@link #AnalysisResult(File, AnalysisResult, boolean)}, but
+     * the checksum is computed on the given document if needed, so that
+     * the file is not read again to be parsed.
+     *
+     * @param document The contents of the file, may be null
+     */
+    public AnalysisResult(final File sourceFile, final AnalysisResult previousResult, final boolean fastChecksum,
+                          final TextDocument document) {
+        this(sourceFile, readAttributes(sourceFile), previousResult, fastChecksum, document);
+    }
 
-            return stream.getChecksum().getValue();
+    private AnalysisResult(final File sourceFile, final BasicFileAttributes attributes,
+                           final AnalysisResult previousResult, final boolean fastChecksum,
+                           final TextDocument document) {
+        this.fileSize = attributes == null ? UNKNOWN : attributes.size();
+        this.lastModified = attributes == null ? UNKNOWN : nonRacyLastModified(attributes);
+        this.fileKey = attributes == null ? UNKNOWN : Objects.hashCode(attributes.fileKey());
+        this.fileChecksum = previousResult != null && previousResult.hasSameAttributes(this)
+                ? previousResult.getFileChecksum()
+                : computeFileChecksum(sourceFile, fastChecksum, document);
+        this.violations = new ArrayList<>();
+    }
+
+    private static BasicFileAttributes readAttributes(final File sourceFile) {
+        try {
+            return Files.readAttributes(sourceFile.toPath(), BasicFileAttributes.class);
+        } catch (final IOException ignored) {
+            // the checksum will be computed, and fail as well
+            return null;
+        }
+    }
+
+    private static long nonRacyLastModified(final BasicFileAttributes attributes) {
+        final long millis = attributes.lastModifiedTime().toMillis();
+        return System.currentTimeMillis() - millis < RACY_MODIFICATION_MILLIS ? UNKNOWN : millis;
+    }
+
+    private static long computeFileChecksum(final File sourceFile, final boolean fastChecksum,
+                                            final TextDocument document) {
+        try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "checksum")) {
+            if (document != null) {
+                return document.getChecksum(fastChecksum);
+            } else if (fastChecksum) {
+                return XxHash64.hash(sourceFile);
+            }
+
+            try (
+                CheckedInputStream stream = new CheckedInputStream(
+                    new BufferedInputStream(Files.newInputStream(sourceFile.toPath())), new Adler32());
+            ) {
+                // Just read it, the CheckedInputStream will update the checksum on it's own
+                IOUtils.skipFully(stream, sourceFile.length());
+
+                return stream.getChecksum().getValue();
+            }
         } catch (final IOException ignored) {
             // We don't really care, if it's unreadable
             // the analysis will fail and report the error on it's own since the checksum won't match
@@ -59,10 +152,43 @@ public class AnalysisResult {
         return System.currentTimeMillis();
     }
 
+    /**
+     * Returns true if the file attributes of both results are known and equal,
+     * which means the file didn't change between both analyses.
+     */
+    private boolean hasSameAttributes(final AnalysisResult other) {
+        return lastModified != UNKNOWN
+                && lastModified == other.lastModified
+                && fileSize == other.fileSize
+                && fileKey == other.fileKey;
+    }
+
     public long getFileChecksum() {
         return fileChecksum;
     }
 
+    /**
+     * Returns the size of the file in bytes, or {@link #UNKNOWN}.
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Returns the last modification time of the file in milliseconds, or {@link #UNKNOWN}.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the hash code of the key identifying the file on the file system
+     * (eg its inode), or {@link #UNKNOWN}.
+     */
+    public long getFileKey() {
+        return fileKey;
+    }
+
     public List<RuleViolation> getViolations() {
         return violations;
     }
@@ -0,0 +1,47 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.IOException;
+
+import net.sourceforge.pmd.annotation.InternalApi;
+
+/**
+ * A content-addressed store of serialized analysis results, used by
+ * {@link ContentAddressedAnalysisCache}. Keys are derived from the contents
+ * of the analyzed file and from everything else the result depends on, so
+ * that a store may be shared by several machines. Entries are
+ * never updated: the value of a given key is always the same.
+ *
+ * <p>Implementations must be thread-safe.
+ *
+ * @deprecated This is internal API, will be hidden with 7.0.0
+ */
+@Deprecated
+@InternalApi
+public interface AnalysisResultStore {
+
+    /**
+     * Returns the value stored for the given key.
+     *
+     * @param key The key, made of lowercase hexadecimal digits
+     *
+     * @return The stored value, or null if there is none
+     *
+     * @throws IOException If the store can't be read
+     */
+    byte[] get(String key) throws IOException;
+
+    /**
+     * Stores the value for the given key. Storing an existing key may
+     * either replace the value or do nothing, as both values are equal.
+     *
+     * @param key   The key, made of lowercase hexadecimal digits
+     * @param value The value
+     *
+     * @throws IOException If the store can't be written
+     */
+    void put(String key, byte[] value) throws IOException;
+}
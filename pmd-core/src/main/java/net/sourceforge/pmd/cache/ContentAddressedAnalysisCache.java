@@ -0,0 +1,265 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.annotation.InternalApi;
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperation;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+import net.sourceforge.pmd.cache.internal.XxHash64;
+import net.sourceforge.pmd.internal.util.ShortFilenameUtil;
+import net.sourceforge.pmd.internal.util.TextDocument;
+import net.sourceforge.pmd.lang.LanguageVersion;
+
+/**
+ * An analysis cache whose entries are addressed by the contents of the
+ * analyzed file, instead of the time it was last analyzed. The key of an
+ * entry is made of the hash of the file contents, of a hash of its path
+ * relative to the input path containing it and of its language version,
+ * which decide which rules apply to it, and of a hash of
+ * the PMD version, the ruleset checksum, the suppress marker, the
+ * auxclasspath checksum (if a rule uses type resolution or the DFA) and the
+ * execution classpath checksum. The entries are kept in an
+ * {@link AnalysisResultStore}, which may be shared by several CI agents or
+ * developers: a file analyzed at the same path with the same rules is a
+ * cache hit for all of them, wherever they checked out the project.
+ *
+ * <p>If the store fails, a warning is logged and it is not used anymore for
+ * the current analysis, which then behaves as if there was no cache.
+ *
+ * @deprecated This is internal API, will be hidden with 7.0.0
+ */
+@Deprecated
+@InternalApi
+public class ContentAddressedAnalysisCache extends AbstractAnalysisCache {
+
+    private final AnalysisResultStore store;
+    private final PMDConfiguration configuration;
+
+    /** Keys of the files whose contents could be hashed, by file name. */
+    private final ConcurrentMap<String, String> entryKeys = new ConcurrentHashMap<>();
+    private String contextKey;
+    private List<String> inputPaths = Collections.emptyList();
+    private volatile boolean storeAvailable = true;
+
+    /**
+     * Creates a new cache backed by the given store.
+     *
+     * @param store         The store of the entries
+     * @param configuration The configuration of the analysis, which
+     *                      provides the suppress marker and the language
+     *                      versions of the files
+     */
+    public ContentAddressedAnalysisCache(final AnalysisResultStore store, final PMDConfiguration configuration) {
+        super();
+        this.store = store;
+        this.configuration = configuration;
+    }
+
+    @Override
+    protected boolean cacheExists() {
+        // entries are keyed by the checksums, they can't be stale
+        return false;
+    }
+
+    @Override
+    public void checkValidity(final RuleSets ruleSets, final ClassLoader auxclassPathClassLoader) {
+        super.checkValidity(ruleSets, auxclassPathClassLoader);
+
+        boolean usesAuxClassPath = false;
+        for (final Rule r : ruleSets.getAllRules()) {
+            if (r.isDfa() || r.isTypeResolution()) {
+                usesAuxClassPath = true;
+                break;
+            }
+        }
+
+        final byte[] version = pmdVersion.getBytes(StandardCharsets.UTF_8);
+        final String suppressMarker = configuration.getSuppressMarker();
+        final byte[] marker = suppressMarker == null ? new byte[0] : suppressMarker.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer context = ByteBuffer.allocate(28 + version.length + marker.length);
+        context.putLong(rulesetChecksum)
+               .putLong(usesAuxClassPath ? auxClassPathChecksum : 0)
+               .putLong(executionClassPathChecksum)
+               .putInt(version.length)
+               .put(version)
+               .put(marker);
+        context.flip();
+        contextKey = toHex(XxHash64.hash(context));
+
+        final String configuredInputPaths = configuration.getInputPaths();
+        if (configuredInputPaths != null) {
+            inputPaths = Arrays.asList(configuredInputPaths.split(","));
+        }
+    }
+
+    @Override
+    public boolean isUpToDate(final File sourceFile, final TextDocument document) {
+        try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "up-to-date check")) {
+            final String fileName = sourceFile.getPath();
+            final long contentHash;
+            try {
+                contentHash = document != null ? document.getChecksum(true) : XxHash64.hash(sourceFile);
+            } catch (final IOException ignored) {
+                // the analysis will fail and report the error on it's own,
+                // the file is just not cached
+                updatedResultsCache.put(fileName, new AnalysisResult(System.currentTimeMillis(), new ArrayList<RuleViolation>()));
+                return false;
+            }
+
+            final String key = toHex(contentHash) + toHex(fileHash(sourceFile)) + contextKey;
+            entryKeys.put(fileName, key);
+            updatedResultsCache.put(fileName, new AnalysisResult(contentHash, new ArrayList<RuleViolation>()));
+
+            final List<RuleViolation> violations = fetch(key, fileName);
+            final boolean result = violations != null;
+            if (result) {
+                fileResultsCache.put(fileName, new AnalysisResult(contentHash, violations));
+            }
+
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine(result ? "Incremental Analysis cache HIT" : "Incremental Analysis cache MISS - no entry found");
+            }
+
+            // the counter of the timing report is the number of hits
+            to.close(result ? 1 : 0);
+            return result;
+        }
+    }
+
+    /**
+     * Fetches and decodes the entry with the given key.
+     *
+     * @return The cached violations, or null if there is no usable entry
+     */
+    private List<RuleViolation> fetch(final String key, final String fileName) {
+        if (!storeAvailable) {
+            return null;
+        }
+
+        final byte[] entry;
+        try {
+            entry = store.get(key);
+        } catch (final IOException e) {
+            disableStore("Could not read analysis cache entry from " + store + ". " + e.getMessage());
+            return null;
+        }
+        if (entry == null) {
+            return null;
+        }
+
+        // the entry may come from anyone sharing the store, a corrupted one is a cache miss
+        try (DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(entry))) {
+            final int violationCount = inputStream.readInt();
+            // every violation takes several bytes of the entry
+            if (violationCount < 0 || violationCount > entry.length) {
+                throw new IOException("Invalid violation count " + violationCount);
+            }
+            final List<RuleViolation> violations = new ArrayList<>(violationCount);
+            for (int i = 0; i < violationCount; i++) {
+                violations.add(CachedRuleViolation.loadFromStream(inputStream, fileName, ruleMapper));
+            }
+            return violations;
+        } catch (final IOException | RuntimeException e) {
+            LOG.warning("Analysis cache entry " + key + " is malformed, will not be used for current analysis");
+            return null;
+        }
+    }
+
+    @Override
+    public void persist() {
+        try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "persist")) {
+            int storedEntries = 0;
+            for (final Map.Entry<String, AnalysisResult> resultEntry : updatedResultsCache.entrySet()) {
+                final String fileName = resultEntry.getKey();
+                final String key = entryKeys.get(fileName);
+                if (!storeAvailable) {
+                    break;
+                } else if (key == null || fileResultsCache.containsKey(fileName)) {
+                    // the file couldn't be hashed, or the entry is already stored
+                    continue;
+                }
+
+                try {
+                    store.put(key, encodeEntry(resultEntry.getValue().getViolations()));
+                    storedEntries++;
+                } catch (final IOException e) {
+                    disableStore("Could not persist analysis cache entry to " + store + ". " + e.getMessage());
+                }
+            }
+
+            LOG.info("Analysis cache updated, " + storedEntries + " entries stored");
+        }
+    }
+
+    /**
+     * Hashes the path of the file relative to its input path, and its
+     * language version. The ruleset include and exclude patterns and the
+     * language of a file depend on its path, so the same contents at another
+     * path may have other violations. The path is relative, so that the
+     * entries are shared by the checkouts of the project in other
+     * directories.
+     */
+    private long fileHash(final File sourceFile) {
+        final LanguageVersion languageVersion = configuration.getLanguageVersionDiscoverer()
+                .getDefaultLanguageVersionForFile(sourceFile);
+        final String relativePath = ShortFilenameUtil.determineFileName(inputPaths, sourceFile.getAbsolutePath());
+        final byte[] path = relativePath.replace(File.separatorChar, '/').getBytes(StandardCharsets.UTF_8);
+        final byte[] version = languageVersion == null
+                ? new byte[0] : languageVersion.getTerseName().getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocate(4 + path.length + version.length);
+        buffer.putInt(path.length).put(path).put(version);
+        buffer.flip();
+        return XxHash64.hash(buffer);
+    }
+
+    private void disableStore(final String message) {
+        if (storeAvailable) {
+            storeAvailable = false;
+            LOG.warning(message + " The analysis cache is disabled for the current analysis.");
+        }
+    }
+
+    private static byte[] encodeEntry(final List<RuleViolation> violations) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream outputStream = new DataOutputStream(bytes)) {
+            outputStream.writeInt(violations.size());
+            for (final RuleViolation rv : violations) {
+                CachedRuleViolation.storeToStream(outputStream, rv);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String toHex(final long hash) {
+        final String hex = Long.toHexString(hash);
+        final StringBuilder sb = new StringBuilder(16);
+        for (int i = hex.length(); i < 16; i++) {
+            sb.append('0');
+        }
+        return sb.append(hex).toString();
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import net.sourceforge.pmd.annotation.InternalApi;
+
+/**
+ * Stores analysis results as files in a directory, which may be local or
+ * on a file share. Entries are spread over subdirectories named after the
+ * first two characters of their key. Entries are written to a temporary
+ * file which is then moved in place, so concurrent analyses sharing the
+ * directory never read a partially written entry.
+ *
+ * @deprecated This is internal API, will be hidden with 7.0.0
+ */
+@Deprecated
+@InternalApi
+public class DirectoryResultStore implements AnalysisResultStore {
+
+    private final File directory;
+
+    /**
+     * Creates a new store. The directory is created when the first entry is stored.
+     *
+     * @param directory The directory containing the entries
+     */
+    public DirectoryResultStore(final File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public byte[] get(final String key) throws IOException {
+        try {
+            return Files.readAllBytes(entryPath(key));
+        } catch (final NoSuchFileException ignored) {
+            return null;
+        }
+    }
+
+    @Override
+    public void put(final String key, final byte[] value) throws IOException {
+        final Path entry = entryPath(key);
+        final Path parent = entry.getParent();
+        Files.createDirectories(parent);
+
+        final Path tempFile = Files.createTempFile(parent, key, ".tmp");
+        try {
+            Files.write(tempFile, value);
+            try {
+                Files.move(tempFile, entry, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private Path entryPath(final String key) {
+        return directory.toPath().resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    @Override
+    public String toString() {
+        return "DirectoryResultStore[" + directory + "]";
+    }
+}
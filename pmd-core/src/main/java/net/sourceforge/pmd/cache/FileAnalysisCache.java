@@ -11,6 +11,7 @@ import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.StreamCorruptedException;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
@@ -27,12 +28,20 @@ import net.sourceforge.pmd.benchmark.TimedOperationCategory;
 /**
  * An analysis cache backed by a regular file.
  *
+ * <p>The cache file starts with the PMD version (UTF), the format version
+ * (int) and the ruleset, auxclasspath and execution classpath checksums
+ * (long). Then, for each file: its name (UTF), checksum, size, last
+ * modification time and file key (long), and its violations, preceded
+ * by their count (int).
+ *
  * @deprecated This is internal API, will be hidden with 7.0.0
  */
 @Deprecated
 @InternalApi
 public class FileAnalysisCache extends AbstractAnalysisCache {
 
+    private static final int FORMAT_VERSION = 2;
+
     private final File cacheFile;
 
     /**
@@ -64,7 +73,11 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
                 ) {
                     final String cacheVersion = inputStream.readUTF();
 
-                    if (PMDVersion.VERSION.equals(cacheVersion)) {
+                    if (!PMDVersion.VERSION.equals(cacheVersion)) {
+                        LOG.info("Analysis cache invalidated, PMD version changed.");
+                    } else if (inputStream.readInt() != FORMAT_VERSION) {
+                        LOG.info("Analysis cache invalidated, cache format changed.");
+                    } else {
                         // Cache seems valid, load the rest
 
                         // Get checksums
@@ -76,23 +89,29 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
                         while (inputStream.available() > 0) {
                             final String fileName = inputStream.readUTF();
                             final long checksum = inputStream.readLong();
+                            final long fileSize = inputStream.readLong();
+                            final long lastModified = inputStream.readLong();
+                            final long fileKey = inputStream.readLong();
 
                             final int countViolations = inputStream.readInt();
+                            if (countViolations < 0 || countViolations > cacheFile.length()) {
+                                throw new StreamCorruptedException("Invalid violation count " + countViolations);
+                            }
                             final List<RuleViolation> violations = new ArrayList<>(countViolations);
                             for (int i = 0; i < countViolations; i++) {
                                 violations.add(CachedRuleViolation.loadFromStream(inputStream, fileName, ruleMapper));
                             }
 
-                            fileResultsCache.put(fileName, new AnalysisResult(checksum, violations));
+                            fileResultsCache.put(fileName, new AnalysisResult(checksum, fileSize, lastModified, fileKey, violations));
                         }
 
                         LOG.info("Analysis cache loaded");
-                    } else {
-                        LOG.info("Analysis cache invalidated, PMD version changed.");
                     }
-                } catch (final EOFException e) {
+                } catch (final EOFException | StreamCorruptedException e) {
+                    fileResultsCache.clear();
                     LOG.warning("Cache file " + cacheFile.getPath() + " is malformed, will not be used for current analysis");
                 } catch (final IOException e) {
+                    fileResultsCache.clear();
                     LOG.severe("Could not load analysis cache from file. " + e.getMessage());
                 }
             } else if (cacheFile.isDirectory()) {
@@ -124,6 +143,7 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
                     new BufferedOutputStream(Files.newOutputStream(cacheFile.toPath())))
             ) {
                 outputStream.writeUTF(pmdVersion);
+                outputStream.writeInt(FORMAT_VERSION);
 
                 outputStream.writeLong(rulesetChecksum);
                 outputStream.writeLong(auxClassPathChecksum);
@@ -134,6 +154,9 @@ public class FileAnalysisCache extends AbstractAnalysisCache {
 
                     outputStream.writeUTF(resultEntry.getKey()); // the full filename
                     outputStream.writeLong(resultEntry.getValue().getFileChecksum());
+                    outputStream.writeLong(resultEntry.getValue().getFileSize());
+                    outputStream.writeLong(resultEntry.getValue().getLastModified());
+                    outputStream.writeLong(resultEntry.getValue().getFileKey());
 
                     outputStream.writeInt(violations.size());
                     for (final RuleViolation rv : violations) {
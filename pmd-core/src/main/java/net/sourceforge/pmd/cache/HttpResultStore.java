@@ -0,0 +1,94 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.apache.commons.io.IOUtils;
+
+import net.sourceforge.pmd.annotation.InternalApi;
+
+/**
+ * Stores analysis results on an HTTP server, eg a build cache server. An
+ * entry is read with a {@code GET} request on the base URL followed by the
+ * key, and written with a {@code PUT} request on the same URL. A missing
+ * entry is answered with a status 404.
+ *
+ * @deprecated This is internal API, will be hidden with 7.0.0
+ */
+@Deprecated
+@InternalApi
+public class HttpResultStore implements AnalysisResultStore {
+
+    private static final int TIMEOUT_MILLIS = 10000;
+
+    private final String baseUrl;
+
+    /**
+     * Creates a new store.
+     *
+     * @param baseUrl The URL under which the entries are stored
+     */
+    public HttpResultStore(final String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+    }
+
+    @Override
+    public byte[] get(final String key) throws IOException {
+        final HttpURLConnection connection = openConnection(key);
+        try {
+            final int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            checkStatus(connection, status);
+            try (InputStream inputStream = connection.getInputStream()) {
+                return IOUtils.toByteArray(inputStream);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public void put(final String key, final byte[] value) throws IOException {
+        final HttpURLConnection connection = openConnection(key);
+        try {
+            connection.setRequestMethod("PUT");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(value.length);
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                outputStream.write(value);
+            }
+            checkStatus(connection, connection.getResponseCode());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection openConnection(final String key) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + key).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        connection.setUseCaches(false);
+        return connection;
+    }
+
+    private static void checkStatus(final HttpURLConnection connection, final int status) throws IOException {
+        if (status / 100 != 2) {
+            throw new IOException("Unexpected response " + status + " from " + connection.getURL());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HttpResultStore[" + baseUrl + "]";
+    }
+}
@@ -0,0 +1,474 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.annotation.InternalApi;
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperation;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
+
+/**
+ * An analysis cache backed by a memory-mapped, indexed file. Contrary to
+ * {@link FileAnalysisCache}, loading the cache only maps the file: the index
+ * is searched in place, and the violations are only decoded for the files
+ * that are up to date. Persisting the cache writes a new file, made of the
+ * records of the files that changed and of the records of the unchanged
+ * files, which are copied without being decoded. The new file is written
+ * next to the cache file, and then moved in place, so the mapped file is
+ * never modified. The mapping is released when the buffer is garbage collected.
+ *
+ * <p>The cache file has the following layout:
+ * <pre>
+ * header:  magic (int), format version (int), ruleset checksum (long),
+ *          auxclasspath checksum (long), execution classpath checksum (long),
+ *          index offset (long), index entry count (int), PMD version (UTF)
+ * records: file name (UTF), violation count (int), violations
+ * index:   entries sorted by key, each made of the key of the file name (long),
+ *          the file checksum (long), the file size (long), the file last modification
+ *          time (long), the file key (long), the record offset (long) and the record length (int)
+ * </pre>
+ *
+ * @deprecated This is internal API, will be hidden with 7.0.0
+ */
+@Deprecated
+@InternalApi
+public class MappedFileAnalysisCache extends AbstractAnalysisCache {
+
+    private static final int MAGIC = 0x504d4443; // "PMDC"
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int CHECKSUMS_POSITION = 8;
+    private static final int FIXED_HEADER_SIZE = 44;
+    private static final int INDEX_ENTRY_SIZE = 52;
+
+    private static final Comparator<IndexEntry> KEY_COMPARATOR = new Comparator<IndexEntry>() {
+        @Override
+        public int compare(final IndexEntry o1, final IndexEntry o2) {
+            return Long.compare(o1.key, o2.key);
+        }
+    };
+
+    private final File cacheFile;
+
+    /** The mapped cache file, null if there are no usable previous results. */
+    private MappedByteBuffer buffer;
+    private int indexOffset;
+    private int indexEntryCount;
+
+    /**
+     * Creates a new cache backed by the given file.
+     * @param cache The file on which to store analysis cache
+     */
+    public MappedFileAnalysisCache(final File cache) {
+        super();
+        this.cacheFile = cache;
+    }
+
+    @Override
+    public void checkValidity(final RuleSets ruleSets, final ClassLoader auxclassPathClassLoader) {
+        // map cached data before checking for validity
+        mapFile();
+        super.checkValidity(ruleSets, auxclassPathClassLoader);
+    }
+
+    /**
+     * Maps the cache file and reads its header. Nothing else is read.
+     */
+    private void mapFile() {
+        try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "load")) {
+            if (cacheExists()) {
+                try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+                    if (channel.size() < FIXED_HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                        LOG.warning("Cache file " + cacheFile.getPath() + " is malformed, will not be used for current analysis");
+                        return;
+                    }
+
+                    final MappedByteBuffer mapped = channel.map(MapMode.READ_ONLY, 0, channel.size());
+                    if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != FORMAT_VERSION) {
+                        // e.g. a cache file written by FileAnalysisCache
+                        LOG.info("Analysis cache invalidated, cache format changed.");
+                        return;
+                    }
+
+                    final String cacheVersion = readUTF(mapped, FIXED_HEADER_SIZE);
+                    if (!PMDVersion.VERSION.equals(cacheVersion)) {
+                        LOG.info("Analysis cache invalidated, PMD version changed.");
+                        return;
+                    }
+
+                    final long offset = mapped.getLong(CHECKSUMS_POSITION + 24);
+                    final int count = mapped.getInt(CHECKSUMS_POSITION + 32);
+                    if (offset < FIXED_HEADER_SIZE || count < 0
+                            || offset + (long) count * INDEX_ENTRY_SIZE > mapped.capacity()) {
+                        LOG.warning("Cache file " + cacheFile.getPath() + " is malformed, will not be used for current analysis");
+                        return;
+                    }
+
+                    rulesetChecksum = mapped.getLong(CHECKSUMS_POSITION);
+                    auxClassPathChecksum = mapped.getLong(CHECKSUMS_POSITION + 8);
+                    executionClassPathChecksum = mapped.getLong(CHECKSUMS_POSITION + 16);
+                    indexOffset = (int) offset;
+                    indexEntryCount = count;
+                    buffer = mapped;
+
+                    LOG.info("Analysis cache loaded");
+                } catch (final IOException e) {
+                    LOG.severe("Could not load analysis cache from file. " + e.getMessage());
+                }
+            } else if (cacheFile.isDirectory()) {
+                LOG.severe("The configured cache location must be the path to a file, but is a directory.");
+            }
+        }
+    }
+
+    @Override
+    protected AnalysisResult getPreviousResult(final String fileName) {
+        AnalysisResult result = fileResultsCache.get(fileName);
+        final ByteBuffer mapped = buffer;
+        if (result == null && mapped != null) {
+            result = lookup(mapped, fileName);
+            if (result != null) {
+                final AnalysisResult previous = fileResultsCache.putIfAbsent(fileName, result);
+                if (previous != null) {
+                    result = previous;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected void clearPreviousResults() {
+        super.clearPreviousResults();
+        releaseMapping();
+    }
+
+    /**
+     * Drops the mapped cache file. The previous results which were not decoded
+     * yet keep a reference to it.
+     */
+    private void releaseMapping() {
+        buffer = null;
+    }
+
+    /**
+     * Binary search of the file in the mapped index.
+     */
+    private MappedAnalysisResult lookup(final ByteBuffer mapped, final String fileName) {
+        final long key = keyOf(fileName);
+        int low = 0;
+        int high = indexEntryCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int entry = indexOffset + mid * INDEX_ENTRY_SIZE;
+            final long midKey = mapped.getLong(entry);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                final long offset = mapped.getLong(entry + 40);
+                final int length = mapped.getInt(entry + 48);
+                if (offset < FIXED_HEADER_SIZE || length < 0 || offset + length > indexOffset) {
+                    LOG.warning("Cache file " + cacheFile.getPath() + " has a malformed entry for " + fileName);
+                    return null;
+                }
+
+                // the key is a hash, make sure it's the same file
+                if (!fileName.equals(readUTF(mapped, (int) offset))) {
+                    return null;
+                }
+                return new MappedAnalysisResult(mapped, fileName, mapped.getLong(entry + 8), mapped.getLong(entry + 16),
+                        mapped.getLong(entry + 24), mapped.getLong(entry + 32), (int) offset, length);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void persist() {
+        try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.ANALYSIS_CACHE, "persist")) {
+            if (cacheFile.isDirectory()) {
+                LOG.severe("Cannot persist the cache, the given path points to a directory.");
+                return;
+            }
+
+            final boolean cacheFileShouldBeCreated = !cacheFile.exists();
+
+            // Create directories missing along the way
+            if (cacheFileShouldBeCreated) {
+                final File parentFile = cacheFile.getAbsoluteFile().getParentFile();
+                if (parentFile != null && !parentFile.exists()) {
+                    parentFile.mkdirs();
+                }
+            }
+
+            try {
+                rewrite(collectEntries());
+
+                if (cacheFileShouldBeCreated) {
+                    LOG.info("Analysis cache created");
+                } else {
+                    LOG.info("Analysis cache updated");
+                }
+            } catch (final IOException e) {
+                LOG.severe("Could not persist analysis cache to file. " + e.getMessage());
+            } finally {
+                releaseMapping();
+            }
+        }
+    }
+
+    /**
+     * Builds the new index, sorted by key. Unchanged files reuse their
+     * previous record, the others get a new record.
+     */
+    private List<IndexEntry> collectEntries() throws IOException {
+        final List<IndexEntry> entries = new ArrayList<>(updatedResultsCache.size());
+        for (final Map.Entry<String, AnalysisResult> resultEntry : updatedResultsCache.entrySet()) {
+            final String fileName = resultEntry.getKey();
+            final AnalysisResult result = resultEntry.getValue();
+            final AnalysisResult previous = fileResultsCache.get(fileName);
+
+            final IndexEntry entry;
+            if (previous instanceof MappedAnalysisResult && ((MappedAnalysisResult) previous).source == buffer
+                    && previous.getFileChecksum() == result.getFileChecksum()) {
+                // unchanged file, its cached violations were reported again
+                final MappedAnalysisResult mappedResult = (MappedAnalysisResult) previous;
+                entry = new IndexEntry(keyOf(fileName), result, null);
+                entry.offset = mappedResult.offset;
+                entry.length = mappedResult.length;
+            } else {
+                entry = new IndexEntry(keyOf(fileName), result, encodeRecord(fileName, result.getViolations()));
+            }
+            entries.add(entry);
+        }
+
+        Collections.sort(entries, KEY_COMPARATOR);
+
+        // in the unlikely case of a collision, only one of the files is cached
+        final List<IndexEntry> uniqueEntries = new ArrayList<>(entries.size());
+        for (final IndexEntry entry : entries) {
+            if (uniqueEntries.isEmpty() || uniqueEntries.get(uniqueEntries.size() - 1).key != entry.key) {
+                uniqueEntries.add(entry);
+            } else if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("Analysis cache key collision, a file won't be cached");
+            }
+        }
+        return uniqueEntries;
+    }
+
+    /**
+     * Writes a new, compact file, only made of the records in use, and
+     * moves it in place of the cache file.
+     */
+    private void rewrite(final List<IndexEntry> entries) throws IOException {
+        long position = encodeHeader(0, 0).length;
+        for (final IndexEntry entry : entries) {
+            position += entry.length;
+        }
+
+        final Path target = cacheFile.getAbsoluteFile().toPath();
+        final Path tempFile = Files.createTempFile(target.getParent(), cacheFile.getName(), ".tmp");
+        try {
+            writeFile(tempFile, entries, position);
+            releaseMapping();
+            try {
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private void writeFile(final Path file, final List<IndexEntry> entries, final long indexOffset) throws IOException {
+        try (DataOutputStream outputStream = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            final byte[] header = encodeHeader(indexOffset, entries.size());
+            outputStream.write(header);
+
+            int offset = header.length;
+            for (final IndexEntry entry : entries) {
+                if (entry.record != null) {
+                    outputStream.write(entry.record);
+                } else {
+                    final ByteBuffer record = buffer.duplicate();
+                    record.position(entry.offset);
+                    record.limit(entry.offset + entry.length);
+                    final byte[] bytes = new byte[entry.length];
+                    record.get(bytes);
+                    outputStream.write(bytes);
+                }
+                entry.offset = offset;
+                offset += entry.length;
+            }
+            outputStream.write(encodeIndex(entries).array());
+        }
+    }
+
+    private byte[] encodeHeader(final long indexOffset, final int entryCount) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream outputStream = new DataOutputStream(bytes)) {
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(FORMAT_VERSION);
+            outputStream.writeLong(rulesetChecksum);
+            outputStream.writeLong(auxClassPathChecksum);
+            outputStream.writeLong(executionClassPathChecksum);
+            outputStream.writeLong(indexOffset);
+            outputStream.writeInt(entryCount);
+            outputStream.writeUTF(pmdVersion);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ByteBuffer encodeIndex(final List<IndexEntry> entries) {
+        final ByteBuffer index = ByteBuffer.allocate(entries.size() * INDEX_ENTRY_SIZE);
+        for (final IndexEntry entry : entries) {
+            index.putLong(entry.key).putLong(entry.result.getFileChecksum()).putLong(entry.result.getFileSize())
+                 .putLong(entry.result.getLastModified()).putLong(entry.result.getFileKey())
+                 .putLong(entry.offset).putInt(entry.length);
+        }
+        index.flip();
+        return index;
+    }
+
+    private static byte[] encodeRecord(final String fileName, final List<RuleViolation> violations) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream outputStream = new DataOutputStream(bytes)) {
+            outputStream.writeUTF(fileName);
+            outputStream.writeInt(violations.size());
+            for (final RuleViolation rv : violations) {
+                CachedRuleViolation.storeToStream(outputStream, rv);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Opens a stream over the given range of the buffer.
+     */
+    private static DataInputStream streamAt(final ByteBuffer mapped, final int offset, final int length) {
+        final ByteBuffer range = mapped.duplicate();
+        range.position(offset);
+        final byte[] bytes = new byte[Math.min(length, range.remaining())];
+        range.get(bytes);
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    private static String readUTF(final ByteBuffer mapped, final int offset) {
+        try {
+            final int utfLength = mapped.getShort(offset) & 0xFFFF;
+            return streamAt(mapped, offset, utfLength + 2).readUTF();
+        } catch (final IOException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The key of a file in the index: a 64 bits FNV-1a hash of its name.
+     */
+    private static long keyOf(final String fileName) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < fileName.length(); i++) {
+            hash ^= fileName.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    @Override
+    protected boolean cacheExists() {
+        return cacheFile.exists() && cacheFile.isFile() && cacheFile.length() > 0;
+    }
+
+    /**
+     * An entry of the index being written.
+     */
+    private static final class IndexEntry {
+        private final long key;
+        private final AnalysisResult result;
+        /** The new record, null if the previous one is reused. */
+        private final byte[] record;
+        private int offset;
+        private int length;
+
+        IndexEntry(final long key, final AnalysisResult result, final byte[] record) {
+            this.key = key;
+            this.result = result;
+            this.record = record;
+            this.length = record == null ? 0 : record.length;
+        }
+    }
+
+    /**
+     * A result of the previous analysis, whose violations are only decoded
+     * from the mapped file when requested.
+     */
+    private final class MappedAnalysisResult extends AnalysisResult {
+        private final ByteBuffer source;
+        private final String fileName;
+        private final int offset;
+        private final int length;
+        private List<RuleViolation> violations;
+
+        MappedAnalysisResult(final ByteBuffer source, final String fileName, final long fileChecksum,
+                final long fileSize, final long lastModified, final long fileKey, final int offset, final int length) {
+            super(fileChecksum, fileSize, lastModified, fileKey, Collections.<RuleViolation>emptyList());
+            this.source = source;
+            this.fileName = fileName;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public synchronized List<RuleViolation> getViolations() {
+            if (violations == null) {
+                try (DataInputStream inputStream = streamAt(source, offset, length)) {
+                    inputStream.readUTF(); // the file name
+                    final int countViolations = inputStream.readInt();
+                    if (countViolations < 0 || countViolations > length) {
+                        throw new IOException("Invalid violation count " + countViolations);
+                    }
+                    final List<RuleViolation> decoded = new ArrayList<>(countViolations);
+                    for (int i = 0; i < countViolations; i++) {
+                        decoded.add(CachedRuleViolation.loadFromStream(inputStream, fileName, ruleMapper));
+                    }
+                    violations = decoded;
+                } catch (final IOException e) {
+                    throw new IllegalStateException("Malformed analysis cache entry for " + fileName, e);
+                }
+            }
+            return violations;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The 64 bits xxHash function (seed 0), which is considerably faster than
+ * {@link java.util.zip.Adler32} on large inputs. Files are hashed directly
+ * from a memory-mapped buffer.
+ */
+public final class XxHash64 {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private XxHash64() {
+        throw new AssertionError("Can't instantiate utility class");
+    }
+
+    /**
+     * Hashes the contents of the given file.
+     *
+     * @param file The file to hash, must be smaller than 2GB
+     *
+     * @return The hash
+     *
+     * @throws IOException If the file can't be read
+     */
+    public static long hash(final File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to be hashed: " + file);
+            }
+            return hash(channel.map(MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Hashes the remaining bytes of the given buffer. The position of the
+     * buffer is not changed.
+     *
+     * @param buffer The bytes to hash
+     *
+     * @return The hash
+     */
+    public static long hash(final ByteBuffer buffer) {
+        final ByteBuffer input = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        final int length = input.remaining();
+
+        long hash;
+        if (length >= 32) {
+            long v1 = PRIME1 + PRIME2;
+            long v2 = PRIME2;
+            long v3 = 0;
+            long v4 = -PRIME1;
+            while (input.remaining() >= 32) {
+                v1 = round(v1, input.getLong());
+                v2 = round(v2, input.getLong());
+                v3 = round(v3, input.getLong());
+                v4 = round(v4, input.getLong());
+            }
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = PRIME5;
+        }
+
+        hash += length;
+
+        while (input.remaining() >= 8) {
+            hash ^= round(0, input.getLong());
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+        }
+        if (input.remaining() >= 4) {
+            hash ^= (input.getInt() & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+        }
+        while (input.hasRemaining()) {
+            hash ^= (input.get() & 0xFF) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private static long round(final long acc, final long input) {
+        return Long.rotateLeft(acc + input * PRIME2, 31) * PRIME1;
+    }
+
+    private static long mergeRound(final long acc, final long value) {
+        return (acc ^ round(0, value)) * PRIME1 + PRIME4;
+    }
+}
@@ -69,6 +69,10 @@ public class PMDParameters {
     @Parameter(names = { "--stress", "-stress", "-S" }, description = "Performs a stress test.")
     private boolean stress = false;
 
+    @Parameter(names = "--largest-files-first",
+            description = "Schedules the largest files first on a work-stealing thread pool, to reduce the time threads stay idle at the end of the analysis.")
+    private boolean largestFilesFirst = false;
+
     @Parameter(names = { "--short-names", "-shortnames" }, description = "Prints shortened filenames in the report.")
     private boolean shortnames = false;
 
@@ -130,6 +134,29 @@ public class PMDParameters {
                     + "with the most up-to-date rule violations.")
     private String cacheLocation = null;
 
+    @Parameter(names = "--fast-cache-checksum",
+            description = "Compute the checksums of the changed files with xxHash instead of Adler32 "
+                    + "in the cache file, which is faster on large files. Changing this switch invalidates "
+                    + "the checksums of the changed files.")
+    private boolean fastCacheChecksum = false;
+
+    @Parameter(names = "--mapped-cache",
+            description = "Memory-map the cache file and index it by file, so that only the results of the analyzed "
+                    + "files are read. The cache file is replaced on the next run when this switch changes.")
+    private boolean mappedCache = false;
+
+    @Parameter(names = "--shared-cache", arity = 1,
+            description = "Specify the location of an analysis cache shared by several checkouts or machines, "
+                    + "instead of a cache file: either a directory or an HTTP(S) URL. The entries are addressed by "
+                    + "the contents of the analyzed files. Overrides the '--cache' option.")
+    private String sharedCacheLocation = null;
+
+    @Parameter(names = "--ruleset-snapshot", arity = 1,
+            description = "Specify the location of a file in which the resolved rulesets are recorded, to be loaded faster "
+                    + "on the next runs. If the file doesn't exist or is out of date, the rulesets are loaded from their XML "
+                    + "and the file is written.")
+    private String ruleSetSnapshotLocation = null;
+
     @Parameter(names = { "--no-cache", "-no-cache" }, description = "Explicitly disable incremental analysis. The '-cache' option is ignored if this switch is present in the command line.")
     private boolean noCache = false;
 
@@ -214,10 +241,17 @@ public class PMDParameters {
         configuration.setShowSuppressedViolations(this.isShowsuppressed());
         configuration.setSourceEncoding(this.getEncoding());
         configuration.setStressTest(this.isStress());
+        configuration.setLargestFilesFirst(this.isLargestFilesFirst());
         configuration.setSuppressMarker(this.getSuppressmarker());
         configuration.setThreads(this.getThreads());
         configuration.setFailOnViolation(this.isFailOnViolation());
+        configuration.setFastAnalysisCacheChecksum(this.fastCacheChecksum);
+        configuration.setMappedAnalysisCache(this.mappedCache);
         configuration.setAnalysisCacheLocation(this.cacheLocation);
+        if (this.sharedCacheLocation != null) {
+            configuration.setSharedAnalysisCacheLocation(this.sharedCacheLocation);
+        }
+        configuration.setRuleSetSnapshotLocation(this.ruleSetSnapshotLocation);
         configuration.setIgnoreIncrementalAnalysis(this.isIgnoreIncrementalAnalysis());
 
         LanguageVersion forceLangVersion = LanguageRegistry
@@ -283,6 +317,10 @@ public class PMDParameters {
         return stress;
     }
 
+    public boolean isLargestFilesFirst() {
+        return largestFilesFirst;
+    }
+
     public boolean isShortnames() {
         return shortnames;
     }
@@ -8,18 +8,25 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.commons.io.FilenameUtils;
 
 import net.sourceforge.pmd.annotation.Experimental;
+import net.sourceforge.pmd.cache.internal.XxHash64;
 import net.sourceforge.pmd.lang.ast.TokenMgrError;
 import net.sourceforge.pmd.util.FileFinder;
 import net.sourceforge.pmd.util.database.DBMSMetadata;
@@ -36,12 +43,35 @@ public class CPD {
     private Tokens tokens = new Tokens();
     private MatchAlgorithm matchAlgorithm;
     private Set<String> current = new HashSet<>();
+    private TokenCache tokenCache;
+    private Set<String> changedSources = new HashSet<>();
 
     public CPD(CPDConfiguration theConfiguration) {
         configuration = theConfiguration;
         // before we start any tokenizing (add(File...)), we need to reset the
         // static TokenEntry status
         TokenEntry.clearImages();
+
+        if (configuration.getCacheLocation() != null) {
+            tokenCache = new TokenCache(new File(configuration.getCacheLocation()), tokenizerSettings());
+            tokenCache.load();
+        } else if (configuration.isChangedOnly()) {
+            LOGGER.warning("No cache is configured, all the files are considered to be changed");
+        }
+    }
+
+    /**
+     * Describes the settings which affect the tokens, so that the cached
+     * tokens are discarded when they change.
+     */
+    private String tokenizerSettings() {
+        StringBuilder settings = new StringBuilder(configuration.getLanguage().getTerseName());
+        settings.append(';').append(configuration.getSourceEncoding());
+        Map<Object, Object> properties = new TreeMap<>(configuration.getLanguageProperties());
+        for (Map.Entry<Object, Object> property : properties.entrySet()) {
+            settings.append(';').append(property.getKey()).append('=').append(property.getValue());
+        }
+        return settings.toString();
     }
 
     public void setCpdListener(CPDListener cpdListener) {
@@ -50,7 +80,14 @@ public class CPD {
 
     public void go() {
         matchAlgorithm = new MatchAlgorithm(source, tokens, configuration.getMinimumTileSize(), listener);
+        matchAlgorithm.setThreads(configuration.getThreads());
+        if (configuration.isChangedOnly() && tokenCache != null) {
+            matchAlgorithm.setChangedSources(changedSources);
+        }
         matchAlgorithm.findMatches();
+        if (tokenCache != null) {
+            tokenCache.persist();
+        }
     }
 
     public Iterator<Match> getMatches() {
@@ -66,11 +103,135 @@ public class CPD {
     }
 
     public void add(List<File> files) throws IOException {
+        int threads = Math.min(configuration.getThreads(), files.size());
+        if (threads > 1 && newLanguageInstance() == null) {
+            LOGGER.warning("The language " + configuration.getLanguage().getName()
+                    + " can't be instantiated for each thread, files are tokenized on a single thread");
+            threads = 1;
+        }
+        if (threads > 1 || tokenCache != null) {
+            addBuffered(files, threads);
+            return;
+        }
         for (File f : files) {
             add(f);
         }
     }
 
+    /**
+     * Tokenizes the files on worker threads, each thread tokenizing with its
+     * own language instance into its own buffer, unless there is a single
+     * thread which then uses the tokenizer of the configuration. The tokens
+     * of the unchanged files are read from the cache instead. The buffers are
+     * merged in the order of the files, so that the result is the same as when
+     * the files are added one at a time.
+     */
+    private void addBuffered(List<File> files, final int threads) throws IOException {
+        final ThreadLocal<Tokenizer> tokenizers = new ThreadLocal<Tokenizer>() {
+            @Override
+            protected Tokenizer initialValue() {
+                return threads > 1 ? newLanguageInstance().getTokenizer() : configuration.tokenizer();
+            }
+        };
+
+        List<SourceCode> sourceCodes = new ArrayList<>(files.size());
+        for (File file : files) {
+            SourceCode sourceCode = sourceCodeToAdd(file);
+            if (sourceCode != null) {
+                sourceCodes.add(sourceCode);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<TokenizedFile>> results = new ArrayList<>(sourceCodes.size());
+            for (final SourceCode sourceCode : sourceCodes) {
+                results.add(executor.submit(new Callable<TokenizedFile>() {
+                    @Override
+                    public TokenizedFile call() throws IOException {
+                        return tokenize(tokenizers.get(), sourceCode);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                SourceCode sourceCode = sourceCodes.get(i);
+                TokenizedFile tokenizedFile = getResult(results.get(i));
+                TokenMgrError error = tokenizedFile.getError();
+                if (error != null) {
+                    if (!configuration.isSkipLexicalErrors()) {
+                        throw error;
+                    }
+                    System.err.println("Skipping " + sourceCode.getFileName() + ". Reason: " + error.getMessage());
+                    continue;
+                }
+                tokenizedFile.appendTo(tokens);
+                if (!tokenizedFile.isFromCache()) {
+                    changedSources.add(sourceCode.getFileName());
+                }
+                listener.addedFile(1, new File(sourceCode.getFileName()));
+                source.put(sourceCode.getFileName(), sourceCode);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tokenizes the source code, unless its tokens are cached.
+     */
+    private TokenizedFile tokenize(Tokenizer tokenizer, SourceCode sourceCode) throws IOException {
+        if (tokenCache == null) {
+            return TokenizedFile.tokenize(tokenizer, sourceCode);
+        }
+        String fileName = sourceCode.getFileName();
+        long checksum = XxHash64.hash(new File(fileName));
+        byte[] cachedTokens = tokenCache.get(fileName, checksum);
+        if (cachedTokens != null) {
+            return TokenizedFile.fromBytes(cachedTokens);
+        }
+        TokenizedFile tokenizedFile = TokenizedFile.tokenize(tokenizer, sourceCode);
+        if (tokenizedFile.getError() == null) {
+            tokenCache.put(fileName, checksum, tokenizedFile.toBytes());
+        }
+        return tokenizedFile;
+    }
+
+    private static TokenizedFile getResult(Future<TokenizedFile> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while tokenizing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Returns a new instance of the configured language, with the properties
+     * of the configuration, or null if the language can't be instantiated.
+     */
+    private Language newLanguageInstance() {
+        Language language = configuration.getLanguage();
+        if (language instanceof AnyLanguage) {
+            List<String> extensions = language.getExtensions();
+            return new AnyLanguage(extensions.toArray(new String[0]));
+        }
+        try {
+            Language copy = language.getClass().getDeclaredConstructor().newInstance();
+            copy.setProperties(configuration.getLanguageProperties());
+            return copy;
+        } catch (ReflectiveOperationException ignored) {
+            return null;
+        }
+    }
+
     private void addDirectory(File dir, boolean recurse) throws IOException {
         if (!dir.exists()) {
             throw new FileNotFoundException("Couldn't find directory " + dir);
@@ -81,14 +242,27 @@ public class CPD {
     }
 
     public void add(File file) throws IOException {
+        if (tokenCache != null) {
+            add(Collections.singletonList(file));
+            return;
+        }
+        SourceCode sourceCode = sourceCodeToAdd(file);
+        if (sourceCode != null) {
+            add(sourceCode);
+        }
+    }
 
+    /**
+     * Returns the source code of the file, or null if the file must be skipped.
+     */
+    private SourceCode sourceCodeToAdd(File file) throws IOException {
         if (configuration.isSkipDuplicates()) {
             // TODO refactor this thing into a separate class
             String signature = file.getName() + '_' + file.length();
             if (current.contains(signature)) {
                 System.err.println("Skipping " + file.getAbsolutePath()
                         + " since it appears to be a duplicate file and --skip-duplicate-files is set");
-                return;
+                return null;
             }
             current.add(signature);
         }
@@ -96,16 +270,15 @@ public class CPD {
         if (!FilenameUtils.equalsNormalizedOnSystem(file.getAbsoluteFile().getCanonicalPath(),
                 file.getAbsolutePath())) {
             System.err.println("Skipping " + file + " since it appears to be a symlink");
-            return;
+            return null;
         }
 
         if (!file.exists()) {
             System.err.println("Skipping " + file + " since it doesn't exist (broken symlink?)");
-            return;
+            return null;
         }
 
-        SourceCode sourceCode = configuration.sourceCodeFor(file);
-        add(sourceCode);
+        return configuration.sourceCodeFor(file);
     }
 
     public void add(DBURI dburi) throws IOException {
@@ -131,6 +131,24 @@ public class CPDConfiguration extends AbstractConfiguration {
     @Parameter(names = { "--help", "-h" }, description = "Print help text", required = false, help = true)
     private boolean help;
 
+    @Parameter(names = "--threads",
+            description = "Number of threads used to tokenize the files and to find the duplications. "
+                    + "The language properties are taken from the other options.",
+            required = false)
+    private int threads = 1;
+
+    @Parameter(names = "--cache",
+            description = "Specify the location of the cache file for incremental CPD. "
+                    + "The tokens of the files which didn't change since the previous run are read from the cache.",
+            required = false)
+    private String cacheLocation;
+
+    @Parameter(names = "--changed-only",
+            description = "Only report the duplications which involve a file that changed since the previous run. "
+                    + "This requires --cache.",
+            required = false)
+    private boolean changedOnly;
+
     @Parameter(names = { "--fail-on-violation", "--failOnViolation", "-failOnViolation" }, arity = 1,
             description = "By default CPD exits with status 4 if code duplications are found. Disable this option with '-failOnViolation false' to exit with 0 instead and just write the report.")
     private boolean failOnViolation = true;
@@ -255,35 +273,42 @@ public class CPDConfiguration extends AbstractConfiguration {
     }
 
     public static void setSystemProperties(CPDConfiguration configuration) {
+        configuration.getLanguage().setProperties(configuration.getLanguageProperties());
+    }
+
+    /**
+     * Returns the language properties matching the options of this configuration.
+     */
+    Properties getLanguageProperties() {
         Properties properties = new Properties();
-        if (configuration.isIgnoreLiterals()) {
+        if (isIgnoreLiterals()) {
             properties.setProperty(Tokenizer.IGNORE_LITERALS, "true");
         } else {
             properties.remove(Tokenizer.IGNORE_LITERALS);
         }
-        if (configuration.isIgnoreIdentifiers()) {
+        if (isIgnoreIdentifiers()) {
             properties.setProperty(Tokenizer.IGNORE_IDENTIFIERS, "true");
         } else {
             properties.remove(Tokenizer.IGNORE_IDENTIFIERS);
         }
-        if (configuration.isIgnoreAnnotations()) {
+        if (isIgnoreAnnotations()) {
             properties.setProperty(Tokenizer.IGNORE_ANNOTATIONS, "true");
         } else {
             properties.remove(Tokenizer.IGNORE_ANNOTATIONS);
         }
-        if (configuration.isIgnoreUsings()) {
+        if (isIgnoreUsings()) {
             properties.setProperty(Tokenizer.IGNORE_USINGS, "true");
         } else {
             properties.remove(Tokenizer.IGNORE_USINGS);
         }
-        if (configuration.isIgnoreLiteralSequences()) {
+        if (isIgnoreLiteralSequences()) {
             properties.setProperty(Tokenizer.OPTION_IGNORE_LITERAL_SEQUENCES, "true");
         } else {
             properties.remove(Tokenizer.OPTION_IGNORE_LITERAL_SEQUENCES);
         }
-        properties.setProperty(Tokenizer.OPTION_SKIP_BLOCKS, Boolean.toString(!configuration.isNoSkipBlocks()));
-        properties.setProperty(Tokenizer.OPTION_SKIP_BLOCKS_PATTERN, configuration.getSkipBlocksPattern());
-        configuration.getLanguage().setProperties(properties);
+        properties.setProperty(Tokenizer.OPTION_SKIP_BLOCKS, Boolean.toString(!isNoSkipBlocks()));
+        properties.setProperty(Tokenizer.OPTION_SKIP_BLOCKS_PATTERN, getSkipBlocksPattern());
+        return properties;
     }
 
     public Language getLanguage() {
@@ -302,6 +327,47 @@ public class CPDConfiguration extends AbstractConfiguration {
         this.minimumTileSize = minimumTileSize;
     }
 
+    /**
+     * Returns the number of threads used to tokenize the files and to find
+     * the duplications. With more than one thread, each thread tokenizes
+     * with its own instance of the language, configured with the
+     * {@linkplain #setSystemProperties(CPDConfiguration) properties} of
+     * this configuration.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the location of the file in which the tokens of the files
+     * are cached between runs, or null if there is no cache.
+     */
+    public String getCacheLocation() {
+        return cacheLocation;
+    }
+
+    public void setCacheLocation(String cacheLocation) {
+        this.cacheLocation = cacheLocation;
+    }
+
+    /**
+     * Returns true if only the duplications involving a file which changed
+     * since the previous run are reported. The changes are detected with
+     * the {@linkplain #getCacheLocation() cache}, without a cache all the
+     * files are considered to be changed.
+     */
+    public boolean isChangedOnly() {
+        return changedOnly;
+    }
+
+    public void setChangedOnly(boolean changedOnly) {
+        this.changedOnly = changedOnly;
+    }
+
     public boolean isSkipDuplicates() {
         return skipDuplicates;
     }
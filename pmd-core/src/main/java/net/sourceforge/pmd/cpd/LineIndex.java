@@ -0,0 +1,220 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The byte offsets of the lines of a file, which allow to read any range
+ * of lines without reading the file from the start, nor keeping its lines
+ * in memory. Lines are terminated like for {@link java.io.BufferedReader#readLine()}.
+ *
+ * <p>This only supports the encodings in which the line terminators can't
+ * be part of another character, that is UTF-8 and the single byte encodings
+ * compatible with ASCII.
+ *
+ * <p>The file stays open between the reads of its lines, as the matches
+ * of a file are rendered one after the other. Only the files which were
+ * read last are kept open, so that there's a bounded number of them.
+ */
+final class LineIndex {
+
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_OPEN_CHANNELS = 16;
+
+    /** The indexes whose file is open, the least recently read first. */
+    private static final Map<LineIndex, Boolean> OPEN_INDEXES =
+        new LinkedHashMap<LineIndex, Boolean>(MAX_OPEN_CHANNELS, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LineIndex, Boolean> eldest) {
+                if (size() > MAX_OPEN_CHANNELS) {
+                    eldest.getKey().closeChannel();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+    private final File file;
+    private final Charset charset;
+    private final long size;
+    /** Offset of the first byte of each line. */
+    private final int[] lineStarts;
+    private final int lineCount;
+    /** Guarded by {@link #OPEN_INDEXES}. */
+    private FileChannel channel;
+
+    private LineIndex(File file, Charset charset, long size, int[] lineStarts, int lineCount) {
+        this.file = file;
+        this.charset = charset;
+        this.size = size;
+        this.lineStarts = lineStarts;
+        this.lineCount = lineCount;
+    }
+
+    /**
+     * Indexes the lines of the file.
+     *
+     * @param file    The file
+     * @param charset The encoding of the file, unless it starts with a byte order mark
+     *
+     * @return The index, or null if the encoding is not supported
+     *
+     * @throws IOException If the file can't be read
+     */
+    static LineIndex of(File file, Charset charset) throws IOException {
+        if (file.length() > Integer.MAX_VALUE) {
+            return null;
+        }
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int length = IOUtils.read(inputStream, buffer);
+
+            int start = 0;
+            Charset actualCharset = charset;
+            if (startsWith(buffer, length, UTF8_BOM)) {
+                start = UTF8_BOM.length;
+                actualCharset = StandardCharsets.UTF_8;
+            } else if (length >= 2 && (buffer[0] == (byte) 0xFE && buffer[1] == (byte) 0xFF
+                    || buffer[0] == (byte) 0xFF && buffer[1] == (byte) 0xFE)) {
+                // UTF-16
+                return null;
+            }
+            if (!isSupported(actualCharset)) {
+                return null;
+            }
+
+            int[] lineStarts = new int[64];
+            int lineCount = 0;
+            // offset of the first byte of the buffer
+            long offset = 0;
+            boolean atLineStart = true;
+            boolean afterCr = false;
+            while (length > 0) {
+                for (int i = start; i < length; i++) {
+                    final byte b = buffer[i];
+                    if (afterCr && b == '\n') {
+                        // the end of a \r\n terminator
+                        afterCr = false;
+                        continue;
+                    }
+                    if (atLineStart) {
+                        if (offset + i > Integer.MAX_VALUE) {
+                            // the file grew
+                            return null;
+                        }
+                        if (lineCount == lineStarts.length) {
+                            lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+                        }
+                        lineStarts[lineCount++] = (int) (offset + i);
+                    }
+                    atLineStart = b == '\n' || b == '\r';
+                    afterCr = b == '\r';
+                }
+                offset += length;
+                start = 0;
+                length = IOUtils.read(inputStream, buffer);
+            }
+            return new LineIndex(file, actualCharset, offset, lineStarts, lineCount);
+        }
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSupported(Charset charset) {
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            return true;
+        }
+        return charset.canEncode()
+                && charset.newEncoder().maxBytesPerChar() == 1
+                && Arrays.equals("\r\n".getBytes(charset), new byte[] {'\r', '\n'});
+    }
+
+    int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Reads a range of lines. Lines past the end of the file are ignored.
+     *
+     * @param startLine Start line (inclusive, 1-based)
+     * @param endLine   End line (inclusive, 1-based)
+     *
+     * @throws IOException If the file can't be read
+     */
+    List<String> getLines(int startLine, int endLine) throws IOException {
+        final int last = Math.min(endLine, lineCount);
+        if (startLine > last) {
+            return new ArrayList<>();
+        }
+        final long from = lineStarts[startLine - 1];
+        final long to = last < lineCount ? lineStarts[last] : size;
+        final ByteBuffer bytes = ByteBuffer.allocate((int) (to - from));
+        synchronized (OPEN_INDEXES) {
+            if (channel == null) {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            }
+            // evicts the least recently read index if there are too many open files
+            OPEN_INDEXES.put(this, Boolean.TRUE);
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, from + bytes.position()) < 0) {
+                    throw new IOException("File " + file + " was truncated");
+                }
+            }
+        }
+
+        final List<String> lines = new ArrayList<>(last - startLine + 1);
+        for (int line = startLine; line <= last; line++) {
+            final int lineStart = (int) (lineStarts[line - 1] - from);
+            int lineEnd = (int) ((line < lineCount ? lineStarts[line] : to) - from);
+            // strip the line terminator
+            if (lineEnd > lineStart && bytes.get(lineEnd - 1) == '\n') {
+                lineEnd--;
+            }
+            if (lineEnd > lineStart && bytes.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            lines.add(new String(bytes.array(), lineStart, lineEnd - lineStart, charset));
+        }
+        return lines;
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // the file was only read
+        }
+        channel = null;
+    }
+}
@@ -5,16 +5,21 @@
 package net.sourceforge.pmd.cpd;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class MatchAlgorithm {
 
     private static final int MOD = 37;
-    private int lastHash;
     private int lastMod = 1;
 
     private List<Match> matches;
@@ -23,6 +28,8 @@ public class MatchAlgorithm {
     private List<TokenEntry> code;
     private CPDListener cpdListener;
     private int min;
+    private int threads = 1;
+    private Set<String> changedSources;
 
     public MatchAlgorithm(Map<String, SourceCode> sourceCode, Tokens tokens, int min) {
         this(sourceCode, tokens, min, new CPDNullListener());
@@ -55,24 +62,75 @@ public class MatchAlgorithm {
         return this.min;
     }
 
+    /**
+     * Sets the number of threads used to hash the tokens and to collect the
+     * matches. The hashes are computed in parallel by segments of files, and
+     * the matches are collected in parallel by partitions of the hashes.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Restricts the matches to those which have a mark in one of the given
+     * sources. The groups of marks which have no mark in these sources are
+     * not compared at all. By default, all the matches are reported.
+     *
+     * @param changedSources The source IDs of the changed files, or null to report all matches
+     */
+    public void setChangedSources(Set<String> changedSources) {
+        this.changedSources = changedSources;
+    }
+
     public void findMatches() {
         cpdListener.phaseUpdate(CPDListener.HASH);
-        Map<TokenEntry, Object> markGroups = hash();
+        final int[] identifiers = tokens.getIdentifiers();
+        final int size = tokens.size();
+        final int[] hashes = new int[size];
+        final int[] next = new int[size];
+        List<Callable<Void>> hashTasks = new ArrayList<>();
+        int segmentSize = size / Math.max(1, threads) + 1;
+        int end = size - 1;
+        while (end >= 0) {
+            // segments start after an EOF, where the rolling hash restarts
+            int start = Math.max(0, end - segmentSize + 1);
+            while (start > 0 && identifiers[start - 1] != 0) {
+                start--;
+            }
+            final int segmentStart = start;
+            final int segmentEnd = end;
+            hashTasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    hash(identifiers, segmentStart, segmentEnd, hashes, next);
+                    return null;
+                }
+            });
+            end = start - 1;
+        }
+        runAll(hashTasks);
 
         cpdListener.phaseUpdate(CPDListener.MATCH);
-        MatchCollector matchCollector = new MatchCollector(this);
-        for (Iterator<Object> i = markGroups.values().iterator(); i.hasNext();) {
-            Object o = i.next();
-            if (o instanceof List) {
-                @SuppressWarnings("unchecked")
-                List<TokenEntry> l = (List<TokenEntry>) o;
-                Collections.reverse(l);
-                matchCollector.collect(l);
-            }
-            i.remove();
+        final int partitions = Math.max(1, threads);
+        List<Callable<List<Match>>> matchTasks = new ArrayList<>();
+        for (int i = 0; i < partitions; i++) {
+            final int partition = i;
+            matchTasks.add(new Callable<List<Match>>() {
+                @Override
+                public List<Match> call() {
+                    return collectMatches(MarkGroups.group(hashes, next, partition, partitions));
+                }
+            });
+        }
+        List<Match> allMatches = new ArrayList<>();
+        for (List<Match> partitionMatches : runAll(matchTasks)) {
+            allMatches.addAll(partitionMatches);
         }
+
         cpdListener.phaseUpdate(CPDListener.GROUPING);
-        matches = matchCollector.getMatches();
+        // the partitions are disjoint: a mark only belongs to the group of its hash
+        Collections.sort(allMatches);
+        matches = changedSources == null ? allMatches : matchesInChangedSources(allMatches);
 
         for (Match match : matches) {
             for (Mark mark : match) {
@@ -89,43 +147,219 @@ public class MatchAlgorithm {
         cpdListener.phaseUpdate(CPDListener.DONE);
     }
 
-    @SuppressWarnings("PMD.JumbledIncrementer")
-    private Map<TokenEntry, Object> hash() {
-        Map<TokenEntry, Object> markGroups = new HashMap<>(tokens.size());
-        for (int i = code.size() - 1; i >= 0; i--) {
-            TokenEntry token = code.get(i);
-            if (!TokenEntry.EOF.equals(token)) {
-                int last = tokenAt(min, token).getIdentifier();
-                lastHash = MOD * lastHash + token.getIdentifier() - lastMod * last;
-                token.setHashCode(lastHash);
-                Object o = markGroups.get(token);
-
-                // Note that this insertion method is worthwhile since the vast
-                // majority
-                // markGroup keys will have only one value.
-                if (o == null) {
-                    markGroups.put(token, token);
-                } else if (o instanceof TokenEntry) {
-                    List<TokenEntry> l = new ArrayList<>();
-                    l.add((TokenEntry) o);
-                    l.add(token);
-                    markGroups.put(token, l);
-                } else {
-                    @SuppressWarnings("unchecked")
-                    List<TokenEntry> l = (List<TokenEntry>) o;
-                    l.add(token);
+    private List<Match> collectMatches(MarkGroups markGroups) {
+        MatchCollector matchCollector = new MatchCollector(this);
+        int[] marks = new int[16];
+        for (int slot = 0; slot < markGroups.heads.length; slot++) {
+            int head = markGroups.heads[slot];
+            if (head == MarkGroups.EMPTY || markGroups.next[head] == MarkGroups.EMPTY) {
+                // the vast majority of the groups have only one mark
+                continue;
+            }
+            int count = 0;
+            boolean changed = changedSources == null;
+            for (int mark = head; mark != MarkGroups.EMPTY; mark = markGroups.next[mark]) {
+                if (count == marks.length) {
+                    marks = Arrays.copyOf(marks, count * 2);
                 }
+                marks[count++] = mark;
+                changed = changed || changedSources.contains(tokens.getSourceId(mark));
+            }
+            if (!changed) {
+                // the matches of the group would only involve unchanged sources
+                continue;
+            }
+            matchCollector.collect(marks, count, markGroups.keys[slot]);
+        }
+        return matchCollector.getMatches();
+    }
+
+    private List<Match> matchesInChangedSources(List<Match> allMatches) {
+        List<Match> result = new ArrayList<>();
+        for (Match match : allMatches) {
+            for (Mark mark : match) {
+                if (changedSources.contains(mark.getFilename())) {
+                    result.add(match);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs the tasks, on the configured number of threads.
+     */
+    private <T> List<T> runAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            if (threads <= 1 || tasks.size() <= 1) {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+                return results;
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+            try {
+                for (Future<T> future : executor.invokeAll(tasks)) {
+                    results.add(future.get());
+                }
+                return results;
+            } finally {
+                executor.shutdownNow();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while finding matches", e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the identifiers of the tokens, which are 0 for the EOF marker.
+     */
+    int[] getIdentifiers() {
+        return tokens.getIdentifiers();
+    }
+
+    /**
+     * Returns the token at the given index, with the hashcode of its mark group.
+     */
+    TokenEntry getMark(int index, int hashCode) {
+        return tokens.getToken(index, hashCode);
+    }
+
+    /**
+     * Computes the rolling hash of the {@code min} tokens starting at every
+     * token of the segment. The segment must start after an EOF, or at the
+     * beginning of the tokens. Tokens which can't start a match of
+     * {@code min} tokens are flagged as {@link MarkGroups#NOT_A_MARK} in
+     * {@code next}.
+     */
+    @SuppressWarnings("PMD.JumbledIncrementer")
+    private void hash(int[] identifiers, int start, int end, int[] hashes, int[] next) {
+        int size = tokens.size();
+        int lastHash = 0;
+        for (int i = end; i >= start; i--) {
+            int identifier = identifiers[i];
+            if (identifier != 0) {
+                int last = i + min < size ? identifiers[i + min] : 0;
+                lastHash = MOD * lastHash + identifier - lastMod * last;
+                hashes[i] = lastHash;
+                next[i] = MarkGroups.EMPTY;
             } else {
+                next[i] = MarkGroups.NOT_A_MARK;
                 lastHash = 0;
-                for (int end = Math.max(0, i - min + 1); i > end; i--) {
-                    token = code.get(i - 1);
-                    lastHash = MOD * lastHash + token.getIdentifier();
-                    if (TokenEntry.EOF.equals(token)) {
+                for (int end2 = Math.max(0, i - min + 1); i > end2; i--) {
+                    identifier = identifiers[i - 1];
+                    lastHash = MOD * lastHash + identifier;
+                    if (identifier == 0) {
                         break;
                     }
+                    next[i - 1] = MarkGroups.NOT_A_MARK;
+                }
+            }
+        }
+    }
+
+    /**
+     * Groups the token indices by hash, in an open-addressing table of hashes
+     * whose values are the head of a linked list of indices. The lists are
+     * stored in a single array, {@code next[index]} being the index following
+     * {@code index} in its group. The array is shared by the groups of all the
+     * partitions, since every index belongs to a single partition.
+     */
+    private static final class MarkGroups {
+
+        static final int EMPTY = -1;
+        static final int NOT_A_MARK = -2;
+
+        int[] keys;
+        int[] heads;
+        final int[] next;
+        private int mask;
+        private int shift;
+        private int groupCount;
+
+        private MarkGroups(int[] next, int expectedGroups) {
+            this.next = next;
+            int capacity = 16;
+            while (capacity * 3L < expectedGroups * 4L) {
+                capacity <<= 1;
+            }
+            allocate(capacity);
+        }
+
+        /**
+         * Groups the marks whose hash belongs to the partition.
+         */
+        static MarkGroups group(int[] hashes, int[] next, int partition, int partitions) {
+            MarkGroups groups = new MarkGroups(next, next.length / partitions);
+            // add by decreasing index, so that the groups are sorted by increasing index
+            for (int i = next.length - 1; i >= 0; i--) {
+                if (partitionOf(hashes[i], partitions) == partition && next[i] != NOT_A_MARK) {
+                    groups.add(hashes[i], i);
+                }
+            }
+            return groups;
+        }
+
+        private static int partitionOf(int hash, int partitions) {
+            // another multiplier than the one of the slots, both use the high bits
+            return (int) (((hash * 0x85EBCA6B) & 0xFFFFFFFFL) * partitions >>> 32);
+        }
+
+        private void allocate(int capacity) {
+            keys = new int[capacity];
+            heads = new int[capacity];
+            Arrays.fill(heads, EMPTY);
+            mask = capacity - 1;
+            shift = Integer.numberOfLeadingZeros(mask);
+        }
+
+        private int slotOf(int hash) {
+            int slot = hash * 0x9E3779B9 >>> shift;
+            while (heads[slot] != EMPTY && keys[slot] != hash) {
+                slot = slot + 1 & mask;
+            }
+            return slot;
+        }
+
+        private void add(int hash, int index) {
+            int slot = slotOf(hash);
+            if (heads[slot] == EMPTY) {
+                if (++groupCount * 4L > heads.length * 3L) {
+                    grow();
+                    slot = slotOf(hash);
+                }
+                keys[slot] = hash;
+            }
+            next[index] = heads[slot];
+            heads[slot] = index;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldHeads = heads;
+            allocate(oldHeads.length * 2);
+            for (int i = 0; i < oldHeads.length; i++) {
+                if (oldHeads[i] != EMPTY) {
+                    int slot = slotOf(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    heads[slot] = oldHeads[i];
                 }
             }
         }
-        return markGroups;
     }
 }
@@ -20,21 +20,37 @@ public class MatchCollector {
     }
 
     public void collect(List<TokenEntry> marks) {
+        int[] indices = new int[marks.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = marks.get(i).getIndex();
+        }
+        collect(indices, indices.length, marks.isEmpty() ? 0 : marks.get(0).hashCode());
+    }
+
+    /**
+     * Collects the matches of a group of marks with the same hash.
+     *
+     * @param marks    The token indices of the marks, in increasing order
+     * @param count    The number of marks
+     * @param hashCode The hash of the group
+     */
+    void collect(int[] marks, int count, int hashCode) {
+        int[] identifiers = ma.getIdentifiers();
         // first get a pairwise collection of all maximal matches
-        for (int i = 0; i < marks.size() - 1; i++) {
-            TokenEntry mark1 = marks.get(i);
-            for (int j = i + 1; j < marks.size(); j++) {
-                TokenEntry mark2 = marks.get(j);
-                int diff = mark1.getIndex() - mark2.getIndex();
+        for (int i = 0; i < count - 1; i++) {
+            int mark1 = marks[i];
+            for (int j = i + 1; j < count; j++) {
+                int mark2 = marks[j];
+                int diff = mark1 - mark2;
                 if (-diff < ma.getMinimumTileSize()) {
                     continue;
                 }
-                if (hasPreviousDupe(mark1, mark2)) {
+                if (hasPreviousDupe(identifiers, mark1, mark2)) {
                     continue;
                 }
 
                 // "match too small" check
-                int dupes = countDuplicateTokens(mark1, mark2);
+                int dupes = countDuplicateTokens(identifiers, mark1, mark2);
                 if (dupes < ma.getMinimumTileSize()) {
                     continue;
                 }
@@ -42,37 +58,37 @@ public class MatchCollector {
                 if (diff + dupes >= 1) {
                     continue;
                 }
-                reportMatch(mark1, mark2, dupes);
+                reportMatch(mark1, mark2, dupes, hashCode);
             }
         }
     }
 
-    private void reportMatch(TokenEntry mark1, TokenEntry mark2, int dupes) {
+    private void reportMatch(int mark1, int mark2, int dupes, int hashCode) {
         Map<Integer, Match> matches = matchTree.get(dupes);
         if (matches == null) {
             matches = new TreeMap<>();
             matchTree.put(dupes, matches);
-            addNewMatch(mark1, mark2, dupes, matches);
+            addNewMatch(mark1, mark2, dupes, hashCode, matches);
         } else {
-            Match matchA = matchTree.get(dupes).get(mark1.getIndex());
-            Match matchB = matchTree.get(dupes).get(mark2.getIndex());
+            Match matchA = matches.get(mark1);
+            Match matchB = matches.get(mark2);
 
             if (matchA == null && matchB == null) {
-                addNewMatch(mark1, mark2, dupes, matches);
+                addNewMatch(mark1, mark2, dupes, hashCode, matches);
             } else if (matchA == null) {
-                matchB.addTokenEntry(mark1);
-                matches.put(mark1.getIndex(), matchB);
+                matchB.addTokenEntry(ma.getMark(mark1, hashCode));
+                matches.put(mark1, matchB);
             } else if (matchB == null) {
-                matchA.addTokenEntry(mark2);
-                matches.put(mark2.getIndex(), matchA);
+                matchA.addTokenEntry(ma.getMark(mark2, hashCode));
+                matches.put(mark2, matchA);
             }
         }
     }
 
-    private void addNewMatch(TokenEntry mark1, TokenEntry mark2, int dupes, Map<Integer, Match> matches) {
-        Match match = new Match(dupes, mark1, mark2);
-        matches.put(mark1.getIndex(), match);
-        matches.put(mark2.getIndex(), match);
+    private void addNewMatch(int mark1, int mark2, int dupes, int hashCode, Map<Integer, Match> matches) {
+        Match match = new Match(dupes, ma.getMark(mark1, hashCode), ma.getMark(mark2, hashCode));
+        matches.put(mark1, match);
+        matches.put(mark2, match);
         matchList.add(match);
     }
 
@@ -82,24 +98,25 @@ public class MatchCollector {
         return matchList;
     }
 
-    private boolean hasPreviousDupe(TokenEntry mark1, TokenEntry mark2) {
-        if (mark1.getIndex() == 0) {
+    private boolean hasPreviousDupe(int[] identifiers, int mark1, int mark2) {
+        if (mark1 == 0) {
             return false;
         }
-        return !matchEnded(ma.tokenAt(-1, mark1), ma.tokenAt(-1, mark2));
+        return !matchEnded(identifiers, mark1 - 1, mark2 - 1);
     }
 
-    private int countDuplicateTokens(TokenEntry mark1, TokenEntry mark2) {
+    private int countDuplicateTokens(int[] identifiers, int mark1, int mark2) {
         int index = 0;
-        while (!matchEnded(ma.tokenAt(index, mark1), ma.tokenAt(index, mark2))) {
+        while (!matchEnded(identifiers, mark1 + index, mark2 + index)) {
             index++;
         }
         return index;
     }
 
-    private boolean matchEnded(TokenEntry token1, TokenEntry token2) {
-        return token1.getIdentifier() != token2.getIdentifier()
-                || TokenEntry.EOF.equals(token1)
-                || TokenEntry.EOF.equals(token2);
+    private boolean matchEnded(int[] identifiers, int token1, int token2) {
+        // the identifier of EOF is 0
+        return identifiers[token1] != identifiers[token2]
+                || identifiers[token1] == 0
+                || identifiers[token2] == 0;
     }
 }
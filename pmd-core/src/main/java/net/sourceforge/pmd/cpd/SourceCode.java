@@ -6,10 +6,12 @@ package net.sourceforge.pmd.cpd;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.lang.ref.SoftReference;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
@@ -101,9 +103,17 @@ public class SourceCode {
         }
     }
 
+    /**
+     * Loads the code of a file. Ranges of lines are read with the help of
+     * an index of the line offsets, which is built on the first access to
+     * a range, so that they don't require the lines of the whole file to
+     * be kept in memory, nor the file to be read from its start again.
+     */
     public static class FileCodeLoader extends CodeLoader {
         private File file;
         private String encoding;
+        private LineIndex lineIndex;
+        private boolean lineIndexUnsupported;
 
         public FileCodeLoader(File file, String encoding) {
             this.file = file;
@@ -125,6 +135,27 @@ public class SourceCode {
             return encoding;
         }
 
+        @Override
+        public List<String> getCodeSlice(int startLine, int endLine) {
+            if (lineIndex == null && !lineIndexUnsupported) {
+                try {
+                    lineIndex = LineIndex.of(file, Charset.forName(encoding));
+                } catch (IOException | IllegalArgumentException ignored) {
+                    // the lines are read with a reader, which reports the problem
+                    lineIndex = null;
+                }
+                lineIndexUnsupported = lineIndex == null;
+            }
+            if (lineIndex == null) {
+                return super.getCodeSlice(startLine, endLine);
+            }
+            try {
+                return lineIndex.getLines(startLine, endLine);
+            } catch (IOException e) {
+                throw new RuntimeException("Problem while reading " + getFileName() + ":" + e.getMessage());
+            }
+        }
+
         @Override
         public String getFileName() {
             return file.getAbsolutePath();
@@ -0,0 +1,152 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import net.sourceforge.pmd.PMDVersion;
+
+/**
+ * A cache of the tokens of the files, backed by a regular file. The tokens
+ * of a file are reused as long as the checksum of the file doesn't change,
+ * so that unchanged files are not tokenized again. The cache is invalidated
+ * when the PMD version or the tokenizer settings change.
+ *
+ * <p>Only the entries of the files which were looked up or added during the
+ * run are persisted, as in the analysis cache of PMD.
+ */
+final class TokenCache {
+
+    private static final Logger LOG = Logger.getLogger(TokenCache.class.getName());
+
+    private final File cacheFile;
+    private final String settings;
+    private final Map<String, Entry> loadedEntries = new ConcurrentHashMap<>();
+    private final Map<String, Entry> updatedEntries = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new cache backed by the given file.
+     *
+     * @param cacheFile The file on which to store the tokens
+     * @param settings  A description of the tokenizer settings, the cached
+     *                  tokens are discarded if it changes
+     */
+    TokenCache(File cacheFile, String settings) {
+        this.cacheFile = cacheFile;
+        this.settings = settings;
+    }
+
+    /**
+     * Loads the cached tokens, unless the cache is invalid.
+     */
+    void load() {
+        if (!cacheFile.isFile() || cacheFile.length() == 0) {
+            if (cacheFile.isDirectory()) {
+                LOG.severe("The configured CPD cache location must be the path to a file, but is a directory.");
+            }
+            return;
+        }
+
+        try (DataInputStream inputStream = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(cacheFile.toPath())))) {
+            if (!PMDVersion.VERSION.equals(inputStream.readUTF())) {
+                LOG.info("CPD cache invalidated, PMD version changed.");
+                return;
+            }
+            if (!settings.equals(inputStream.readUTF())) {
+                LOG.info("CPD cache invalidated, tokenizer settings changed.");
+                return;
+            }
+
+            while (inputStream.available() > 0) {
+                final String fileName = inputStream.readUTF();
+                final long checksum = inputStream.readLong();
+                final byte[] tokens = new byte[inputStream.readInt()];
+                inputStream.readFully(tokens);
+                loadedEntries.put(fileName, new Entry(checksum, tokens));
+            }
+            LOG.info("CPD cache loaded");
+        } catch (final EOFException e) {
+            loadedEntries.clear();
+            LOG.warning("CPD cache file " + cacheFile.getPath() + " is malformed, will not be used");
+        } catch (final IOException e) {
+            loadedEntries.clear();
+            LOG.severe("Could not load CPD cache from file. " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the cached tokens of the file, or null if the file is not
+     * cached or its checksum changed. This may be called concurrently.
+     *
+     * @param fileName The name of the file
+     * @param checksum The current checksum of the file
+     */
+    byte[] get(String fileName, long checksum) {
+        final Entry entry = loadedEntries.get(fileName);
+        if (entry == null || entry.checksum != checksum) {
+            return null;
+        }
+        updatedEntries.put(fileName, entry);
+        return entry.tokens;
+    }
+
+    /**
+     * Stores the tokens of the file. This may be called concurrently.
+     *
+     * @param fileName The name of the file
+     * @param checksum The current checksum of the file
+     * @param tokens   The encoded tokens
+     */
+    void put(String fileName, long checksum, byte[] tokens) {
+        updatedEntries.put(fileName, new Entry(checksum, tokens));
+    }
+
+    /**
+     * Writes the entries of the files of this run to the cache file.
+     */
+    void persist() {
+        final File parentFile = cacheFile.getAbsoluteFile().getParentFile();
+        if (parentFile != null && !parentFile.exists()) {
+            parentFile.mkdirs();
+        }
+
+        try (DataOutputStream outputStream = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(cacheFile.toPath())))) {
+            outputStream.writeUTF(PMDVersion.VERSION);
+            outputStream.writeUTF(settings);
+            for (final Map.Entry<String, Entry> entry : updatedEntries.entrySet()) {
+                outputStream.writeUTF(entry.getKey());
+                outputStream.writeLong(entry.getValue().checksum);
+                outputStream.writeInt(entry.getValue().tokens.length);
+                outputStream.write(entry.getValue().tokens);
+            }
+            LOG.info("CPD cache updated");
+        } catch (final IOException e) {
+            LOG.severe("Could not persist CPD cache to file. " + e.getMessage());
+        }
+    }
+
+    private static final class Entry {
+
+        private final long checksum;
+        private final byte[] tokens;
+
+        Entry(long checksum, byte[] tokens) {
+            this.checksum = checksum;
+            this.tokens = tokens;
+        }
+    }
+}
@@ -6,7 +6,6 @@ package net.sourceforge.pmd.cpd;
 
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -76,6 +75,18 @@ public class TokenEntry implements Comparable<TokenEntry> {
         this.index = TOKEN_COUNT.get().getAndIncrement();
     }
 
+    /**
+     * Creates a token entry from the columns of {@link Tokens}.
+     */
+    TokenEntry(int identifier, String tokenSrcID, int beginLine, int beginColumn, int endColumn, int index) {
+        this.identifier = identifier;
+        this.tokenSrcID = tokenSrcID;
+        this.beginLine = beginLine;
+        this.beginColumn = beginColumn;
+        this.endColumn = endColumn;
+        this.index = index;
+    }
+
     private boolean isOk(int coord) {
         return coord >= 1 || coord == -1;
     }
@@ -109,7 +120,6 @@ public class TokenEntry implements Comparable<TokenEntry> {
         }
 
         public void restore(Tokens tokens) {
-            final List<TokenEntry> entries = tokens.getTokens();
             TokenEntry.TOKEN_COUNT.get().set(tokenCount);
             final Iterator<Map.Entry<String, Integer>> it = TOKENS.get().entrySet().iterator();
             while (it.hasNext()) {
@@ -117,7 +127,7 @@ public class TokenEntry implements Comparable<TokenEntry> {
                     it.remove();
                 }
             }
-            entries.subList(tokenCount, entries.size()).clear();
+            tokens.truncate(tokenCount);
         }
     }
 
@@ -201,11 +211,39 @@ public class TokenEntry implements Comparable<TokenEntry> {
     }
 
     final void setImage(String image) {
+        this.identifier = identifierOf(image);
+    }
+
+    /**
+     * Returns the identifier of the image for the current thread,
+     * registering the image if it is new.
+     */
+    static int identifierOf(String image) {
         Integer i = TOKENS.get().get(image);
         if (i == null) {
             i = TOKENS.get().size() + 1;
             TOKENS.get().put(image, i);
         }
-        this.identifier = i.intValue();
+        return i.intValue();
+    }
+
+    /**
+     * Returns the images registered by the current thread, indexed by
+     * identifier. The element 0 is the image of EOF, which is null.
+     */
+    static String[] getImages() {
+        final Map<String, Integer> tokens = TOKENS.get();
+        final String[] images = new String[tokens.size() + 1];
+        for (Map.Entry<String, Integer> e : tokens.entrySet()) {
+            images[e.getValue()] = e.getKey();
+        }
+        return images;
+    }
+
+    /**
+     * Sets the index of the next token created by the current thread.
+     */
+    static void setNextIndex(int index) {
+        TOKEN_COUNT.get().set(index);
     }
 }
@@ -0,0 +1,109 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import net.sourceforge.pmd.lang.ast.TokenMgrError;
+
+/**
+ * The tokens of a single file, tokenized apart from the other files, with
+ * their own images. This is the unit of work of the parallel tokenization,
+ * and the value of the {@link TokenCache}.
+ */
+final class TokenizedFile {
+
+    private final Tokens tokens;
+    private final String[] images;
+    private final TokenMgrError error;
+    private final boolean fromCache;
+
+    private TokenizedFile(Tokens tokens, String[] images, TokenMgrError error, boolean fromCache) {
+        this.tokens = tokens;
+        this.images = images;
+        this.error = error;
+        this.fromCache = fromCache;
+    }
+
+    /**
+     * Tokenizes the source code with images of its own. This must not
+     * be called on the thread which tokenizes into the tokens of CPD,
+     * since the images of the current thread are cleared.
+     */
+    static TokenizedFile tokenize(Tokenizer tokenizer, SourceCode sourceCode) throws IOException {
+        TokenEntry.clearImages();
+        try {
+            Tokens fileTokens = new Tokens();
+            tokenizer.tokenize(sourceCode, fileTokens);
+            return new TokenizedFile(fileTokens, TokenEntry.getImages(), null, false);
+        } catch (TokenMgrError e) {
+            return new TokenizedFile(null, null, e, false);
+        } finally {
+            TokenEntry.clearImages();
+        }
+    }
+
+    /**
+     * Decodes a file encoded by {@link #toBytes()}.
+     */
+    static TokenizedFile fromBytes(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            String[] images = new String[in.readInt()];
+            for (int i = 1; i < images.length; i++) {
+                byte[] image = new byte[in.readInt()];
+                in.readFully(image);
+                images[i] = new String(image, StandardCharsets.UTF_8);
+            }
+            return new TokenizedFile(Tokens.read(in), images, null, true);
+        }
+    }
+
+    byte[] toBytes() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(images.length);
+            for (int i = 1; i < images.length; i++) {
+                // not writeUTF, which is limited to 64K, a string literal may be longer
+                byte[] image = images[i].getBytes(StandardCharsets.UTF_8);
+                out.writeInt(image.length);
+                out.write(image);
+            }
+            tokens.write(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns the lexical error which prevented the tokenization, if any.
+     */
+    TokenMgrError getError() {
+        return error;
+    }
+
+    /**
+     * Returns true if the tokens were read from the cache, which means the
+     * file didn't change since the previous run.
+     */
+    boolean isFromCache() {
+        return fromCache;
+    }
+
+    /**
+     * Appends the tokens, registering the images with the current thread.
+     */
+    void appendTo(Tokens allTokens) {
+        int[] identifierMapping = new int[images.length];
+        for (int i = 1; i < images.length; i++) {
+            identifierMapping[i] = TokenEntry.identifierOf(images[i]);
+        }
+        allTokens.addAll(tokens, identifierMapping);
+        TokenEntry.setNextIndex(allTokens.size());
+    }
+}
@@ -4,28 +4,109 @@
 
 package net.sourceforge.pmd.cpd;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 
+/**
+ * The tokens of all the source files, in the order they were added.
+ * The tokens are stored in columns of primitive arrays (identifier, line,
+ * begin and end column), and the source ID is stored once per run of
+ * tokens from the same source. {@link TokenEntry} instances are only
+ * created when a token is accessed through {@link #getTokens()}, as
+ * opposed to being retained for every token.
+ */
 public class Tokens {
 
-    private List<TokenEntry> tokens = new ArrayList<>();
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int size;
+    private int[] identifiers = new int[INITIAL_CAPACITY];
+    private int[] beginLines = new int[INITIAL_CAPACITY];
+    private int[] beginColumns = new int[INITIAL_CAPACITY];
+    private int[] endColumns = new int[INITIAL_CAPACITY];
+
+    /** Index of the first token of each run of tokens from the same source. */
+    private int[] sourceStarts = new int[16];
+    private final List<String> sourceIds = new ArrayList<>();
+
+    /**
+     * The last added token, which is kept until the next one is added:
+     * tokenizers may still update it through {@link #getTokens()}.
+     */
+    private TokenEntry last;
+
+    private final List<TokenEntry> tokenView = new AbstractList<TokenEntry>() {
+        @Override
+        public TokenEntry get(int index) {
+            return Tokens.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            if (toIndex != size) {
+                throw new UnsupportedOperationException("Only the last tokens may be removed");
+            }
+            truncate(fromIndex);
+        }
+    };
 
     public void add(TokenEntry tokenEntry) {
-        this.tokens.add(tokenEntry);
+        flush();
+        ensureCapacity(size + 1);
+        if (!TokenEntry.EOF.equals(tokenEntry)) {
+            addSourceRun(size, tokenEntry.getTokenSrcID());
+        }
+        last = tokenEntry;
+        size++;
+    }
+
+    /**
+     * Starts a new run of tokens at the given index, unless the source
+     * is the same as the one of the current run.
+     */
+    private void addSourceRun(int start, String sourceId) {
+        final int runCount = sourceIds.size();
+        if (runCount == 0 || !Objects.equals(sourceIds.get(runCount - 1), sourceId)) {
+            if (runCount == sourceStarts.length) {
+                sourceStarts = Arrays.copyOf(sourceStarts, runCount * 2);
+            }
+            sourceStarts[runCount] = start;
+            sourceIds.add(sourceId);
+        }
     }
 
     public Iterator<TokenEntry> iterator() {
-        return tokens.iterator();
+        return tokenView.iterator();
     }
 
     private TokenEntry get(int index) {
-        return tokens.get(index);
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (index == size - 1 && last != null) {
+            return last;
+        }
+        if (identifiers[index] == 0) {
+            return TokenEntry.EOF;
+        }
+        return new TokenEntry(identifiers[index], getSourceId(index), beginLines[index],
+                beginColumns[index], endColumns[index], index);
     }
 
     public int size() {
-        return tokens.size();
+        return size;
     }
 
     public TokenEntry getEndToken(TokenEntry mark, Match match) {
@@ -40,7 +121,148 @@ public class Tokens {
         return endTok.getBeginLine() - mark.getBeginLine() + 1;
     }
 
+    /**
+     * Returns a view of the tokens. The entries are created when they are
+     * accessed, so they are not necessarily the ones which were added, and
+     * changing them doesn't affect the stored tokens, except for the last one.
+     */
     public List<TokenEntry> getTokens() {
+        return tokenView;
+    }
+
+    /**
+     * Appends the given tokens, mapping their identifiers.
+     *
+     * @param other               The tokens to append
+     * @param identifierMapping   The identifier of this instance for each identifier of the other
+     */
+    void addAll(Tokens other, int[] identifierMapping) {
+        flush();
+        other.flush();
+        ensureCapacity(size + other.size);
+        for (int i = 0; i < other.size; i++) {
+            identifiers[size + i] = identifierMapping[other.identifiers[i]];
+        }
+        System.arraycopy(other.beginLines, 0, beginLines, size, other.size);
+        System.arraycopy(other.beginColumns, 0, beginColumns, size, other.size);
+        System.arraycopy(other.endColumns, 0, endColumns, size, other.size);
+        for (int run = 0; run < other.sourceIds.size(); run++) {
+            addSourceRun(size + other.sourceStarts[run], other.sourceIds.get(run));
+        }
+        size += other.size;
+    }
+
+    /**
+     * Writes the tokens, see {@link #read(DataInputStream)}.
+     */
+    void write(DataOutputStream out) throws IOException {
+        flush();
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(identifiers[i]);
+            out.writeInt(beginLines[i]);
+            out.writeInt(beginColumns[i]);
+            out.writeInt(endColumns[i]);
+        }
+        out.writeInt(sourceIds.size());
+        for (int run = 0; run < sourceIds.size(); run++) {
+            out.writeInt(sourceStarts[run]);
+            out.writeUTF(sourceIds.get(run));
+        }
+    }
+
+    /**
+     * Reads tokens written by {@link #write(DataOutputStream)}.
+     */
+    static Tokens read(DataInputStream in) throws IOException {
+        Tokens tokens = new Tokens();
+        int size = in.readInt();
+        tokens.ensureCapacity(size);
+        for (int i = 0; i < size; i++) {
+            tokens.identifiers[i] = in.readInt();
+            tokens.beginLines[i] = in.readInt();
+            tokens.beginColumns[i] = in.readInt();
+            tokens.endColumns[i] = in.readInt();
+        }
+        tokens.size = size;
+        int runCount = in.readInt();
+        for (int run = 0; run < runCount; run++) {
+            tokens.addSourceRun(in.readInt(), in.readUTF());
+        }
         return tokens;
     }
+
+    /**
+     * Returns the identifiers of the tokens, which are 0 for the EOF marker.
+     * The array is shared and may be longer than {@link #size()}.
+     */
+    int[] getIdentifiers() {
+        flush();
+        return identifiers;
+    }
+
+    /**
+     * Returns the token at the given index, with the given hashcode.
+     */
+    TokenEntry getToken(int index, int hashCode) {
+        flush();
+        final TokenEntry token = get(index);
+        if (!TokenEntry.EOF.equals(token)) {
+            token.setHashCode(hashCode);
+        }
+        return token;
+    }
+
+    /**
+     * Removes the tokens after the given size.
+     */
+    void truncate(int newSize) {
+        flush();
+        size = Math.min(size, newSize);
+        int runCount = sourceIds.size();
+        while (runCount > 0 && sourceStarts[runCount - 1] >= size) {
+            sourceIds.remove(--runCount);
+        }
+    }
+
+    /**
+     * Copies the last added token into the columns.
+     */
+    private void flush() {
+        if (last != null) {
+            final int index = size - 1;
+            identifiers[index] = last.getIdentifier();
+            beginLines[index] = last.getBeginLine();
+            beginColumns[index] = last.getBeginColumn();
+            endColumns[index] = last.getEndColumn();
+            last = null;
+        }
+    }
+
+    /**
+     * Returns the source ID of the token at the given index, which must not be EOF.
+     */
+    String getSourceId(int index) {
+        int low = 0;
+        int high = sourceIds.size() - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (sourceStarts[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return sourceIds.get(low);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > identifiers.length) {
+            final int newCapacity = Math.max(capacity, identifiers.length + (identifiers.length >> 1));
+            identifiers = Arrays.copyOf(identifiers, newCapacity);
+            beginLines = Arrays.copyOf(beginLines, newCapacity);
+            beginColumns = Arrays.copyOf(beginColumns, newCapacity);
+            endColumns = Arrays.copyOf(endColumns, newCapacity);
+        }
+    }
 }
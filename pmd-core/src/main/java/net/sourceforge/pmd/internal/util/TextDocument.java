@@ -0,0 +1,122 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.internal.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.Adler32;
+
+import net.sourceforge.pmd.cache.internal.XxHash64;
+import net.sourceforge.pmd.util.datasource.DataSource;
+import net.sourceforge.pmd.util.datasource.internal.AbstractDataSource;
+
+/**
+ * The contents of a source file, which are read at most once, when they're
+ * first needed. The analysis cache hashes the bytes, and the parser reads
+ * the decoded text, without opening the file again. If the cache finds the
+ * file is unchanged from its attributes, the file is not read at all.
+ *
+ * <p>Instances are confined to the thread processing the file.
+ */
+public final class TextDocument {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final DataSource dataSource;
+    private final Charset charset;
+
+    private byte[] bytes;
+    private int length;
+    private String text;
+
+    public TextDocument(DataSource dataSource, Charset charset) {
+        this.dataSource = dataSource;
+        this.charset = charset;
+    }
+
+    private void readBytes() throws IOException {
+        if (bytes != null) {
+            return;
+        }
+        final long sizeHint = dataSource instanceof AbstractDataSource
+                ? ((AbstractDataSource) dataSource).getSizeHint() : -1;
+        // one more byte, so that reaching the end doesn't need to grow the buffer
+        byte[] buffer = new byte[sizeHint >= 0 && sizeHint < Integer.MAX_VALUE - 1
+                ? (int) sizeHint + 1 : DEFAULT_BUFFER_SIZE];
+        int count = 0;
+        try (InputStream stream = dataSource.getInputStream()) {
+            int read;
+            while ((read = stream.read(buffer, count, buffer.length - count)) >= 0) {
+                count += read;
+                if (count == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+        }
+        this.bytes = buffer;
+        this.length = count;
+    }
+
+    /**
+     * Returns the bytes of the file, in a read-only buffer.
+     *
+     * @throws IOException If the file can't be read
+     */
+    public ByteBuffer getBytes() throws IOException {
+        readBytes();
+        return ByteBuffer.wrap(bytes, 0, length).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the checksum of the bytes of the file, as it would be
+     * computed on the file itself by the analysis cache.
+     *
+     * @param fastChecksum Whether to use {@link XxHash64} instead of {@link Adler32}
+     *
+     * @throws IOException If the file can't be read
+     */
+    public long getChecksum(boolean fastChecksum) throws IOException {
+        readBytes();
+        if (fastChecksum) {
+            return XxHash64.hash(ByteBuffer.wrap(bytes, 0, length));
+        }
+        final Adler32 adler32 = new Adler32();
+        adler32.update(bytes, 0, length);
+        return adler32.getValue();
+    }
+
+    /**
+     * Returns the text of the file. Malformed input is replaced, like
+     * {@link java.io.InputStreamReader} does.
+     *
+     * @throws IOException If the file can't be read
+     */
+    public String getText() throws IOException {
+        if (text == null) {
+            readBytes();
+            text = new String(bytes, 0, length, charset);
+        }
+        return text;
+    }
+
+    /**
+     * Returns a new reader on the text of the file, which doesn't copy it.
+     *
+     * @throws IOException If the file can't be read
+     */
+    public Reader newReader() throws IOException {
+        return new StringReader(getText());
+    }
+
+    @Override
+    public String toString() {
+        return "TextDocument[" + dataSource + "]";
+    }
+}
@@ -84,6 +84,9 @@ public abstract class AbstractNode implements Node {
     private DataFlowNode dataFlowNode;
     // @Deprecated?
     private String image;
+    /** The index of the tree, once it is built, and the position of this node in it. */
+    private NodeIndex nodeIndex;
+    private int nodeIndexPosition;
 
     public AbstractNode(final int id) {
         this.id = id;
@@ -172,6 +175,27 @@ public abstract class AbstractNode implements Node {
         }
         children[index] = child;
         child.jjtSetChildIndex(index);
+        invalidateNodeIndex();
+    }
+
+    private void invalidateNodeIndex() {
+        if (nodeIndex != null) {
+            nodeIndex.invalidate();
+            nodeIndex = null;
+        }
+    }
+
+    void setNodeIndex(final NodeIndex nodeIndex, final int position) {
+        this.nodeIndex = nodeIndex;
+        this.nodeIndexPosition = position;
+    }
+
+    NodeIndex getNodeIndex() {
+        return nodeIndex;
+    }
+
+    int getNodeIndexPosition() {
+        return nodeIndexPosition;
     }
 
     @Override
@@ -362,14 +386,14 @@ public abstract class AbstractNode implements Node {
     @Override
     public <T> List<T> findDescendantsOfType(final Class<? extends T> targetType) {
         final List<T> list = new ArrayList<>();
-        findDescendantsOfType(this, targetType, list, false);
+        collectDescendantsOfType(targetType, list, false);
         return list;
     }
 
     @Override
     public <T> List<T> findDescendantsOfType(final Class<T> targetType, final boolean crossBoundaries) {
         final List<T> list = new ArrayList<>();
-        findDescendantsOfType(this, targetType, list, crossBoundaries);
+        collectDescendantsOfType(targetType, list, crossBoundaries);
         return list;
     }
 
@@ -381,7 +405,16 @@ public abstract class AbstractNode implements Node {
     @Override
     public <T> void findDescendantsOfType(final Class<T> targetType, final List<T> results,
                                           final boolean crossBoundaries) {
-        findDescendantsOfType(this, targetType, results, crossBoundaries);
+        collectDescendantsOfType(targetType, results, crossBoundaries);
+    }
+
+    private <T> void collectDescendantsOfType(final Class<? extends T> targetType, final List<T> results,
+                                              final boolean crossFindBoundaries) {
+        if (nodeIndex != null && nodeIndex.isValid()) {
+            nodeIndex.findDescendantsOfType(nodeIndexPosition, targetType, results, crossFindBoundaries);
+        } else {
+            findDescendantsOfType(this, targetType, results, crossFindBoundaries);
+        }
     }
 
     private static <T> void findDescendantsOfType(final Node node, final Class<? extends T> targetType, final List<T> results,
@@ -654,6 +687,7 @@ public abstract class AbstractNode implements Node {
         if (0 <= childIndex && childIndex < getNumChildren()) {
             // Remove the child at the given index
             children = ArrayUtils.remove(children, childIndex);
+            invalidateNodeIndex();
             // Update the remaining & left-shifted children indexes
             for (int i = childIndex; i < getNumChildren(); i++) {
                 getChild(i).jjtSetChildIndex(i);
@@ -0,0 +1,355 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.pmd.annotation.InternalApi;
+import net.sourceforge.pmd.util.DataMap;
+import net.sourceforge.pmd.util.DataMap.DataKey;
+import net.sourceforge.pmd.util.DataMap.SimpleDataKey;
+
+/**
+ * An index of the nodes of a tree, built once per tree. The nodes are
+ * numbered in document order, so that the descendants of a node are the
+ * contiguous range of positions following it. The positions of the nodes
+ * are also grouped by kind, a kind being the node class together with its
+ * {@linkplain Node#getXPathNodeName() XPath node name}, so that the nodes of
+ * a kind can be found in a subtree without traversing it.
+ *
+ * <p>The index is shared by the rule chain, the Saxon tree of the XPath rules
+ * and {@link Node#findDescendantsOfType(Class)}. It is discarded when the
+ * structure of the tree changes.
+ *
+ * @deprecated This is internal API, will be hidden with 7.0.0
+ */
+@Deprecated
+@InternalApi
+public final class NodeIndex {
+
+    private static final SimpleDataKey<NodeIndex> NODE_INDEX_KEY = DataMap.simpleDataKey("node.index");
+
+    /** Subtrees up to this size are scanned rather than searched by kind. */
+    private static final int SCANNED_SUBTREE_SIZE = 64;
+
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private final Node[] nodes;
+    private final int[] subtreeEnds;
+    /** The position of the parent of each node, -1 for the root. */
+    private final int[] parents;
+    private final int[] indicesInParent;
+    /** The position of the nearest strict ancestor which is a find boundary, or -1, null if there is no boundary. */
+    private final int[] boundaryAncestors;
+
+    private final String[] kindNames;
+    private final Class<?>[] kindClasses;
+    /** The positions of the nodes of kind k are in {@code positionsByKind[kindStarts[k]..kindStarts[k + 1]]}. */
+    private final int[] kindStarts;
+    private final int[] positionsByKind;
+
+    private final Map<String, int[]> kindsByName = new HashMap<>();
+    private final Map<Class<?>, int[]> kindsByType = new HashMap<>();
+    /** The positions of the nodes which are not {@link AbstractNode}s, null if there are none. */
+    private Map<Node, Integer> otherPositions;
+
+    private boolean valid = true;
+
+    private NodeIndex(Node root) {
+        Builder builder = new Builder();
+        builder.add(root, -1, -1, -1);
+        int size = builder.size;
+
+        nodes = Arrays.copyOf(builder.nodes, size);
+        subtreeEnds = Arrays.copyOf(builder.subtreeEnds, size);
+        parents = Arrays.copyOf(builder.parents, size);
+        indicesInParent = Arrays.copyOf(builder.indicesInParent, size);
+        boundaryAncestors = builder.hasBoundaries ? Arrays.copyOf(builder.boundaryAncestors, size) : null;
+
+        int kindCount = builder.kindNames.size();
+        kindNames = builder.kindNames.toArray(new String[0]);
+        kindClasses = builder.kindClasses.toArray(new Class<?>[0]);
+        kindStarts = new int[kindCount + 1];
+        for (int position = 0; position < size; position++) {
+            kindStarts[builder.kinds[position] + 1]++;
+        }
+        for (int kind = 0; kind < kindCount; kind++) {
+            kindStarts[kind + 1] += kindStarts[kind];
+        }
+        positionsByKind = new int[size];
+        int[] next = Arrays.copyOf(kindStarts, kindCount);
+        for (int position = 0; position < size; position++) {
+            positionsByKind[next[builder.kinds[position]]++] = position;
+        }
+        for (int kind = 0; kind < kindCount; kind++) {
+            int[] kinds = kindsByName.get(kindNames[kind]);
+            kindsByName.put(kindNames[kind], kinds == null ? new int[] {kind} : append(kinds, kind));
+        }
+
+        for (int position = 0; position < size; position++) {
+            Node node = nodes[position];
+            if (node instanceof AbstractNode) {
+                ((AbstractNode) node).setNodeIndex(this, position);
+            } else {
+                if (otherPositions == null) {
+                    otherPositions = new IdentityHashMap<>();
+                }
+                otherPositions.put(node, position);
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the tree containing the given node. The index
+     * is built on the first call, and cached on the root of the tree.
+     *
+     * @param node A node of the tree
+     *
+     * @return The index
+     */
+    public static NodeIndex get(Node node) {
+        Node root = node;
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        DataMap<DataKey<?, ?>> userMap = root.getUserMap();
+        NodeIndex index = userMap.get(NODE_INDEX_KEY);
+        if (index == null || !index.valid) {
+            index = new NodeIndex(root);
+            userMap.set(NODE_INDEX_KEY, index);
+        }
+        return index;
+    }
+
+    /**
+     * Discards the index, after the structure of the tree changed.
+     */
+    void invalidate() {
+        valid = false;
+    }
+
+    boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Returns the number of nodes of the tree.
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * Returns the node at the given position.
+     */
+    public Node getNode(int position) {
+        return nodes[position];
+    }
+
+    /**
+     * Returns the position of the given node, or -1 if it is not part of the indexed tree.
+     */
+    public int positionOf(Node node) {
+        if (node instanceof AbstractNode) {
+            AbstractNode abstractNode = (AbstractNode) node;
+            return abstractNode.getNodeIndex() == this ? abstractNode.getNodeIndexPosition() : -1;
+        }
+        Integer position = otherPositions == null ? null : otherPositions.get(node);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Returns the position following the last descendant of the node at the given position.
+     */
+    public int getSubtreeEnd(int position) {
+        return subtreeEnds[position];
+    }
+
+    /**
+     * Returns the position of the parent of the node at the given position,
+     * or -1 if it is the root of the tree.
+     */
+    public int getParent(int position) {
+        return parents[position];
+    }
+
+    /**
+     * Returns the index of the node at the given position among the children of its parent,
+     * or -1 if it is the root of the tree.
+     */
+    public int getIndexInParent(int position) {
+        return indicesInParent[position];
+    }
+
+    /**
+     * Returns the positions of the nodes with the given XPath node name
+     * in the given range, in document order.
+     *
+     * @param xpathNodeName The XPath node name
+     * @param from          The first position of the range (inclusive)
+     * @param to            The last position of the range (exclusive)
+     */
+    public int[] getPositions(String xpathNodeName, int from, int to) {
+        int[] kinds = kindsByName.get(xpathNodeName);
+        return kinds == null ? NO_POSITIONS : getPositions(kinds, from, to);
+    }
+
+    private int[] getPositions(int[] kinds, int from, int to) {
+        int count = 0;
+        int[][] ranges = new int[kinds.length][];
+        for (int i = 0; i < kinds.length; i++) {
+            int start = kindStarts[kinds[i]];
+            int end = kindStarts[kinds[i] + 1];
+            int low = lowerBound(start, end, from);
+            int high = lowerBound(low, end, to);
+            ranges[i] = new int[] {low, high};
+            count += high - low;
+        }
+        int[] positions = new int[count];
+        int offset = 0;
+        for (int[] range : ranges) {
+            System.arraycopy(positionsByKind, range[0], positions, offset, range[1] - range[0]);
+            offset += range[1] - range[0];
+        }
+        if (kinds.length > 1) {
+            Arrays.sort(positions);
+        }
+        return positions;
+    }
+
+    /**
+     * Returns the first index in {@code positionsByKind[start..end]} whose position is not lower than the given one.
+     */
+    private int lowerBound(int start, int end, int position) {
+        int low = start;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (positionsByKind[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Adds the descendants of the node at the given position which are
+     * instances of the given type, in document order, like
+     * {@link Node#findDescendantsOfType(Class, boolean)}.
+     */
+    <T> void findDescendantsOfType(int position, Class<? extends T> targetType, List<T> results,
+                                   boolean crossFindBoundaries) {
+        int end = subtreeEnds[position];
+        boolean checkBoundaries = !crossFindBoundaries && boundaryAncestors != null;
+        if (end - position <= SCANNED_SUBTREE_SIZE) {
+            int i = position + 1;
+            while (i < end) {
+                if (targetType.isInstance(nodes[i])) {
+                    results.add(targetType.cast(nodes[i]));
+                }
+                // skip the descendants of a boundary
+                i = checkBoundaries && nodes[i].isFindBoundary() ? subtreeEnds[i] : i + 1;
+            }
+            return;
+        }
+
+        for (int candidate : getPositions(getKinds(targetType), position + 1, end)) {
+            if (!checkBoundaries || boundaryAncestors[candidate] <= position) {
+                results.add(targetType.cast(nodes[candidate]));
+            }
+        }
+    }
+
+    private int[] getKinds(Class<?> type) {
+        int[] kinds = kindsByType.get(type);
+        if (kinds == null) {
+            kinds = new int[0];
+            for (int kind = 0; kind < kindClasses.length; kind++) {
+                if (type.isAssignableFrom(kindClasses[kind])) {
+                    kinds = append(kinds, kind);
+                }
+            }
+            kindsByType.put(type, kinds);
+        }
+        return kinds;
+    }
+
+    private static int[] append(int[] array, int value) {
+        int[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = value;
+        return result;
+    }
+
+    /**
+     * Numbers the nodes in document order.
+     */
+    private static final class Builder {
+
+        private Node[] nodes = new Node[256];
+        private int[] subtreeEnds = new int[256];
+        private int[] parents = new int[256];
+        private int[] indicesInParent = new int[256];
+        private int[] boundaryAncestors = new int[256];
+        private int[] kinds = new int[256];
+        private int size;
+        private boolean hasBoundaries;
+
+        private final List<String> kindNames = new ArrayList<>();
+        private final List<Class<?>> kindClasses = new ArrayList<>();
+        private final Map<Class<?>, Map<String, Integer>> kindIds = new HashMap<>();
+
+        void add(Node node, int parent, int indexInParent, int boundaryAncestor) {
+            if (size == nodes.length) {
+                int capacity = size * 2;
+                nodes = Arrays.copyOf(nodes, capacity);
+                subtreeEnds = Arrays.copyOf(subtreeEnds, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                indicesInParent = Arrays.copyOf(indicesInParent, capacity);
+                boundaryAncestors = Arrays.copyOf(boundaryAncestors, capacity);
+                kinds = Arrays.copyOf(kinds, capacity);
+            }
+            int position = size++;
+            nodes[position] = node;
+            parents[position] = parent;
+            indicesInParent[position] = indexInParent;
+            boundaryAncestors[position] = boundaryAncestor;
+            kinds[position] = kindOf(node);
+
+            int childBoundaryAncestor = boundaryAncestor;
+            if (position > 0 && node.isFindBoundary()) {
+                hasBoundaries = true;
+                childBoundaryAncestor = position;
+            }
+            for (int i = 0; i < node.getNumChildren(); i++) {
+                add(node.getChild(i), position, i, childBoundaryAncestor);
+            }
+            subtreeEnds[position] = size;
+        }
+
+        private int kindOf(Node node) {
+            Map<String, Integer> idsByName = kindIds.get(node.getClass());
+            if (idsByName == null) {
+                idsByName = new HashMap<>();
+                kindIds.put(node.getClass(), idsByName);
+            }
+            String name = node.getXPathNodeName();
+            Integer id = idsByName.get(name);
+            if (id == null) {
+                id = kindNames.size();
+                kindNames.add(name);
+                kindClasses.add(node.getClass());
+                idsByName.put(name, id);
+            }
+            return id;
+        }
+    }
+}
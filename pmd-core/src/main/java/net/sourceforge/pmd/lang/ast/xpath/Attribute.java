@@ -31,6 +31,8 @@ public class Attribute {
     private final Node parent;
     private final String name;
     private Method method;
+    private AttributeAccessors accessors;
+    private int accessorIndex;
     private List<?> value;
     private String stringValue;
 
@@ -41,6 +43,13 @@ public class Attribute {
         this.method = m;
     }
 
+    /** Creates a new attribute belonging to the given node using one of the accessors of its class. */
+    Attribute(Node parent, AttributeAccessors accessors, int index) {
+        this(parent, accessors.getName(index), accessors.getMethod(index));
+        this.accessors = accessors;
+        this.accessorIndex = index;
+    }
+
     /** Creates a new attribute belonging to the given node using its string value. */
     public Attribute(Node parent, String name, String value) {
         this.parent = parent;
@@ -95,7 +104,9 @@ public class Attribute {
 
         // this lazy loading reduces calls to Method.invoke() by about 90%
         try {
-            value = Collections.singletonList(method.invoke(parent, EMPTY_OBJ_ARRAY));
+            value = Collections.singletonList(accessors != null
+                    ? accessors.getValue(parent, accessorIndex)
+                    : method.invoke(parent, EMPTY_OBJ_ARRAY));
             return value.get(0);
         } catch (IllegalAccessException | InvocationTargetException iae) {
             iae.printStackTrace();
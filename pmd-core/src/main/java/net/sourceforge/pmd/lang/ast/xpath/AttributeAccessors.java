@@ -0,0 +1,196 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.ast.xpath;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.sourceforge.pmd.annotation.InternalApi;
+import net.sourceforge.pmd.lang.ast.AbstractNode;
+import net.sourceforge.pmd.lang.ast.Node;
+
+/**
+ * The XPath attributes of a node class, as found by {@link AttributeAxisIterator}.
+ * The attributes are numbered in the order of iteration, and their values
+ * are read through method handles instead of {@link Method#invoke(Object, Object...)}.
+ * This allows to look up an attribute by name, without creating the
+ * attributes of the node which are not used.
+ *
+ * @deprecated This is internal API, will be hidden with 7.0.0
+ */
+@Deprecated
+@InternalApi
+public final class AttributeAccessors {
+
+    /** Caches the accessors of a given class. */
+    private static final ConcurrentMap<Class<?>, AttributeAccessors> CACHE = new ConcurrentHashMap<>();
+
+    /** Whether the attributes of a given class are the ones of {@link AttributeAxisIterator}. */
+    private static final ConcurrentMap<Class<?>, Boolean> DEFAULT_ITERATOR_CACHE = new ConcurrentHashMap<>();
+
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Node.class);
+    private static final Object[] EMPTY_OBJ_ARRAY = new Object[0];
+
+    private final String[] names;
+    private final Method[] methods;
+    /** The accessors, or null for those which can't be looked up. */
+    private final MethodHandle[] handles;
+    private final Map<String, Integer> indexByName;
+
+    private AttributeAccessors(List<Method> accessors) {
+        final int size = accessors.size();
+        names = new String[size];
+        methods = accessors.toArray(new Method[size]);
+        handles = new MethodHandle[size];
+        indexByName = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            names[i] = getAttributeName(methods[i].getName());
+            handles[i] = getHandle(methods[i]);
+            indexByName.put(names[i], i);
+        }
+    }
+
+    /**
+     * Returns the accessors of the given class, selected by the given iterator.
+     */
+    static AttributeAccessors forClass(Class<? extends Node> nodeClass, AttributeAxisIterator iterator) {
+        AttributeAccessors accessors = CACHE.get(nodeClass);
+        if (accessors == null) {
+            List<Method> postFilter = new ArrayList<>();
+            for (Method element : nodeClass.getMethods()) {
+                if (iterator.isAttributeAccessor(element)) {
+                    postFilter.add(element);
+                }
+            }
+            CACHE.putIfAbsent(nodeClass, new AttributeAccessors(postFilter));
+            accessors = CACHE.get(nodeClass);
+        }
+        return accessors;
+    }
+
+    /**
+     * Returns the accessors of the attributes of the given node, or null
+     * if the node doesn't use the default {@link Node#getXPathAttributesIterator()}.
+     *
+     * @param node The node
+     */
+    public static AttributeAccessors forNode(Node node) {
+        if (!usesDefaultIterator(node.getClass())) {
+            return null;
+        }
+        AttributeAccessors accessors = CACHE.get(node.getClass());
+        if (accessors == null) {
+            // populates the cache
+            new AttributeAxisIterator(node);
+            accessors = CACHE.get(node.getClass());
+        }
+        return accessors;
+    }
+
+    private static boolean usesDefaultIterator(Class<? extends Node> nodeClass) {
+        Boolean usesDefault = DEFAULT_ITERATOR_CACHE.get(nodeClass);
+        if (usesDefault == null) {
+            try {
+                usesDefault = nodeClass.getMethod("getXPathAttributesIterator").getDeclaringClass() == AbstractNode.class;
+            } catch (NoSuchMethodException e) {
+                usesDefault = false;
+            }
+            DEFAULT_ITERATOR_CACHE.putIfAbsent(nodeClass, usesDefault);
+        }
+        return usesDefault;
+    }
+
+    private static MethodHandle getHandle(Method method) {
+        try {
+            return MethodHandles.publicLookup().unreflect(method).asType(ACCESSOR_TYPE);
+        } catch (IllegalAccessException e) {
+            // the method is invoked reflectively
+            return null;
+        }
+    }
+
+    /**
+     * This method produces the actual XPath name of an attribute
+     * from the name of its accessor.
+     */
+    private static String getAttributeName(String n) {
+        // about 70% of the methods start with 'get', so this case goes
+        // first
+        if (n.startsWith("get")) {
+            return n.substring("get".length());
+        }
+        if (n.startsWith("is")) {
+            return n.substring("is".length());
+        }
+        if (n.startsWith("has")) {
+            return n.substring("has".length());
+        }
+        if (n.startsWith("uses")) {
+            return n.substring("uses".length());
+        }
+        if ("size".equals(n)) {
+            return "Size";
+        }
+
+        return n;
+    }
+
+    /**
+     * Returns the number of attributes.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Returns the index of the attribute with the given name, or -1
+     * if there is no such attribute.
+     */
+    public int indexOf(String name) {
+        Integer index = indexByName.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the name of the attribute at the given index.
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * Returns the attribute at the given index, for the given node.
+     * The node must be an instance of the class of these accessors.
+     */
+    public Attribute getAttribute(Node node, int index) {
+        return new Attribute(node, this, index);
+    }
+
+    Method getMethod(int index) {
+        return methods[index];
+    }
+
+    Object getValue(Node node, int index) throws IllegalAccessException, InvocationTargetException {
+        final MethodHandle handle = handles[index];
+        if (handle == null) {
+            return methods[index].invoke(node, EMPTY_OBJ_ARRAY);
+        }
+        try {
+            return (Object) handle.invokeExact(node);
+        } catch (Throwable t) {
+            // same as Method#invoke
+            throw new InvocationTargetException(t);
+        }
+    }
+}
@@ -7,14 +7,11 @@ package net.sourceforge.pmd.lang.ast.xpath;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.ast.Node;
@@ -32,9 +29,6 @@ import net.sourceforge.pmd.lang.ast.Node;
 @InternalApi
 public class AttributeAxisIterator implements Iterator<Attribute> {
 
-    /** Caches the precomputed attribute accessors of a given class. */
-    private static final ConcurrentMap<Class<?>, MethodWrapper[]> METHOD_CACHE = new ConcurrentHashMap<>();
-
     /* Constants used to determine which methods are accessors */
     private static final Set<Class<?>> CONSIDERED_RETURN_TYPES
             = new HashSet<>(Arrays.<Class<?>>asList(Integer.TYPE, Boolean.TYPE, Double.TYPE, String.class,
@@ -44,7 +38,7 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
 
     /* Iteration variables */
     private Attribute currObj;
-    private MethodWrapper[] methodWrappers;
+    private AttributeAccessors accessors;
     private int position;
     private Node node;
 
@@ -56,17 +50,7 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
      */
     public AttributeAxisIterator(Node contextNode) {
         this.node = contextNode;
-        if (!METHOD_CACHE.containsKey(contextNode.getClass())) {
-            Method[] preFilter = contextNode.getClass().getMethods();
-            List<MethodWrapper> postFilter = new ArrayList<>();
-            for (Method element : preFilter) {
-                if (isAttributeAccessor(element)) {
-                    postFilter.add(new MethodWrapper(element));
-                }
-            }
-            METHOD_CACHE.putIfAbsent(contextNode.getClass(), postFilter.toArray(new MethodWrapper[0]));
-        }
-        this.methodWrappers = METHOD_CACHE.get(contextNode.getClass());
+        this.accessors = AttributeAccessors.forClass(contextNode.getClass(), this);
 
         this.position = 0;
         this.currObj = getNextAttribute();
@@ -133,55 +117,9 @@ public class AttributeAxisIterator implements Iterator<Attribute> {
 
 
     private Attribute getNextAttribute() {
-        if (methodWrappers == null || position == methodWrappers.length) {
+        if (position == accessors.size()) {
             return null;
         }
-        MethodWrapper m = methodWrappers[position++];
-        return new Attribute(node, m.name, m.method);
-    }
-
-
-    /**
-     * Associates an attribute accessor with the XPath-accessible
-     * name of the attribute. This is used to avoid recomputing
-     * the name of the attribute for each attribute (it's only done
-     * once and put inside the {@link #METHOD_CACHE}).
-     */
-    private static class MethodWrapper {
-        public Method method;
-        public String name;
-
-
-        MethodWrapper(Method m) {
-            this.method = m;
-            this.name = truncateMethodName(m.getName());
-        }
-
-
-        /**
-         * This method produces the actual XPath name of an attribute
-         * from the name of its accessor.
-         */
-        private String truncateMethodName(String n) {
-            // about 70% of the methods start with 'get', so this case goes
-            // first
-            if (n.startsWith("get")) {
-                return n.substring("get".length());
-            }
-            if (n.startsWith("is")) {
-                return n.substring("is".length());
-            }
-            if (n.startsWith("has")) {
-                return n.substring("has".length());
-            }
-            if (n.startsWith("uses")) {
-                return n.substring("uses".length());
-            }
-            if ("size".equals(n)) {
-                return "Size";
-            }
-
-            return n;
-        }
+        return accessors.getAttribute(node, position++);
     }
 }
@@ -5,11 +5,13 @@
 package net.sourceforge.pmd.lang.ast.xpath;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.jaxen.DefaultNavigator;
+import org.jaxen.NamedAccessNavigator;
 import org.jaxen.XPath;
 import org.jaxen.util.SingleObjectIterator;
 
@@ -22,7 +24,7 @@ import net.sourceforge.pmd.lang.ast.RootNode;
  */
 @Deprecated
 @InternalApi
-public class DocumentNavigator extends DefaultNavigator {
+public class DocumentNavigator extends DefaultNavigator implements NamedAccessNavigator {
 
     private static final Iterator<Node> EMPTY_ITERATOR = new ArrayList<Node>().iterator();
 
@@ -146,6 +148,51 @@ public class DocumentNavigator extends DefaultNavigator {
         return new ListFilteringAttributeIterator(((Node) arg0).getXPathAttributesIterator());
     }
 
+    /**
+     * Get an iterator over the attributes of the node with the given name.
+     * The attribute is looked up by name if the node uses the default
+     * attributes, so that the other attributes are not created.
+     *
+     * @param contextNode
+     *            The context node for the attribute axis.
+     * @param localName
+     *            The name of the attribute
+     * @param namespacePrefix
+     *            The namespace prefix of the name test, unused
+     * @param namespaceURI
+     *            The namespace URI of the name test, null if there is none
+     * @return A possibly-empty iterator (not null).
+     */
+    @Override
+    public Iterator<Attribute> getAttributeAxisIterator(Object contextNode, String localName,
+                                                        String namespacePrefix, String namespaceURI) {
+        if (namespaceURI != null && !namespaceURI.isEmpty()) {
+            return Collections.emptyIterator();
+        }
+        Node node = (Node) contextNode;
+        AttributeAccessors accessors = AttributeAccessors.forNode(node);
+        if (accessors == null) {
+            List<Attribute> attributes = new ArrayList<>();
+            for (Iterator<Attribute> iter = getAttributeAxisIterator(contextNode); iter.hasNext();) {
+                Attribute attribute = iter.next();
+                if (localName.equals(attribute.getName())) {
+                    attributes.add(attribute);
+                }
+            }
+            return attributes.iterator();
+        }
+        int index = accessors.indexOf(localName);
+        if (index < 0) {
+            return Collections.emptyIterator();
+        }
+        Attribute attribute = accessors.getAttribute(node, index);
+        if (List.class.isAssignableFrom(attribute.getType())) {
+            // see ListFilteringAttributeIterator
+            return Collections.emptyIterator();
+        }
+        return Collections.singletonList(attribute).iterator();
+    }
+
     private static class ListFilteringAttributeIterator implements Iterator<Attribute> {
         private final Iterator<Attribute> baseIterator;
         private Attribute current;
@@ -210,6 +257,46 @@ public class DocumentNavigator extends DefaultNavigator {
         };
     }
 
+    /**
+     * Get an iterator over the children of the node with the given name.
+     *
+     * @param contextNode
+     *            The context node for the child axis.
+     * @param localName
+     *            The XPath name of the children
+     * @param namespacePrefix
+     *            The namespace prefix of the name test, unused
+     * @param namespaceURI
+     *            The namespace URI of the name test, null if there is none
+     * @return A possibly-empty iterator (not null).
+     */
+    @Override
+    public Iterator<Node> getChildAxisIterator(Object contextNode, final String localName,
+                                               String namespacePrefix, String namespaceURI) {
+        if (namespaceURI != null && !namespaceURI.isEmpty()) {
+            return EMPTY_ITERATOR;
+        }
+        return new NodeIterator((Node) contextNode) {
+            @Override
+            protected Node getFirstNode(Node node) {
+                return getNamedSibling(getFirstChild(node));
+            }
+
+            @Override
+            protected Node getNextNode(Node node) {
+                return getNamedSibling(getNextSibling(node));
+            }
+
+            private Node getNamedSibling(Node node) {
+                Node sibling = node;
+                while (sibling != null && !localName.equals(sibling.getXPathNodeName())) {
+                    sibling = getNextSibling(sibling);
+                }
+                return sibling;
+            }
+        };
+    }
+
     /**
      * Get a (single-member) iterator over this node's parent.
      *
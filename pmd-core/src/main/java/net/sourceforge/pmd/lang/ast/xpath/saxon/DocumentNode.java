@@ -4,12 +4,17 @@
 
 package net.sourceforge.pmd.lang.ast.xpath.saxon;
 
+import java.util.AbstractMap;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.NodeIndex;
 import net.sourceforge.pmd.lang.ast.xpath.internal.AstNodeOwner;
 import net.sourceforge.pmd.lang.ast.xpath.internal.DeprecatedAttrLogger;
 import net.sourceforge.pmd.lang.rule.xpath.SaxonXPathRuleQuery;
@@ -17,14 +22,20 @@ import net.sourceforge.pmd.lang.rule.xpath.SaxonXPathRuleQuery;
 import net.sf.saxon.om.Axis;
 import net.sf.saxon.om.AxisIterator;
 import net.sf.saxon.om.DocumentInfo;
+import net.sf.saxon.om.EmptyIterator;
 import net.sf.saxon.om.NamePool;
 import net.sf.saxon.om.Navigator;
+import net.sf.saxon.om.NodeArrayIterator;
 import net.sf.saxon.om.NodeInfo;
 import net.sf.saxon.om.SingleNodeIterator;
+import net.sf.saxon.pattern.NameTest;
+import net.sf.saxon.pattern.NodeTest;
 import net.sf.saxon.type.Type;
 
 /**
- * A Saxon OM Document node for an AST Node.
+ * A Saxon OM Document node for an AST Node. The element nodes of the
+ * document are only created when they are reached, from the positions of
+ * the nodes in the {@link NodeIndex} of the tree.
  */
 @Deprecated
 @InternalApi
@@ -36,9 +47,17 @@ public class DocumentNode extends BaseNodeInfo implements DocumentInfo, AstNodeO
     protected final ElementNode rootNode;
 
     /**
-     * Mapping from AST Node to corresponding ElementNode.
+     * Mapping from AST Node to corresponding ElementNode. The element nodes
+     * are stored by their position in the {@link NodeIndex} of the tree, and
+     * are created by {@link Map#get(Object)} if needed.
      */
-    public final Map<Node, ElementNode> nodeToElementNode = new HashMap<>();
+    public final Map<Node, ElementNode> nodeToElementNode = new ElementNodeMap();
+
+    private final NodeIndex nodeIndex;
+    /** The positions of the nodes of this document are in [rootPosition, endPosition[. */
+    private final int rootPosition;
+    private final int endPosition;
+    private final ElementNode[] elementNodes;
 
     private DeprecatedAttrLogger attrCtx;
 
@@ -53,7 +72,11 @@ public class DocumentNode extends BaseNodeInfo implements DocumentInfo, AstNodeO
      */
     public DocumentNode(Node node, NamePool namePool) {
         super(Type.DOCUMENT, namePool, "", null);
-        this.rootNode = new ElementNode(this, new IdGenerator(), null, node, -1, namePool);
+        this.nodeIndex = NodeIndex.get(node);
+        this.rootPosition = nodeIndex.positionOf(node);
+        this.endPosition = nodeIndex.getSubtreeEnd(rootPosition);
+        this.elementNodes = new ElementNode[nodeIndex.size()];
+        this.rootNode = new ElementNode(this, null, node, rootPosition, -1, namePool);
     }
 
     @Deprecated
@@ -61,6 +84,32 @@ public class DocumentNode extends BaseNodeInfo implements DocumentInfo, AstNodeO
         this(node, SaxonXPathRuleQuery.getNamePool());
     }
 
+    /**
+     * Returns the index of the tree, from which the element nodes are created.
+     * The document must be recreated if it is not the current index of the tree.
+     */
+    public NodeIndex getNodeIndex() {
+        return nodeIndex;
+    }
+
+    /**
+     * Returns the element node of the node at the given position,
+     * or null if the node is not part of this document.
+     */
+    private ElementNode getElementNode(int position) {
+        if (position < rootPosition || position >= endPosition) {
+            return null;
+        }
+        ElementNode elementNode = elementNodes[position];
+        if (elementNode == null) {
+            // the parent is created first, the constructor stores the element node
+            ElementNode parent = getElementNode(nodeIndex.getParent(position));
+            elementNode = new ElementNode(this, parent, nodeIndex.getNode(position), position,
+                                          nodeIndex.getIndexInParent(position), getNamePool());
+        }
+        return elementNode;
+    }
+
     @Override
     public String[] getUnparsedEntity(String name) {
         throw createUnsupportedOperationException("DocumentInfo.getUnparsedEntity(String)");
@@ -102,6 +151,53 @@ public class DocumentNode extends BaseNodeInfo implements DocumentInfo, AstNodeO
         }
     }
 
+    @Override
+    public AxisIterator iterateAxis(byte axisNumber, NodeTest nodeTest) {
+        if (axisNumber == Axis.DESCENDANT || axisNumber == Axis.DESCENDANT_OR_SELF) {
+            AxisIterator descendants = iterateDescendants(rootNode.node, true, nodeTest);
+            if (descendants != null) {
+                return descendants;
+            }
+        }
+        return super.iterateAxis(axisNumber, nodeTest);
+    }
+
+    /**
+     * Returns the elements of the subtree of the given node which match
+     * the node test, in document order, or null if the node test is not
+     * an element name test. The elements are looked up by name in the
+     * node index instead of traversing the subtree.
+     *
+     * @param node        The root of the subtree
+     * @param includeSelf Whether the root of the subtree is part of the result
+     * @param nodeTest    The node test
+     */
+    AxisIterator iterateDescendants(Node node, boolean includeSelf, NodeTest nodeTest) {
+        if (!(nodeTest instanceof NameTest) || nodeTest.getNodeKindMask() != 1 << Type.ELEMENT) {
+            return null;
+        }
+        int position = nodeIndex.positionOf(node);
+        int fingerprint = nodeTest.getFingerprint();
+        if (position < 0 || !getNamePool().getURI(fingerprint).isEmpty()) {
+            return null;
+        }
+
+        int[] positions = nodeIndex.getPositions(getNamePool().getLocalName(fingerprint),
+                includeSelf ? position : position + 1, nodeIndex.getSubtreeEnd(position));
+        if (positions.length == 0) {
+            return EmptyIterator.getInstance();
+        }
+        NodeInfo[] elements = new NodeInfo[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            elements[i] = getElementNode(positions[i]);
+            if (elements[i] == null) {
+                // the node is not part of this document
+                return null;
+            }
+        }
+        return new NodeArrayIterator(elements);
+    }
+
     @Override
     public Node getUnderlyingNode() {
         // this is a concession to the model, so that the expression "/"
@@ -116,4 +212,52 @@ public class DocumentNode extends BaseNodeInfo implements DocumentInfo, AstNodeO
     public void setAttrCtx(DeprecatedAttrLogger attrCtx) {
         this.attrCtx = attrCtx;
     }
+
+    /**
+     * Maps the nodes of the indexed tree to the element nodes through
+     * their position, and the other nodes with a hash map.
+     */
+    private class ElementNodeMap extends AbstractMap<Node, ElementNode> {
+
+        private final Map<Node, ElementNode> otherNodes = new HashMap<>();
+
+        @Override
+        public ElementNode get(Object key) {
+            int position = key instanceof Node ? nodeIndex.positionOf((Node) key) : -1;
+            ElementNode elementNode = position < 0 ? null : getElementNode(position);
+            return elementNode == null ? otherNodes.get(key) : elementNode;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public ElementNode put(Node key, ElementNode value) {
+            int position = nodeIndex.positionOf(key);
+            if (position < rootPosition || position >= endPosition) {
+                return otherNodes.put(key, value);
+            }
+            ElementNode previous = elementNodes[position];
+            elementNodes[position] = value;
+            return previous;
+        }
+
+        @Override
+        public int size() {
+            return endPosition - rootPosition + otherNodes.size();
+        }
+
+        @Override
+        public Set<Entry<Node, ElementNode>> entrySet() {
+            // creates all the element nodes
+            Map<Node, ElementNode> entries = new LinkedHashMap<>();
+            for (int position = rootPosition; position < endPosition; position++) {
+                entries.put(nodeIndex.getNode(position), getElementNode(position));
+            }
+            entries.putAll(otherNodes);
+            return Collections.unmodifiableSet(entries.entrySet());
+        }
+    }
 }
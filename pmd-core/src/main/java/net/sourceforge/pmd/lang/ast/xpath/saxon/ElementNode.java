@@ -10,7 +10,9 @@ import java.util.Map;
 
 import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.NodeIndex;
 import net.sourceforge.pmd.lang.ast.xpath.Attribute;
+import net.sourceforge.pmd.lang.ast.xpath.AttributeAccessors;
 import net.sourceforge.pmd.lang.ast.xpath.internal.AstNodeOwner;
 import net.sourceforge.pmd.lang.rule.xpath.SaxonXPathRuleQuery;
 
@@ -35,7 +37,10 @@ import net.sf.saxon.value.UntypedAtomicValue;
 import net.sf.saxon.value.Value;
 
 /**
- * A Saxon OM Element type node for an AST Node.
+ * A Saxon OM Element type node for an AST Node. The element nodes of a
+ * {@link DocumentNode} are created when they are first reached, and
+ * their id is the position of their node in the {@link NodeIndex}, so
+ * that it is also their document order.
  */
 @Deprecated
 @InternalApi
@@ -46,9 +51,13 @@ public class ElementNode extends BaseNodeInfo implements AstNodeOwner {
     protected final Node node;
     protected final int id;
     protected final int siblingPosition;
-    protected final NodeInfo[] children;
+    /** The children, created when they are first used, null if there are none or they are not created yet. */
+    protected NodeInfo[] children;
 
     private Map<Integer, AttributeNode> attributes;
+    /** The accessors of the attributes of the node, null if they can't be accessed by index. */
+    private AttributeAccessors attributeAccessors;
+    private AttributeNode[] attributeNodes;
 
     @Deprecated
     public ElementNode(DocumentNode document, IdGenerator idGenerator, ElementNode parent, Node node, int siblingPosition) {
@@ -61,28 +70,52 @@ public class ElementNode extends BaseNodeInfo implements AstNodeOwner {
                        Node node,
                        int siblingPosition,
                        NamePool namePool) {
+        this(document, parent, node, idGenerator.getNextId(), siblingPosition, namePool);
+
+        if (node.getNumChildren() > 0) {
+            this.children = new NodeInfo[node.getNumChildren()];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = new ElementNode(document, idGenerator, this, node.getChild(i), i, namePool);
+            }
+        }
+    }
+
+    /**
+     * Creates an element node without its children, which are created
+     * when they are first used.
+     */
+    ElementNode(DocumentNode document, ElementNode parent, Node node, int id, int siblingPosition, NamePool namePool) {
         super(Type.ELEMENT, namePool, node.getXPathNodeName(), parent);
 
         this.document = document;
         this.parent = parent;
         this.node = node;
-        this.id = idGenerator.getNextId();
+        this.id = id;
         this.siblingPosition = siblingPosition;
+        document.nodeToElementNode.put(node, this);
+    }
 
-        if (node.getNumChildren() > 0) {
-            this.children = new NodeInfo[node.getNumChildren()];
-            for (int i = 0; i < children.length; i++) {
-                children[i] = new ElementNode(document, idGenerator, this, node.getChild(i), i, namePool);
+    private NodeInfo[] getChildren() {
+        if (children == null && node.getNumChildren() > 0) {
+            NodeInfo[] elements = new NodeInfo[node.getNumChildren()];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = document.nodeToElementNode.get(node.getChild(i));
             }
-        } else {
-            this.children = null;
+            children = elements;
         }
-        document.nodeToElementNode.put(node, this);
+        return children;
     }
 
     private Map<Integer, AttributeNode> getAttributes() {
         if (attributes == null) {
             attributes = new HashMap<>();
+            if (initAttributeNodes()) {
+                for (int i = 0; i < attributeNodes.length; i++) {
+                    AttributeNode attrNode = getAttributeNode(i);
+                    attributes.put(attrNode.getFingerprint(), attrNode);
+                }
+                return attributes;
+            }
             Iterator<Attribute> iter = node.getXPathAttributesIterator();
             int idx = 0;
             while (iter.hasNext()) {
@@ -94,6 +127,43 @@ public class ElementNode extends BaseNodeInfo implements AstNodeOwner {
         return attributes;
     }
 
+    /**
+     * Returns whether the attributes of the node are accessed by index,
+     * in which case the attribute nodes are only created when used.
+     */
+    private boolean initAttributeNodes() {
+        if (attributeNodes == null) {
+            attributeAccessors = AttributeAccessors.forNode(node);
+            if (attributeAccessors == null) {
+                return false;
+            }
+            attributeNodes = new AttributeNode[attributeAccessors.size()];
+        }
+        return true;
+    }
+
+    private AttributeNode getAttributeNode(int index) {
+        if (attributeNodes[index] == null) {
+            attributeNodes[index] = new AttributeNode(this, attributeAccessors.getAttribute(node, index), index);
+        }
+        return attributeNodes[index];
+    }
+
+    /**
+     * Returns the attribute with the given fingerprint, or null if there is none.
+     */
+    private AttributeNode getAttribute(int fingerprint) {
+        if (!initAttributeNodes()) {
+            return getAttributes().get(fingerprint);
+        }
+        NamePool namePool = getNamePool();
+        if (!namePool.getURI(fingerprint).isEmpty()) {
+            return null;
+        }
+        int index = attributeAccessors.indexOf(namePool.getLocalName(fingerprint));
+        return index < 0 ? null : getAttributeNode(index);
+    }
+
     @Override
     public Node getUnderlyingNode() {
         return node;
@@ -116,7 +186,7 @@ public class ElementNode extends BaseNodeInfo implements AstNodeOwner {
 
     @Override
     public boolean hasChildNodes() {
-        return children != null;
+        return node.getNumChildren() > 0;
     }
 
     @Override
@@ -156,6 +226,8 @@ public class ElementNode extends BaseNodeInfo implements AstNodeOwner {
         int result;
         if (this.isSameNodeInfo(other)) {
             result = 0;
+        } else if (other instanceof ElementNode && ((ElementNode) other).document == document) {
+            result = Integer.signum(this.id - ((ElementNode) other).id);
         } else {
             result = Integer.signum(this.getLineNumber() - other.getLineNumber());
             if (result == 0) {
@@ -183,14 +255,19 @@ public class ElementNode extends BaseNodeInfo implements AstNodeOwner {
 
     @Override
     public AxisIterator iterateAxis(byte axisNumber, NodeTest nodeTest) {
-        if (axisNumber == Axis.ATTRIBUTE) {
+        if (axisNumber == Axis.DESCENDANT || axisNumber == Axis.DESCENDANT_OR_SELF) {
+            AxisIterator descendants = document.iterateDescendants(node, axisNumber == Axis.DESCENDANT_OR_SELF, nodeTest);
+            if (descendants != null) {
+                return descendants;
+            }
+        } else if (axisNumber == Axis.ATTRIBUTE) {
             if (nodeTest instanceof NameTest) {
                 if ((nodeTest.getNodeKindMask() & (1 << Type.ATTRIBUTE)) == 0) {
                     return EmptyIterator.getInstance();
                 } else {
                     int fp = nodeTest.getFingerprint();
                     if (fp != -1) {
-                        return SingleNodeIterator.makeIterator(getAttributes().get(fp));
+                        return SingleNodeIterator.makeIterator(getAttribute(fp));
                     }
                 }
             }
@@ -209,7 +286,7 @@ public class ElementNode extends BaseNodeInfo implements AstNodeOwner {
         case Axis.ATTRIBUTE:
             return new AttributeEnumeration();
         case Axis.CHILD:
-            if (children == null) {
+            if (getChildren() == null) {
                 return EmptyIterator.getInstance();
             } else {
                 return new NodeArrayIterator(children);
@@ -221,7 +298,7 @@ public class ElementNode extends BaseNodeInfo implements AstNodeOwner {
         case Axis.FOLLOWING:
             return new Navigator.FollowingEnumeration(this);
         case Axis.FOLLOWING_SIBLING:
-            if (parent == null || siblingPosition == parent.children.length - 1) {
+            if (parent == null || siblingPosition == parent.getChildren().length - 1) {
                 return EmptyIterator.getInstance();
             } else {
                 return new NodeArrayIterator(parent.children, siblingPosition + 1, parent.children.length);
@@ -236,7 +313,7 @@ public class ElementNode extends BaseNodeInfo implements AstNodeOwner {
             if (parent == null || siblingPosition == 0) {
                 return EmptyIterator.getInstance();
             } else {
-                return new NodeArrayIterator(parent.children, 0, siblingPosition);
+                return new NodeArrayIterator(parent.getChildren(), 0, siblingPosition);
             }
         case Axis.SELF:
             return SingleNodeIterator.makeIterator(this);
@@ -6,11 +6,13 @@ package net.sourceforge.pmd.lang.internal;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleContext;
 import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.NodeIndex;
 import net.sourceforge.pmd.lang.rule.AbstractRuleChainVisitor;
 import net.sourceforge.pmd.lang.rule.RuleChainVisitor;
 
@@ -26,10 +28,22 @@ public class DefaultRulechainVisitor extends AbstractRuleChainVisitor {
         rule.apply(Collections.singletonList(node), ctx);
     }
 
+    /**
+     * Collects the visited nodes from the {@link NodeIndex} of each tree,
+     * by node name, instead of traversing the trees.
+     */
     @Override
     protected void indexNodes(List<Node> nodes, RuleContext ctx) {
         for (Node node : nodes) {
-            indexNodeRec(node);
+            NodeIndex index = NodeIndex.get(node);
+            int position = index.positionOf(node);
+            int end = index.getSubtreeEnd(position);
+            for (Map.Entry<String, List<Node>> entry : nodeNameToNodes.entrySet()) {
+                List<Node> visitedNodes = entry.getValue();
+                for (int visited : index.getPositions(entry.getKey(), position, end)) {
+                    visitedNodes.add(index.getNode(visited));
+                }
+            }
         }
     }
 
@@ -4,6 +4,8 @@
 
 package net.sourceforge.pmd.lang.metrics;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
 
@@ -14,7 +16,12 @@ import net.sourceforge.pmd.lang.ast.QualifiedName;
  * Simple implementation of a project memoizer. Memoizers are accessible in constant time, provided the QualifiedName's
  * hashCode is well distributed.
  *
- * <p>This implementation takes care of recollecting irrelevant memoizers by storing them in {@link WeakHashMap}.
+ * <p>This implementation takes care of recollecting irrelevant memoizers by storing them in {@link WeakHashMap}s.
+ * The keys are weak, because the qualified names may reference the class loader of the auxclasspath, which could
+ * otherwise not be unloaded, and because the memoizers of the classes which aren't analysed anymore are useless.
+ * The memoizers are shared by the threads of the analysis, and a weak map is modified by its reads too, when it
+ * expunges the collected keys. They are thus split in several synchronized maps, chosen by the hash code of the
+ * qualified names, so that the threads rarely wait for each other.
  *
  * @param <T> Type of type declaration nodes of the language
  * @param <O> Type of operation declaration nodes of the language
@@ -28,39 +35,61 @@ import net.sourceforge.pmd.lang.ast.QualifiedName;
 public abstract class BasicProjectMemoizer<T extends QualifiableNode, O extends QualifiableNode>
     implements ProjectMemoizer<T, O> {
 
-    private Map<QualifiedName, MetricMemoizer<T>> classes = new WeakHashMap<>();
-    private Map<QualifiedName, MetricMemoizer<O>> operations = new WeakHashMap<>();
+    /** Number of maps of each kind of memoizers, a power of two. */
+    private static final int STRIPES = 16;
 
-    private final Object classesSynchronizer = new Object();
-    private final Object operationsSynchronizer = new Object();
+    private final List<Map<QualifiedName, MetricMemoizer<T>>> classes = newStripes();
+    private final List<Map<QualifiedName, MetricMemoizer<O>>> operations = newStripes();
 
     /** Clears all memoizers. Used for tests. */
     public void reset() {
-        classes.clear();
-        operations.clear();
+        clear(classes);
+        clear(operations);
     }
 
 
     @Override
     public MetricMemoizer<O> getOperationMemoizer(QualifiedName qname) {
-        synchronized (operationsSynchronizer) {
-            if (!operations.containsKey(qname)) {
-                operations.put(qname, new BasicMetricMemoizer<O>());
-            }
-        }
-
-        return operations.get(qname);
+        return getOrCreate(operations, qname);
     }
 
 
     @Override
     public MetricMemoizer<T> getClassMemoizer(QualifiedName qname) {
-        synchronized (classesSynchronizer) {
-            if (!classes.containsKey(qname)) {
-                classes.put(qname, new BasicMetricMemoizer<T>());
+        return getOrCreate(classes, qname);
+    }
+
+
+    private static <N extends QualifiableNode> List<Map<QualifiedName, MetricMemoizer<N>>> newStripes() {
+        List<Map<QualifiedName, MetricMemoizer<N>>> stripes = new ArrayList<>(STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new WeakHashMap<QualifiedName, MetricMemoizer<N>>());
+        }
+        return stripes;
+    }
+
+
+    private static <N extends QualifiableNode> void clear(List<Map<QualifiedName, MetricMemoizer<N>>> stripes) {
+        for (Map<QualifiedName, MetricMemoizer<N>> memoizers : stripes) {
+            synchronized (memoizers) {
+                memoizers.clear();
             }
         }
+    }
 
-        return classes.get(qname);
+
+    private static <N extends QualifiableNode> MetricMemoizer<N> getOrCreate(
+        List<Map<QualifiedName, MetricMemoizer<N>>> stripes, QualifiedName qname) {
+        int hash = qname.hashCode();
+        Map<QualifiedName, MetricMemoizer<N>> memoizers = stripes.get((hash ^ hash >>> 16) & (STRIPES - 1));
+        // a WeakHashMap is modified by its reads too, when it expunges the collected keys
+        synchronized (memoizers) {
+            MetricMemoizer<N> memoizer = memoizers.get(qname);
+            if (memoizer == null) {
+                memoizer = new BasicMetricMemoizer<>();
+                memoizers.put(qname, memoizer);
+            }
+            return memoizer;
+        }
     }
 }
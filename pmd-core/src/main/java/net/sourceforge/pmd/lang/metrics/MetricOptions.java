@@ -6,10 +6,10 @@ package net.sourceforge.pmd.lang.metrics;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Bundles a set of options to pass to a metric. Metrics may use these options as they see fit.
@@ -19,7 +19,8 @@ import java.util.Set;
  */
 public class MetricOptions {
 
-    private static final Map<MetricOptions, MetricOptions> POOL = new HashMap<>();
+    // options are built by rules of several threads
+    private static final ConcurrentMap<MetricOptions, MetricOptions> POOL = new ConcurrentHashMap<>();
     private static final MetricOptions EMPTY_OPTIONS;
     private Set<MetricOption> options;
 
@@ -173,12 +174,8 @@ public class MetricOptions {
             }
 
             MetricOptions result = new MetricOptions(opts);
-
-            if (!POOL.containsKey(result)) {
-                POOL.put(result, result);
-            }
-
-            return POOL.get(result);
+            MetricOptions pooled = POOL.putIfAbsent(result, result);
+            return pooled == null ? result : pooled;
         }
 
     }
@@ -72,10 +72,15 @@ public final class ParameterizedMetricKey<N extends Node> implements DataKey<Par
     public static <N extends Node> ParameterizedMetricKey<N> getInstance(MetricKey<N> key, MetricOptions options) {
         // sharing instances allows using DataMap, which uses reference identity
         ParameterizedMetricKey<N> tmp = new ParameterizedMetricKey<>(key, options);
-        POOL.putIfAbsent(tmp, tmp);
+        // this is called for every metric computation, so the lookup
+        // goes first, as putIfAbsent locks the bucket even if the key is there
+        ParameterizedMetricKey<?> pooled = POOL.get(tmp);
+        if (pooled == null) {
+            pooled = POOL.putIfAbsent(tmp, tmp);
+        }
 
         @SuppressWarnings("unchecked")
-        ParameterizedMetricKey<N> result = (ParameterizedMetricKey<N>) POOL.get(tmp);
+        ParameterizedMetricKey<N> result = (ParameterizedMetricKey<N>) (pooled == null ? tmp : pooled);
         return result;
     }
 }
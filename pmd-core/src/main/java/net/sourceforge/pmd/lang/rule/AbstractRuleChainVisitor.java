@@ -90,14 +90,12 @@ public abstract class AbstractRuleChainVisitor implements RuleChainVisitor {
                         final List<String> nodeNames = rule.getRuleChainVisits();
                         for (int j = 0; j < nodeNames.size(); j++) {
                             List<Node> ns = nodeNameToNodes.get(nodeNames.get(j));
-                            for (Node node : ns) {
-                                // Visit with underlying Rule, not the RuleReference
-                                Rule actualRule = rule;
-                                while (actualRule instanceof RuleReference) {
-                                    actualRule = ((RuleReference) actualRule).getRule();
-                                }
-                                visit(actualRule, node, ctx);
+                            // Visit with underlying Rule, not the RuleReference
+                            Rule actualRule = rule;
+                            while (actualRule instanceof RuleReference) {
+                                actualRule = ((RuleReference) actualRule).getRule();
                             }
+                            visitAll(actualRule, ns, ctx);
                             visits += ns.size();
                         }
                         rcto.close(visits);
@@ -123,6 +121,22 @@ public abstract class AbstractRuleChainVisitor implements RuleChainVisitor {
      */
     protected abstract void visit(Rule rule, Node node, RuleContext ctx);
 
+    /**
+     * Visit the given rule to all the given nodes, which have the same type.
+     * XPath rules are applied to all the nodes at once, so that their query
+     * is evaluated with the same dynamic context. The other rules visit the
+     * nodes one after the other.
+     */
+    protected void visitAll(Rule rule, List<Node> nodes, RuleContext ctx) {
+        if (rule instanceof XPathRule) {
+            rule.apply(nodes, ctx);
+            return;
+        }
+        for (Node node : nodes) {
+            visit(rule, node, ctx);
+        }
+    }
+
     /**
      * Index all nodes for visitation by rules.
      */
@@ -5,7 +5,6 @@
 package net.sourceforge.pmd.lang.rule;
 
 import java.io.File;
-import java.util.regex.Pattern;
 
 import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleContext;
@@ -70,7 +69,7 @@ public class ParametricRuleViolation<T extends Node> implements RuleViolation {
 
         String regex = rule.getProperty(Rule.VIOLATION_SUPPRESS_REGEX_DESCRIPTOR); // Regex
         if (regex != null && description != null) {
-            if (Pattern.matches(regex, description)) {
+            if (ViolationSuppressions.matchesRegex(regex, description)) {
                 suppressed = true;
             }
         }
@@ -78,7 +77,7 @@ public class ParametricRuleViolation<T extends Node> implements RuleViolation {
         if (!suppressed) { // XPath
             String xpath = rule.getProperty(Rule.VIOLATION_SUPPRESS_XPATH_DESCRIPTOR);
             if (xpath != null) {
-                suppressed = node.hasDescendantMatchingXPath(xpath);
+                suppressed = ViolationSuppressions.matchesXPath(xpath, node);
             }
         }
     }
@@ -0,0 +1,73 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.rule;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import org.jaxen.BaseXPath;
+import org.jaxen.JaxenException;
+
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.xpath.internal.ContextualizedNavigator;
+import net.sourceforge.pmd.lang.ast.xpath.internal.DeprecatedAttrLogger;
+
+/**
+ * Evaluates the {@link Rule#VIOLATION_SUPPRESS_REGEX_DESCRIPTOR} and
+ * {@link Rule#VIOLATION_SUPPRESS_XPATH_DESCRIPTOR} of rules, which are
+ * checked for every violation. The expressions are compiled once, instead
+ * of once per violation, which matters for rules that report lots of
+ * violations.
+ */
+final class ViolationSuppressions {
+
+    private static final ConcurrentMap<String, Pattern> REGEXES = new ConcurrentHashMap<>();
+
+    // Jaxen doesn't document its compiled expressions as thread-safe
+    private static final ThreadLocal<Map<String, BaseXPath>> XPATHS = new ThreadLocal<Map<String, BaseXPath>>() {
+        @Override
+        protected Map<String, BaseXPath> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    private ViolationSuppressions() {
+        // utility class
+    }
+
+    /**
+     * Returns true if the whole description matches the regex.
+     */
+    static boolean matchesRegex(String regex, String description) {
+        Pattern pattern = REGEXES.get(regex);
+        if (pattern == null) {
+            pattern = Pattern.compile(regex);
+            REGEXES.putIfAbsent(regex, pattern);
+        }
+        return pattern.matcher(description).matches();
+    }
+
+    /**
+     * Returns true if the XPath expression selects anything from the given
+     * node, like {@link Node#hasDescendantMatchingXPath(String)}.
+     */
+    static boolean matchesXPath(String xpath, Node node) {
+        try {
+            Map<String, BaseXPath> xpaths = XPATHS.get();
+            BaseXPath compiled = xpaths.get(xpath);
+            if (compiled == null) {
+                compiled = new BaseXPath(xpath, new ContextualizedNavigator(DeprecatedAttrLogger.createAdHocLogger()));
+                xpaths.put(xpath, compiled);
+            }
+            return !compiled.selectNodes(node).isEmpty();
+        } catch (final JaxenException e) {
+            throw new RuntimeException("XPath expression " + xpath + " failed: " + e.getLocalizedMessage(), e);
+        }
+    }
+}
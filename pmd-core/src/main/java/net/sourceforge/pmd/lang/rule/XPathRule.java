@@ -18,18 +18,25 @@ import org.apache.commons.lang3.StringUtils;
 
 import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.annotation.ThreadSafe;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.ast.xpath.internal.DeprecatedAttrLogger;
+import net.sourceforge.pmd.lang.rule.xpath.AbstractXPathRuleQuery;
 import net.sourceforge.pmd.lang.rule.xpath.JaxenXPathRuleQuery;
 import net.sourceforge.pmd.lang.rule.xpath.SaxonXPathRuleQuery;
-import net.sourceforge.pmd.lang.rule.xpath.XPathRuleQuery;
 import net.sourceforge.pmd.lang.rule.xpath.XPathVersion;
 import net.sourceforge.pmd.properties.EnumeratedProperty;
 import net.sourceforge.pmd.properties.StringProperty;
 
 /**
  * Rule that tries to match an XPath expression against a DOM view of an AST.
+ * The rule is {@link ThreadSafe} with XPath 2.0 and XPath 1.0 compatibility
+ * mode: its Saxon query is initialized once, and the state of an evaluation
+ * is kept in the tree of the file. The Jaxen expressions of XPath 1.0 are not
+ * meant to be shared by several threads, so XPath 1.0 rules are copied for
+ * each thread like the other rules.
  */
+@ThreadSafe
 public class XPathRule extends AbstractRule {
 
     /**
@@ -68,7 +75,7 @@ public class XPathRule extends AbstractRule {
     /**
      * This is initialized only once when calling {@link #evaluate(Node, RuleContext)} or {@link #getRuleChainVisits()}.
      */
-    private XPathRuleQuery xpathRuleQuery;
+    private volatile AbstractXPathRuleQuery xpathRuleQuery;
 
     // this is shared with rules forked by deepCopy, used by the XPathRuleQuery
     private DeprecatedAttrLogger attrLogger = DeprecatedAttrLogger.create(this);
@@ -154,8 +161,14 @@ public class XPathRule extends AbstractRule {
 
     @Override
     public void apply(List<? extends Node> nodes, RuleContext ctx) {
-        for (Node node : nodes) {
-            evaluate(node, ctx);
+        if (xPathRuleQueryNeedsInitialization()) {
+            initXPathRuleQuery();
+        }
+
+        // the nodes are evaluated at once, see AbstractXPathRuleQuery#evaluate(List, RuleContext)
+        List<Node> nodesWithViolation = xpathRuleQuery.evaluate(nodes, ctx);
+        for (Node nodeWithViolation : nodesWithViolation) {
+            addViolation(ctx, nodeWithViolation, nodeWithViolation.getImage());
         }
     }
 
@@ -181,9 +194,13 @@ public class XPathRule extends AbstractRule {
 
     /**
      * Initializes {@link #xpathRuleQuery} iff {@link #xPathRuleQueryNeedsInitialization()} is true. To select the
-     * engine in which the query will be run it looks at the XPath version.
+     * engine in which the query will be run it looks at the XPath version. The rule chain visits of the query
+     * are added to the rule before the query is published, as the rule may be shared by several threads.
      */
-    private void initXPathRuleQuery() {
+    private synchronized void initXPathRuleQuery() {
+        if (!xPathRuleQueryNeedsInitialization()) {
+            return;
+        }
         String xpath = getXPathExpression();
         XPathVersion version = getVersion();
 
@@ -191,15 +208,21 @@ public class XPathRule extends AbstractRule {
             throw new IllegalStateException("Invalid XPath version, should have been caught by Rule::dysfunctionReason");
         }
 
+        AbstractXPathRuleQuery query;
         if (version == XPathVersion.XPATH_1_0) {
-            xpathRuleQuery = new JaxenXPathRuleQuery(attrLogger);
+            query = new JaxenXPathRuleQuery(attrLogger);
         } else {
-            xpathRuleQuery = new SaxonXPathRuleQuery(attrLogger);
+            query = new SaxonXPathRuleQuery(attrLogger);
         }
 
-        xpathRuleQuery.setXPath(xpath);
-        xpathRuleQuery.setVersion(version.getXmlName());
-        xpathRuleQuery.setProperties(getPropertiesByPropertyDescriptor());
+        query.setXPath(xpath);
+        query.setVersion(version.getXmlName());
+        query.setProperties(getPropertiesByPropertyDescriptor());
+
+        for (String nodeName : query.getRuleChainVisits()) {
+            super.addRuleChainVisit(nodeName);
+        }
+        xpathRuleQuery = query;
     }
 
     /**
@@ -215,10 +238,6 @@ public class XPathRule extends AbstractRule {
     public List<String> getRuleChainVisits() {
         if (xPathRuleQueryNeedsInitialization()) {
             initXPathRuleQuery();
-
-            for (String nodeName : xpathRuleQuery.getRuleChainVisits()) {
-                super.addRuleChainVisit(nodeName);
-            }
         }
         return super.getRuleChainVisits();
     }
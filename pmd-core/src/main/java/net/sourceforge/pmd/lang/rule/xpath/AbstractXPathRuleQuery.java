@@ -79,4 +79,22 @@ public abstract class AbstractXPathRuleQuery implements XPathRuleQuery {
 
     @Override
     public abstract List<Node> evaluate(Node node, RuleContext data);
+
+    /**
+     * Evaluates the query with each of the given nodes as the context node,
+     * as with {@link #evaluate(Node, RuleContext)}. The results are in the
+     * order of the nodes.
+     *
+     * @param nodes The context nodes
+     * @param data  The rule context
+     *
+     * @return The nodes matched by the query, for all the context nodes
+     */
+    public List<Node> evaluate(List<? extends Node> nodes, RuleContext data) {
+        final List<Node> results = new ArrayList<>();
+        for (final Node node : nodes) {
+            results.addAll(evaluate(node, data));
+        }
+        return results;
+    }
 }
@@ -5,8 +5,10 @@
 package net.sourceforge.pmd.lang.rule.xpath;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -17,6 +19,7 @@ import java.util.regex.Pattern;
 import net.sourceforge.pmd.RuleContext;
 import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.ast.NodeIndex;
 import net.sourceforge.pmd.lang.ast.xpath.internal.AstNodeOwner;
 import net.sourceforge.pmd.lang.ast.xpath.internal.DeprecatedAttrLogger;
 import net.sourceforge.pmd.lang.ast.xpath.saxon.DocumentNode;
@@ -75,6 +78,27 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
     /** Cache key for the wrapped tree for saxon. */
     private static final SimpleDataKey<DocumentNode> SAXON_TREE_CACHE_KEY = DataMap.simpleDataKey("saxon.tree");
 
+    /** The maximum number of compiled expressions kept in {@link #COMPILED_XPATHS}. */
+    private static final int MAX_COMPILED_XPATHS = 512;
+
+    /**
+     * The most recently used compiled expressions, by version, expression and
+     * variable names. The values of the variables are only bound when the
+     * expressions are evaluated, so the queries of all the rules with the
+     * same expression, on all threads, share the same compiled expression.
+     * The queries keep their compiled expression, so evicting it only means
+     * that the queries initialized later compile it again. Guarded by itself.
+     */
+    private static final Map<List<Object>, CompiledXPath> COMPILED_XPATHS =
+        new LinkedHashMap<List<Object>, CompiledXPath>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, CompiledXPath> eldest) {
+                return size() > MAX_COMPILED_XPATHS;
+            }
+        };
+
     /**
      * Contains for each nodeName a sub expression, used for implementing rule chain.
      */
@@ -83,7 +107,7 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
     /**
      * Representation of an XPath query, created at {@link #initializeXPathExpression()} using {@link #xpath}.
      */
-    XPathExpression xpathExpression;
+    volatile XPathExpression xpathExpression;
 
     /**
      * Holds the static context later used to match the variables in the dynamic context in
@@ -92,6 +116,9 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
      */
     private List<XPathVariable> xpathVariables;
 
+    /** The values of the {@link #xpathVariables}, converted once from the {@link #properties}. */
+    private volatile List<ValueRepresentation> xpathVariableValues;
+
     private final DeprecatedAttrLogger attrCtx;
 
     @Deprecated
@@ -110,39 +137,62 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
 
     @Override
     public List<Node> evaluate(final Node node, final RuleContext data) {
+        return evaluate(Collections.singletonList(node), data);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Each node is evaluated in its own dynamic context: moving the
+     * context item of a dynamic context to another node needs the
+     * configuration of the node, which the Saxon nodes of the AST don't
+     * provide.
+     */
+    @Override
+    public List<Node> evaluate(final List<? extends Node> nodes, final RuleContext data) {
         initializeXPathExpression();
 
         try {
-            final DocumentNode documentNode = getDocumentNodeForRootNode(node);
-            documentNode.setAttrCtx(attrCtx); //
-
-            // Map AST Node -> Saxon Node
-            final ElementNode rootElementNode = documentNode.nodeToElementNode.get(node);
-            assert rootElementNode != null : "Cannot find " + node;
-            final XPathDynamicContext xpathDynamicContext = createDynamicContext(rootElementNode);
-
-            final List<Node> results = new LinkedList<>();
-            List<Expression> expressions = getXPathExpressionForNodeOrDefault(node.getXPathNodeName());
-            for (Expression expression : expressions) {
-                SequenceIterator iterator = expression.iterate(xpathDynamicContext.getXPathContextObject());
-                Item current = iterator.next();
-                while (current != null) {
-                    if (current instanceof AstNodeOwner) {
-                        results.add(((AstNodeOwner) current).getUnderlyingNode());
-                    } else {
-                        throw new RuntimeException("XPath rule expression returned a non-node (" + current.getClass() + "): " + current);
-                    }
-                    current = iterator.next();
+            final List<Node> results = new ArrayList<>();
+            DocumentNode documentNode = null;
+            for (final Node node : nodes) {
+                final DocumentNode nodeDocument = getDocumentNodeForRootNode(node);
+                if (nodeDocument != documentNode) {
+                    documentNode = nodeDocument;
+                    documentNode.setAttrCtx(attrCtx);
                 }
-            }
 
-            Collections.sort(results, RuleChainAnalyzer.documentOrderComparator());
+                // Map AST Node -> Saxon Node
+                final ElementNode elementNode = documentNode.nodeToElementNode.get(node);
+                assert elementNode != null : "Cannot find " + node;
+                results.addAll(evaluate(node, createDynamicContext(elementNode)));
+            }
             return results;
         } catch (final XPathException e) {
             throw new RuntimeException(super.xpath + " had problem: " + e.getMessage(), e);
         }
     }
 
+    private List<Node> evaluate(final Node node, final XPathDynamicContext xpathDynamicContext) throws XPathException {
+        final List<Node> results = new LinkedList<>();
+        List<Expression> expressions = getXPathExpressionForNodeOrDefault(node.getXPathNodeName());
+        for (Expression expression : expressions) {
+            SequenceIterator iterator = expression.iterate(xpathDynamicContext.getXPathContextObject());
+            Item current = iterator.next();
+            while (current != null) {
+                if (current instanceof AstNodeOwner) {
+                    results.add(((AstNodeOwner) current).getUnderlyingNode());
+                } else {
+                    throw new RuntimeException("XPath rule expression returned a non-node (" + current.getClass() + "): " + current);
+                }
+                current = iterator.next();
+            }
+        }
+
+        Collections.sort(results, RuleChainAnalyzer.documentOrderComparator());
+        return results;
+    }
+
     private List<Expression> getXPathExpressionForNodeOrDefault(String nodeName) {
         if (nodeNameToXPaths.containsKey(nodeName)) {
             return nodeNameToXPaths.get(nodeName);
@@ -164,18 +214,44 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
         final XPathDynamicContext dynamicContext = xpathExpression.createDynamicContext(elementNode);
 
         // Set variable values on the dynamic context
+        List<ValueRepresentation> values = xpathVariableValues;
+        if (values == null) {
+            // computing the values twice on a race is harmless
+            values = getVariableValues();
+            xpathVariableValues = values;
+        }
+        for (int i = 0; i < xpathVariables.size(); i++) {
+            if (values.get(i) != null) {
+                dynamicContext.setVariable(xpathVariables.get(i), values.get(i));
+            }
+        }
+        return dynamicContext;
+    }
+
+    /**
+     * Returns the values of the {@link #xpathVariables}, null for those
+     * which don't correspond to a property.
+     */
+    private List<ValueRepresentation> getVariableValues() {
+        final List<ValueRepresentation> values = new ArrayList<>();
         for (final XPathVariable xpathVariable : xpathVariables) {
             final String variableName = xpathVariable.getVariableQName().getLocalName();
+            ValueRepresentation value = null;
             for (final Map.Entry<PropertyDescriptor<?>, Object> entry : super.properties.entrySet()) {
                 if (variableName.equals(entry.getKey().name())) {
-                    final ValueRepresentation valueRepresentation = getRepresentation(entry.getKey(), entry.getValue());
-                    dynamicContext.setVariable(xpathVariable, valueRepresentation);
+                    value = getRepresentation(entry.getKey(), entry.getValue());
                 }
             }
+            values.add(value);
         }
-        return dynamicContext;
+        return values;
     }
 
+    @Override
+    public void setProperties(Map<PropertyDescriptor<?>, Object> properties) {
+        super.setProperties(properties);
+        xpathVariableValues = null;
+    }
 
     private ValueRepresentation getRepresentation(final PropertyDescriptor<?> descriptor, final Object value) {
         if (descriptor.isMultiValue()) {
@@ -198,7 +274,8 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
 
         DataMap<DataKey<?, ?>> userMap = root.getUserMap();
         DocumentNode docNode = userMap.get(SAXON_TREE_CACHE_KEY);
-        if (docNode == null) {
+        if (docNode == null || docNode.getNodeIndex() != NodeIndex.get(root)) {
+            // the element nodes are created from the index, which is rebuilt when the tree changes
             docNode = new DocumentNode(root, getNamePool());
             userMap.set(SAXON_TREE_CACHE_KEY, docNode);
         }
@@ -219,90 +296,143 @@ public class SaxonXPathRuleQuery extends AbstractXPathRuleQuery {
         return root;
     }
 
-    private void addExpressionForNode(String nodeName, Expression expression) {
-        if (!nodeNameToXPaths.containsKey(nodeName)) {
-            nodeNameToXPaths.put(nodeName, new LinkedList<Expression>());
-        }
-        nodeNameToXPaths.get(nodeName).add(expression);
-    }
-
     /**
-     * Initialize the {@link #xpathExpression} and the {@link #xpathVariables}.
+     * Initialize the {@link #xpathExpression} and the {@link #xpathVariables}
+     * from the shared compiled expression.
      */
     private void initializeXPathExpression() {
         if (xpathExpression != null) {
             return;
         }
-        try {
-            final XPathEvaluator xpathEvaluator = new XPathEvaluator();
-            final XPathStaticContext xpathStaticContext = xpathEvaluator.getStaticContext();
-            xpathStaticContext.getConfiguration().setNamePool(getNamePool());
+        // the query may be shared by several threads, see XPathRule
+        synchronized (this) {
+            if (xpathExpression == null) {
+                initializeFromCompiledXPath();
+            }
+        }
+    }
+
+    private void initializeFromCompiledXPath() {
+        final List<String> variableNames = new ArrayList<>();
+        for (final PropertyDescriptor<?> propertyDescriptor : super.properties.keySet()) {
+            final String name = propertyDescriptor.name();
+            if (!"xpath".equals(name)) {
+                variableNames.add(name);
+            }
+        }
+        Collections.sort(variableNames);
 
-            // Enable XPath 1.0 compatibility
-            if (XPATH_1_0_COMPATIBILITY.equals(version)) {
-                ((AbstractStaticContext) xpathStaticContext).setBackwardsCompatibilityMode(true);
+        final List<Object> key = Arrays.<Object>asList(version, super.xpath, variableNames);
+        CompiledXPath compiled;
+        synchronized (COMPILED_XPATHS) {
+            compiled = COMPILED_XPATHS.get(key);
+        }
+        if (compiled == null) {
+            // compile outside of the lock, an expression compiled twice concurrently is harmless
+            final CompiledXPath newCompiled = new CompiledXPath(version, super.xpath, variableNames);
+            synchronized (COMPILED_XPATHS) {
+                compiled = COMPILED_XPATHS.get(key);
+                if (compiled == null) {
+                    COMPILED_XPATHS.put(key, newCompiled);
+                    compiled = newCompiled;
+                }
             }
+        }
+
+        xpathVariables = compiled.xpathVariables;
+        nodeNameToXPaths = compiled.nodeNameToXPaths;
+        super.ruleChainVisits.addAll(compiled.ruleChainVisits);
+        xpathExpression = compiled.xpathExpression;
+    }
+
+    /**
+     * An XPath expression compiled for a version and variable names, together
+     * with its sub expressions for the rule chain. The expression is not modified
+     * after its compilation, so that it can be evaluated on several threads, each
+     * with its own dynamic context.
+     */
+    private static final class CompiledXPath {
+
+        private final XPathExpression xpathExpression;
+        private final List<XPathVariable> xpathVariables = new ArrayList<>();
+        private final Map<String, List<Expression>> nodeNameToXPaths = new HashMap<>();
+        private final List<String> ruleChainVisits = new ArrayList<>();
+
+        CompiledXPath(final String version, final String xpath, final List<String> variableNames) {
+            try {
+                final XPathEvaluator xpathEvaluator = new XPathEvaluator();
+                final XPathStaticContext xpathStaticContext = xpathEvaluator.getStaticContext();
+                xpathStaticContext.getConfiguration().setNamePool(getNamePool());
+
+                // Enable XPath 1.0 compatibility
+                if (XPATH_1_0_COMPATIBILITY.equals(version)) {
+                    ((AbstractStaticContext) xpathStaticContext).setBackwardsCompatibilityMode(true);
+                }
 
-            ((IndependentContext) xpathStaticContext).declareNamespace("fn", NamespaceConstant.FN);
+                ((IndependentContext) xpathStaticContext).declareNamespace("fn", NamespaceConstant.FN);
 
-            // Register PMD functions
-            Initializer.initialize((IndependentContext) xpathStaticContext);
+                // Register PMD functions
+                Initializer.initialize((IndependentContext) xpathStaticContext);
 
-            /*
-            Create XPathVariables for later use. It is a Saxon quirk that XPathVariables must be defined on the
-            static context, and reused later to associate an actual value on the dynamic context creation, in
-            createDynamicContext(ElementNode).
-            */
-            xpathVariables = new ArrayList<>();
-            for (final PropertyDescriptor<?> propertyDescriptor : super.properties.keySet()) {
-                final String name = propertyDescriptor.name();
-                if (!"xpath".equals(name)) {
+                /*
+                Create XPathVariables for later use. It is a Saxon quirk that XPathVariables must be defined on the
+                static context, and reused later to associate an actual value on the dynamic context creation, in
+                createDynamicContext(ElementNode).
+                */
+                for (final String name : variableNames) {
                     final XPathVariable xpathVariable = xpathStaticContext.declareVariable(null, name);
                     xpathVariables.add(xpathVariable);
                 }
+
+                xpathExpression = xpathEvaluator.createExpression(xpath);
+                analyzeXPathForRuleChain(xpathEvaluator, xpath);
+            } catch (final XPathException e) {
+                throw new RuntimeException(e);
             }
+        }
 
-            xpathExpression = xpathEvaluator.createExpression(super.xpath);
-            analyzeXPathForRuleChain(xpathEvaluator);
-        } catch (final XPathException e) {
-            throw new RuntimeException(e);
+        private void addExpressionForNode(String nodeName, Expression expression) {
+            if (!nodeNameToXPaths.containsKey(nodeName)) {
+                nodeNameToXPaths.put(nodeName, new LinkedList<Expression>());
+            }
+            nodeNameToXPaths.get(nodeName).add(expression);
         }
-    }
-    
-    private void analyzeXPathForRuleChain(final XPathEvaluator xpathEvaluator) {
-        final Expression expr = xpathExpression.getInternalExpression();
 
-        boolean useRuleChain = true;
+        private void analyzeXPathForRuleChain(final XPathEvaluator xpathEvaluator, final String xpath) {
+            final Expression expr = xpathExpression.getInternalExpression();
 
-        // First step: Split the union venn expressions into single expressions
-        Iterable<Expression> subexpressions = RuleChainAnalyzer.splitUnions(expr);
+            boolean useRuleChain = true;
 
-        // Second step: Analyze each expression separately
-        for (Expression subexpression : subexpressions) {
-            RuleChainAnalyzer rca = new RuleChainAnalyzer(xpathEvaluator.getConfiguration());
-            Expression modified = rca.visit(subexpression);
+            // First step: Split the union venn expressions into single expressions
+            Iterable<Expression> subexpressions = RuleChainAnalyzer.splitUnions(expr);
 
-            if (rca.getRootElement() != null) {
-                addExpressionForNode(rca.getRootElement(), modified);
-            } else {
-                // couldn't find a root element for the expression, that means, we can't use rule chain at all
-                // even though, it would be possible for part of the expression.
-                useRuleChain = false;
-                break;
+            // Second step: Analyze each expression separately
+            for (Expression subexpression : subexpressions) {
+                RuleChainAnalyzer rca = new RuleChainAnalyzer(xpathEvaluator.getConfiguration());
+                Expression modified = rca.visit(subexpression);
+
+                if (rca.getRootElement() != null) {
+                    addExpressionForNode(rca.getRootElement(), modified);
+                } else {
+                    // couldn't find a root element for the expression, that means, we can't use rule chain at all
+                    // even though, it would be possible for part of the expression.
+                    useRuleChain = false;
+                    break;
+                }
             }
-        }
 
-        if (useRuleChain) {
-            super.ruleChainVisits.addAll(nodeNameToXPaths.keySet());
-        } else {
-            nodeNameToXPaths.clear();
-            if (LOG.isLoggable(Level.FINE)) {
-                LOG.log(Level.FINE, "Unable to use RuleChain for XPath: " + xpath);
+            if (useRuleChain) {
+                ruleChainVisits.addAll(nodeNameToXPaths.keySet());
+            } else {
+                nodeNameToXPaths.clear();
+                if (LOG.isLoggable(Level.FINE)) {
+                    LOG.log(Level.FINE, "Unable to use RuleChain for XPath: " + xpath);
+                }
             }
-        }
 
-        // always add fallback expression
-        addExpressionForNode(AST_ROOT, xpathExpression.getInternalExpression());
+            // always add fallback expression
+            addExpressionForNode(AST_ROOT, xpathExpression.getInternalExpression());
+        }
     }
 
     /**
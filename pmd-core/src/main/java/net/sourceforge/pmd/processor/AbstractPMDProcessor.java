@@ -42,10 +42,26 @@ public abstract class AbstractPMDProcessor {
 
     protected final PMDConfiguration configuration;
 
+    private boolean mergeFileReports = true;
+
     public AbstractPMDProcessor(PMDConfiguration configuration) {
         this.configuration = configuration;
     }
 
+    /**
+     * Sets whether the report of each file is merged into the report of
+     * the rule context passed to {@link #processFiles(RuleSets, List, RuleContext, List)}.
+     * This is enabled by default. When disabled, the report of each file is
+     * only handed to the renderers and then dropped, so that violations don't
+     * stay in memory until the end of the analysis. The listeners of the
+     * rule context's report are still notified.
+     *
+     * @param mergeFileReports Whether to merge the file reports
+     */
+    public void setMergeFileReports(boolean mergeFileReports) {
+        this.mergeFileReports = mergeFileReports;
+    }
+
     public void renderReports(final List<Renderer> renderers, final Report report) {
 
         try (TimedOperation to = TimeTracker.startOperation(TimedOperationCategory.REPORTING)) {
@@ -136,7 +152,7 @@ public abstract class AbstractPMDProcessor {
                 // this is the real, canonical and absolute filename (not shortened)
                 String realFileName = dataSource.getNiceFileName(false, null);
 
-                runAnalysis(new PmdRunnable(dataSource, realFileName, renderers, ctx, rulesets, processor));
+                runAnalysis(new PmdRunnable(dataSource, realFileName, renderers, ctx, rulesets, processor, mergeFileReports));
             }
 
             // then add analysis results per file
@@ -4,11 +4,9 @@
 
 package net.sourceforge.pmd.processor;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import net.sourceforge.pmd.PMDConfiguration;
-import net.sourceforge.pmd.Report;
 import net.sourceforge.pmd.annotation.InternalApi;
 import net.sourceforge.pmd.renderers.Renderer;
 
@@ -20,23 +18,20 @@ import net.sourceforge.pmd.renderers.Renderer;
 @InternalApi
 public final class MonoThreadProcessor extends AbstractPMDProcessor {
 
-    private final List<Report> reports = new ArrayList<>();
-
     public MonoThreadProcessor(PMDConfiguration configuration) {
         super(configuration);
     }
 
     @Override
     protected void runAnalysis(PmdRunnable runnable) {
-        // single thread execution, run analysis on same thread
-        reports.add(runnable.call());
+        // single thread execution, run analysis on same thread and
+        // render right away, so that the reports don't pile up
+        super.renderReports(runnable.getRenderers(), runnable.call());
     }
 
     @Override
     protected void collectReports(List<Renderer> renderers) {
-        for (Report r : reports) {
-            super.renderReports(renderers, r);
-        }
+        // reports are already rendered
 
         // Since this thread may run PMD again, clean up the runnable
         PmdRunnable.reset();
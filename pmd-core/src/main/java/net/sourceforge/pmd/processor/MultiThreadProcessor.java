@@ -5,15 +5,21 @@
 package net.sourceforge.pmd.processor;
 
 import java.util.List;
-import java.util.concurrent.CompletionService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import net.sourceforge.pmd.PMDConfiguration;
 import net.sourceforge.pmd.Report;
 import net.sourceforge.pmd.annotation.InternalApi;
+import net.sourceforge.pmd.benchmark.TimeTracker;
+import net.sourceforge.pmd.benchmark.TimedOperation;
+import net.sourceforge.pmd.benchmark.TimedOperationCategory;
 import net.sourceforge.pmd.renderers.Renderer;
 
 
@@ -24,34 +30,91 @@ import net.sourceforge.pmd.renderers.Renderer;
 @Deprecated
 @InternalApi
 public class MultiThreadProcessor extends AbstractPMDProcessor {
+    private static final String TAIL_LABEL = "Tail (threads idle)";
+
+    /**
+     * Number of finished file reports per thread that may wait for
+     * rendering, before the threads block until the renderers catch up.
+     */
+    private static final int PENDING_REPORTS_PER_THREAD = 4;
+
     private final ExecutorService executor;
-    private final CompletionService<Report> completionService;
+    private final BlockingQueue<Future<Report>> finishedReports;
 
     private long submittedTasks = 0L;
+    private long renderedTasks = 0L;
 
     public MultiThreadProcessor(final PMDConfiguration configuration) {
         super(configuration);
 
-        executor = Executors.newFixedThreadPool(configuration.getThreads(), new PmdThreadFactory());
-        completionService = new ExecutorCompletionService<>(executor);
+        if (configuration.isLargestFilesFirst()) {
+            // files are submitted largest first, async mode keeps that order (FIFO)
+            executor = new ForkJoinPool(configuration.getThreads(), new PmdThreadFactory(), null, true);
+        } else {
+            executor = Executors.newFixedThreadPool(configuration.getThreads(), new PmdThreadFactory());
+        }
+        finishedReports = new ArrayBlockingQueue<>(configuration.getThreads() * PENDING_REPORTS_PER_THREAD);
     }
 
     @Override
     protected void runAnalysis(PmdRunnable runnable) {
-        completionService.submit(runnable);
+        final FutureTask<Report> task = new FutureTask<>(runnable);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                task.run();
+                try {
+                    // blocks if the renderers can't keep up
+                    finishedReports.put(task);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
         submittedTasks++;
+
+        // renders the reports finished meanwhile, so that the threads don't
+        // wait for the queue while the remaining files are submitted
+        Future<Report> finished = finishedReports.poll();
+        while (finished != null) {
+            renderFinishedReport(runnable.getRenderers(), finished);
+            finished = finishedReports.poll();
+        }
     }
 
     @Override
     protected void collectReports(List<Renderer> renderers) {
+        // measures the time during which at least one thread is idle, because
+        // there are fewer remaining files than threads
+        TimedOperation tail = null;
         try {
-            for (int i = 0; i < submittedTasks; i++) {
-                final Report report = completionService.take().get();
-                super.renderReports(renderers, report);
+            while (renderedTasks < submittedTasks) {
+                if (tail == null && submittedTasks - renderedTasks < configuration.getThreads()) {
+                    tail = TimeTracker.startOperation(TimedOperationCategory.FILE_PROCESSING, TAIL_LABEL);
+                }
+                renderFinishedReport(renderers, finishedReports.take());
+            }
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (tail != null) {
+                tail.close();
             }
+            executor.shutdownNow();
+        }
+    }
+
+    private void renderFinishedReport(List<Renderer> renderers, Future<Report> finished) {
+        renderedTasks++;
+        final Report report;
+        try {
+            report = finished.get();
         } catch (final InterruptedException ie) {
+            // the task is done, this doesn't wait
             Thread.currentThread().interrupt();
+            return;
         } catch (final ExecutionException ee) {
+            executor.shutdownNow();
             final Throwable t = ee.getCause();
             if (t instanceof RuntimeException) {
                 throw (RuntimeException) t;
@@ -60,8 +123,7 @@ public class MultiThreadProcessor extends AbstractPMDProcessor {
             } else {
                 throw new IllegalStateException("PmdRunnable exception", t);
             }
-        } finally {
-            executor.shutdownNow();
         }
+        super.renderReports(renderers, report);
     }
 }
@@ -4,9 +4,6 @@
 
 package net.sourceforge.pmd.processor;
 
-import java.io.BufferedInputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.logging.Level;
@@ -40,15 +37,28 @@ public class PmdRunnable implements Callable<Report> {
     private final RuleContext ruleContext;
     private final RuleSets ruleSets;
     private final SourceCodeProcessor sourceCodeProcessor;
+    private final boolean mergeReport;
 
     public PmdRunnable(DataSource dataSource, String fileName, List<Renderer> renderers,
             RuleContext ruleContext, RuleSets ruleSets, SourceCodeProcessor sourceCodeProcessor) {
+        this(dataSource, fileName, renderers, ruleContext, ruleSets, sourceCodeProcessor, true);
+    }
+
+    /**
+     * @param mergeReport Whether the report of the file is merged into the
+     *                    report of the given rule context, once the file has
+     *                    been processed
+     */
+    public PmdRunnable(DataSource dataSource, String fileName, List<Renderer> renderers,
+            RuleContext ruleContext, RuleSets ruleSets, SourceCodeProcessor sourceCodeProcessor,
+            boolean mergeReport) {
         this.ruleSets = ruleSets;
         this.dataSource = dataSource;
         this.fileName = fileName;
         this.renderers = renderers;
         this.ruleContext = ruleContext;
         this.sourceCodeProcessor = sourceCodeProcessor;
+        this.mergeReport = mergeReport;
     }
 
     public static void reset() {
@@ -67,7 +77,8 @@ public class PmdRunnable implements Callable<Report> {
 
         ThreadContext tc = LOCAL_THREAD_CONTEXT.get();
         if (tc == null) {
-            tc = new ThreadContext(new RuleSets(ruleSets), new RuleContext(ruleContext));
+            // thread-safe rules are shared, the per-file state is in the rule context
+            tc = new ThreadContext(ruleSets.forkForThread(), new RuleContext(ruleContext));
             LOCAL_THREAD_CONTEXT.set(tc);
         }
 
@@ -80,25 +91,29 @@ public class PmdRunnable implements Callable<Report> {
             r.startFileAnalysis(dataSource);
         }
 
-        try (InputStream stream = new BufferedInputStream(dataSource.getInputStream())) {
+        try {
             tc.ruleContext.setLanguageVersion(null);
-            sourceCodeProcessor.processSourceCode(stream, tc.ruleSets, tc.ruleContext);
+            sourceCodeProcessor.processSourceCode(dataSource, tc.ruleSets, tc.ruleContext);
         } catch (PMDException pmde) {
             addError(report, pmde, "Error while processing file: " + fileName);
-        } catch (IOException ioe) {
-            addError(report, ioe, "IOException during processing of " + fileName);
         } catch (RuntimeException re) {
             addError(report, re, "RuntimeException during processing of " + fileName);
         }
 
         TimeTracker.finishThread();
 
-        // merge the sub-report into the global report (thread-safe)
-        ruleContext.getReport().merge(report);
+        if (mergeReport) {
+            // merge the sub-report into the global report (thread-safe)
+            ruleContext.getReport().merge(report);
+        }
 
         return report;
     }
 
+    /* default */ List<Renderer> getRenderers() {
+        return renderers;
+    }
+
     private static class ThreadContext {
         /* default */ final RuleSets ruleSets;
         /* default */ final RuleContext ruleContext;
@@ -4,6 +4,9 @@
 
 package net.sourceforge.pmd.processor;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -15,7 +18,7 @@ import net.sourceforge.pmd.annotation.InternalApi;
  */
 @Deprecated
 @InternalApi
-public class PmdThreadFactory implements ThreadFactory {
+public class PmdThreadFactory implements ThreadFactory, ForkJoinWorkerThreadFactory {
 
     private final AtomicInteger counter = new AtomicInteger();
 
@@ -24,4 +27,10 @@ public class PmdThreadFactory implements ThreadFactory {
         return new Thread(r, "PmdThread " + counter.incrementAndGet());
     }
 
+    @Override
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        final ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) { };
+        thread.setName("PmdThread " + counter.incrementAndGet());
+        return thread;
+    }
 }
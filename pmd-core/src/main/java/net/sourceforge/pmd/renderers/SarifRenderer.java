@@ -10,22 +10,33 @@ import java.util.Iterator;
 import net.sourceforge.pmd.Report;
 import net.sourceforge.pmd.RuleViolation;
 import net.sourceforge.pmd.renderers.internal.sarif.SarifLog;
+import net.sourceforge.pmd.renderers.internal.sarif.SarifLog.Invocation;
+import net.sourceforge.pmd.renderers.internal.sarif.SarifLog.Result;
+import net.sourceforge.pmd.renderers.internal.sarif.SarifLog.Tool;
 import net.sourceforge.pmd.renderers.internal.sarif.SarifLogBuilder;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 
+/**
+ * Renders a SARIF log with a single run. Each violation is written as a
+ * result as soon as its file is processed, only the rule table is kept in
+ * memory. The tool of the run, which holds the rule table, is thus written
+ * after the results.
+ */
 public class SarifRenderer extends AbstractIncrementingRenderer {
     public static final String NAME = "sarif";
     private static final String DEFAULT_DESCRIPTION = "Static Analysis Results Interchange Format (SARIF)";
     private static final String DEFAULT_FILE_EXTENSION = "sarif.json";
 
+    // the indentation is set on the JSON writer
     private final Gson gson = new GsonBuilder()
             .disableHtmlEscaping()
-            .setPrettyPrinting()
             .create();
 
     private SarifLogBuilder sarifLogBuilder;
+    private JsonWriter jsonWriter;
 
     public SarifRenderer() {
         super(NAME, DEFAULT_DESCRIPTION);
@@ -39,20 +50,42 @@ public class SarifRenderer extends AbstractIncrementingRenderer {
     @Override
     public void start() throws IOException {
         sarifLogBuilder = SarifLogBuilder.sarifLogBuilder();
+
+        jsonWriter = new JsonWriter(writer);
+        jsonWriter.setIndent("  ");
+        jsonWriter.setHtmlSafe(false);
+
+        final SarifLog header = SarifLog.builder().build();
+        jsonWriter.beginObject();
+        jsonWriter.name("$schema").value(header.getSchema());
+        jsonWriter.name("version").value(header.getVersion());
+        jsonWriter.name("runs").beginArray();
+        jsonWriter.beginObject(); // run
+        jsonWriter.name("results").beginArray();
     }
 
     @Override
     public void renderFileViolations(Iterator<RuleViolation> violations) throws IOException {
         while (violations.hasNext()) {
             final RuleViolation violation = violations.next();
-            sarifLogBuilder.add(violation);
+            gson.toJson(sarifLogBuilder.result(violation), Result.class, jsonWriter);
         }
     }
 
     @Override
     public void end() throws IOException {
         addErrors();
-        writeLog();
+
+        jsonWriter.endArray(); // results
+        jsonWriter.name("tool");
+        gson.toJson(sarifLogBuilder.tool(), Tool.class, jsonWriter);
+        jsonWriter.name("invocations").beginArray();
+        gson.toJson(sarifLogBuilder.invocation(), Invocation.class, jsonWriter);
+        jsonWriter.endArray();
+        jsonWriter.endObject(); // run
+        jsonWriter.endArray(); // runs
+        jsonWriter.endObject();
+        jsonWriter.flush();
     }
 
     private void addErrors() {
@@ -64,10 +97,4 @@ public class SarifRenderer extends AbstractIncrementingRenderer {
             sarifLogBuilder.addConfigurationError(error);
         }
     }
-
-    private void writeLog() throws IOException {
-        final SarifLog sarifLog = sarifLogBuilder.build();
-        final String json = gson.toJson(sarifLog);
-        writer.write(json);
-    }
 }
@@ -17,7 +17,6 @@ import static net.sourceforge.pmd.renderers.internal.sarif.SarifLog.PropertyBag;
 import static net.sourceforge.pmd.renderers.internal.sarif.SarifLog.Region;
 import static net.sourceforge.pmd.renderers.internal.sarif.SarifLog.ReportingDescriptor;
 import static net.sourceforge.pmd.renderers.internal.sarif.SarifLog.Result;
-import static net.sourceforge.pmd.renderers.internal.sarif.SarifLog.Run;
 import static net.sourceforge.pmd.renderers.internal.sarif.SarifLog.Tool;
 import static net.sourceforge.pmd.renderers.internal.sarif.SarifLog.ToolConfigurationNotification;
 import static net.sourceforge.pmd.renderers.internal.sarif.SarifLog.ToolExecutionNotification;
@@ -32,10 +31,18 @@ import java.util.Map;
 
 import net.sourceforge.pmd.PMDVersion;
 import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleViolation;
 
+/**
+ * Builds the parts of a SARIF log. The results are built one at a time,
+ * so that they can be written as files complete. Only the rule table, and
+ * the processing and configuration errors, are kept until the end.
+ */
 public class SarifLogBuilder {
-    private final Map<ReportingDescriptor, List<Location>> locationsByRule = new HashMap<>();
+    /** Index in {@link #rules} of each rule, by rule set name and rule name. */
+    private final Map<List<String>, Integer> ruleIndices = new HashMap<>();
+    private final List<ReportingDescriptor> rules = new ArrayList<>();
     private final List<ToolConfigurationNotification> toolConfigurationNotifications = new ArrayList<>();
     private final List<ToolExecutionNotification> toolExecutionNotifications = new ArrayList<>();
 
@@ -43,15 +50,23 @@ public class SarifLogBuilder {
         return new SarifLogBuilder();
     }
 
-    public SarifLogBuilder add(RuleViolation violation) {
-        final ReportingDescriptor ruleDescriptor = getReportingDescriptor(violation);
-        final Location location = getRuleViolationLocation(violation);
-
-        final List<Location> ruleLocation = locationsByRule.containsKey(ruleDescriptor) ? locationsByRule.get(ruleDescriptor) : new ArrayList<Location>();
-        ruleLocation.add(location);
-        locationsByRule.put(ruleDescriptor, ruleLocation);
+    /**
+     * Returns the result of the given violation, with a single location.
+     * Its rule is added to the rule table, if it is not there yet.
+     */
+    public Result result(RuleViolation violation) {
+        final Rule rule = violation.getRule();
+        final List<String> ruleKey = Arrays.asList(rule.getRuleSetName(), rule.getName());
+        Integer ruleIndex = ruleIndices.get(ruleKey);
+        if (ruleIndex == null) {
+            ruleIndex = rules.size();
+            ruleIndices.put(ruleKey, ruleIndex);
+            rules.add(getReportingDescriptor(rule));
+        }
 
-        return this;
+        final Result result = resultFrom(rules.get(ruleIndex), ruleIndex, violation.getDescription());
+        result.setLocations(Collections.singletonList(getRuleViolationLocation(violation)));
+        return result;
     }
 
     public SarifLogBuilder addRunTimeError(Report.ProcessingError error) {
@@ -104,50 +119,40 @@ public class SarifLogBuilder {
         return this;
     }
 
-    public SarifLog build() {
-        final List<ReportingDescriptor> rules = new ArrayList<>(locationsByRule.keySet());
-
-        final List<Result> results = new ArrayList<>();
-        for (int i = 0, size = rules.size(); i < size; i++) {
-            ReportingDescriptor rule = rules.get(i);
-            List<Location> locations = locationsByRule.get(rule);
-            results.add(resultFrom(rule, i, locations));
-        }
-
+    /**
+     * Returns the tool of the run, with the rules of all the results built so far.
+     */
+    public Tool tool() {
         final Component driver = getDriverComponent().toBuilder().rules(rules).build();
-        final Tool tool = Tool.builder().driver(driver).build();
-        final Invocation invocation = Invocation.builder()
+        return Tool.builder().driver(driver).build();
+    }
+
+    /**
+     * Returns the invocation of the run, with the errors added so far.
+     */
+    public Invocation invocation() {
+        return Invocation.builder()
                 .toolExecutionNotifications(toolExecutionNotifications)
                 .toolConfigurationNotifications(toolConfigurationNotifications)
                 .executionSuccessful(isExecutionSuccessful())
                 .build();
-        final Run run = Run.builder()
-                .tool(tool)
-                .results(results)
-                .invocations(Collections.singletonList(invocation))
-                .build();
-
-        List<Run> runs = Collections.singletonList(run);
-
-        return SarifLog.builder().runs(runs).build();
     }
 
     private boolean isExecutionSuccessful() {
         return toolExecutionNotifications.isEmpty() && toolConfigurationNotifications.isEmpty();
     }
 
-    private Result resultFrom(ReportingDescriptor rule, Integer ruleIndex, List<Location> locations) {
+    private Result resultFrom(ReportingDescriptor rule, Integer ruleIndex, String violationMessage) {
         final Result result = Result.builder()
                 .ruleId(rule.getId())
                 .ruleIndex(ruleIndex)
                 .build();
 
         final Message message = Message.builder()
-                .text(rule.getShortDescription().getText())
+                .text(violationMessage)
                 .build();
 
         result.setMessage(message);
-        result.setLocations(locations);
 
         return result;
     }
@@ -174,22 +179,22 @@ public class SarifLogBuilder {
             .build();
     }
 
-    private ReportingDescriptor getReportingDescriptor(RuleViolation rv) {
+    private ReportingDescriptor getReportingDescriptor(Rule rule) {
         return ReportingDescriptor.builder()
-            .id(rv.getRule().getName())
-            .shortDescription(new MultiformatMessage(rv.getDescription()))
-            .fullDescription(new MultiformatMessage(rv.getRule().getDescription()))
-            .helpUri(rv.getRule().getExternalInfoUrl())
-            .help(new MultiformatMessage(rv.getRule().getDescription()))
-            .properties(getRuleProperties(rv))
+            .id(rule.getName())
+            .shortDescription(new MultiformatMessage(rule.getMessage()))
+            .fullDescription(new MultiformatMessage(rule.getDescription()))
+            .helpUri(rule.getExternalInfoUrl())
+            .help(new MultiformatMessage(rule.getDescription()))
+            .properties(getRuleProperties(rule))
             .build();
     }
 
-    private PropertyBag getRuleProperties(RuleViolation rv) {
+    private PropertyBag getRuleProperties(Rule rule) {
         return PropertyBag.builder()
-                .ruleset(rv.getRule().getRuleSetName())
-                .priority(rv.getRule().getPriority().getPriority())
-                .tags(new HashSet<String>(Arrays.asList(rv.getRule().getRuleSetName())))
+                .ruleset(rule.getRuleSetName())
+                .priority(rule.getPriority().getPriority())
+                .tags(new HashSet<String>(Arrays.asList(rule.getRuleSetName())))
                 .build();
     }
 
@@ -12,6 +12,8 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.StringTokenizer;
 import java.util.logging.Level;
@@ -35,6 +37,9 @@ public class ClasspathClassLoader extends URLClassLoader {
 
     private static final Logger LOG = Logger.getLogger(ClasspathClassLoader.class.getName());
 
+    private volatile ClasspathIndex index;
+    private File indexFile;
+
     static {
         registerAsParallelCapable();
     }
@@ -108,21 +113,71 @@ public class ClasspathClassLoader extends URLClassLoader {
                 .append("] parent: ").append(getParent()).append(']').toString();
     }
 
+    /**
+     * Sets the file in which the index of the jars of the classpath is
+     * stored, to be reused by the next analyses. This must be called before
+     * any class or resource is loaded.
+     *
+     * @param indexFile The index file, may be null
+     */
+    public void setIndexFile(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    private ClasspathIndex getIndex() {
+        ClasspathIndex result = index;
+        if (result == null) {
+            synchronized (this) {
+                result = index;
+                if (result == null) {
+                    result = ClasspathIndex.build(getURLs(), indexFile);
+                    index = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean mayContainClass(String name) {
+        return getIndex().mayContain(name.replace('.', '/') + ".class");
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        if (!mayContainClass(name)) {
+            throw new ClassNotFoundException(name);
+        }
+        return super.findClass(name);
+    }
+
+    @Override
+    public URL findResource(String name) {
+        return getIndex().mayContain(name) ? super.findResource(name) : null;
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        return getIndex().mayContain(name) ? super.findResources(name) : Collections.<URL>emptyEnumeration();
+    }
+
     @Override
     protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
         synchronized (getClassLoadingLock(name)) {
             // First, check if the class has already been loaded
             Class<?> c = findLoadedClass(name);
-            if (c == null) {
+            if (c == null && mayContainClass(name)) {
                 try {
                     // checking local
                     c = findClass(name);
                 } catch (final ClassNotFoundException | SecurityException e) {
-                    // checking parent
-                    // This call to loadClass may eventually call findClass again, in case the parent doesn't find anything.
-                    c = super.loadClass(name, resolve);
+                    // checked below
                 }
             }
+            if (c == null) {
+                // checking parent
+                // This call to loadClass may eventually call findClass again, in case the parent doesn't find anything.
+                c = super.loadClass(name, resolve);
+            }
 
             if (resolve) {
                 resolveClass(c);
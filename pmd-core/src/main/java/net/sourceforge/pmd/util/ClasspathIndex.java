@@ -0,0 +1,295 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+
+import net.sourceforge.pmd.PMDVersion;
+
+/**
+ * The resources found on a classpath, see {@link ClasspathClassLoader}.
+ * Looking up a class or resource with a {@link java.net.URLClassLoader}
+ * opens and searches every entry of the classpath until it is found,
+ * which makes misses as slow as the classpath is long. Type resolution
+ * looks up lots of classes which don't exist, eg for each on-demand
+ * import, often in packages which do exist. The index tells in constant
+ * time that no entry of the classpath contains a resource.
+ *
+ * <p>The entries of the jars are read from their central directory,
+ * including the jars referenced by their manifest {@code Class-Path}.
+ * They may be stored in an index file, which is reused as long as the
+ * jars and every path referenced by their manifests, even missing ones,
+ * have the same size and modification time. The files of the directories,
+ * including those referenced by manifests, are listed each time, as they
+ * are usually the output of the analyzed project and are not worth storing.
+ */
+final class ClasspathIndex {
+
+    private static final Logger LOG = Logger.getLogger(ClasspathIndex.class.getName());
+
+    private static final int FORMAT_VERSION = 3;
+    private static final String VERSIONED_ENTRY_PREFIX = "META-INF/versions/";
+
+    /** The index which doesn't know the contents of the classpath. */
+    static final ClasspathIndex UNKNOWN = new ClasspathIndex(null);
+
+    /**
+     * The resource names, eg {@code "java/util/List.class"}, or null if unknown.
+     * Directories are there with and without their trailing slash.
+     */
+    private final Set<String> resources;
+
+    private ClasspathIndex(Set<String> resources) {
+        this.resources = resources;
+    }
+
+    /**
+     * Returns false if no entry of the classpath contains the given resource.
+     *
+     * @param resourceName The resource name, eg {@code "java/util/List.class"}
+     */
+    boolean mayContain(String resourceName) {
+        return resources == null || resources.contains(resourceName);
+    }
+
+    /**
+     * Indexes the given classpath.
+     *
+     * @param urls      The entries of the classpath
+     * @param indexFile The file which stores the entries of the jars, may be null
+     */
+    static ClasspathIndex build(URL[] urls, File indexFile) {
+        try {
+            final List<File> jars = new ArrayList<>();
+            final List<File> directories = new ArrayList<>();
+            for (URL url : urls) {
+                if (!"file".equals(url.getProtocol())) {
+                    // can't list remote entries
+                    return UNKNOWN;
+                }
+                final File file = new File(url.toURI());
+                if (file.isDirectory()) {
+                    directories.add(file);
+                } else if (file.isFile()) {
+                    jars.add(file);
+                }
+            }
+
+            final Set<String> resources = new HashSet<>();
+            final Set<File> referencedPaths = new LinkedHashSet<>();
+            if (indexFile == null || !readJarResources(indexFile, jars, referencedPaths, resources)) {
+                for (File jar : jars) {
+                    addJarResources(jar, referencedPaths, resources);
+                }
+                if (indexFile != null) {
+                    writeJarResources(indexFile, jars, referencedPaths, resources);
+                }
+            }
+            for (File directory : directories) {
+                addDirectoryResources(directory.toPath(), resources);
+            }
+            for (File path : referencedPaths) {
+                if (path.isDirectory()) {
+                    addDirectoryResources(path.toPath(), resources);
+                }
+            }
+            return new ClasspathIndex(resources);
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Cannot index the classpath, classes are looked up in every entry", e);
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * Adds the entries of the given jar and of the jars referenced by its manifest.
+     * Every path found is recorded in the referenced paths, so that the index file
+     * is rebuilt when it changes, even if it is a directory or doesn't exist yet.
+     */
+    private static void addJarResources(File jar, Set<File> referencedPaths, Set<String> resources) throws IOException {
+        if (!referencedPaths.add(jar.getAbsoluteFile()) || !jar.isFile()) {
+            // directories are listed by the caller, missing jars may appear later
+            return;
+        }
+        try (JarFile jarFile = new JarFile(jar, false)) {
+            final Enumeration<? extends ZipEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                final String name = entries.nextElement().getName();
+                addResource(name, resources);
+                if (name.startsWith(VERSIONED_ENTRY_PREFIX)) {
+                    // multi-release entries are looked up by their unversioned name
+                    final int versionEnd = name.indexOf('/', VERSIONED_ENTRY_PREFIX.length());
+                    if (versionEnd >= 0) {
+                        addResource(name.substring(versionEnd + 1), resources);
+                    }
+                }
+            }
+
+            final Manifest manifest = jarFile.getManifest();
+            final String classPath = manifest == null ? null : manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+            if (classPath != null) {
+                addManifestClassPath(jar, classPath, referencedPaths, resources);
+            }
+        }
+    }
+
+    private static void addResource(String name, Set<String> resources) {
+        resources.add(name);
+        if (name.endsWith("/")) {
+            // a directory is found with or without its trailing slash
+            resources.add(name.substring(0, name.length() - 1));
+        }
+    }
+
+    private static void addManifestClassPath(File jar, String classPath, Set<File> referencedPaths, Set<String> resources)
+            throws IOException {
+        final URL base = jar.toURI().toURL();
+        final StringTokenizer tokens = new StringTokenizer(classPath);
+        while (tokens.hasMoreTokens()) {
+            final File file;
+            try {
+                final URL url = new URL(base, tokens.nextToken());
+                if (!"file".equals(url.getProtocol())) {
+                    continue;
+                }
+                file = new File(url.toURI());
+            } catch (MalformedURLException | URISyntaxException | IllegalArgumentException e) {
+                // the class loader ignores invalid entries as well
+                continue;
+            }
+            addJarResources(file, referencedPaths, resources);
+        }
+    }
+
+    private static void addDirectoryResources(final Path directory, final Set<String> resources) throws IOException {
+        // the class loader follows links too
+        Files.walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    final String relative = relativeName(dir);
+                    if (!relative.isEmpty()) {
+                        addResource(relative + "/", resources);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    resources.add(relativeName(file));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    // eg a cycle of links, or an unreadable directory
+                    LOG.log(Level.FINE, "Cannot index " + file, e);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                private String relativeName(Path path) {
+                    return directory.relativize(path).toString().replace(File.separatorChar, '/');
+                }
+            });
+    }
+
+    /**
+     * Reads the entries of the given jars from the index file, if it is up to date,
+     * and the paths which were referenced by their manifests.
+     */
+    private static boolean readJarResources(File indexFile, List<File> jars, Set<File> referencedPaths,
+                                            Set<String> resources) {
+        if (!indexFile.isFile()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != FORMAT_VERSION || !PMDVersion.VERSION.equals(in.readUTF())) {
+                return false;
+            }
+            final int jarCount = in.readInt();
+            if (jarCount != jars.size()) {
+                return false;
+            }
+            for (File jar : jars) {
+                if (!jar.getAbsolutePath().equals(in.readUTF())) {
+                    return false;
+                }
+            }
+            // the paths referenced by manifests included, a missing one has size and time 0
+            final int pathCount = in.readInt();
+            for (int i = 0; i < pathCount; i++) {
+                final File path = new File(in.readUTF());
+                if (path.length() != in.readLong() || path.lastModified() != in.readLong()) {
+                    referencedPaths.clear();
+                    return false;
+                }
+                referencedPaths.add(path);
+            }
+            final int resourceCount = in.readInt();
+            for (int i = 0; i < resourceCount; i++) {
+                resources.add(in.readUTF());
+            }
+            return true;
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Cannot read the classpath index " + indexFile, e);
+            referencedPaths.clear();
+            resources.clear();
+            return false;
+        }
+    }
+
+    private static void writeJarResources(File indexFile, List<File> jars, Set<File> referencedPaths,
+                                          Set<String> resources) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(PMDVersion.VERSION);
+            out.writeInt(jars.size());
+            for (File jar : jars) {
+                out.writeUTF(jar.getAbsolutePath());
+            }
+            out.writeInt(referencedPaths.size());
+            for (File path : referencedPaths) {
+                out.writeUTF(path.getPath());
+                out.writeLong(path.length());
+                out.writeLong(path.lastModified());
+            }
+            out.writeInt(resources.size());
+            for (String resource : resources) {
+                out.writeUTF(resource);
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Cannot write the classpath index " + indexFile, e);
+        }
+    }
+}
@@ -14,4 +14,14 @@ public abstract class AbstractDataSource implements DataSource {
     public void close() throws IOException {
         // empty default implementation
     }
+
+    /**
+     * Returns an estimate of the size of the source in bytes. This is used
+     * to schedule large files first, it doesn't need to be exact.
+     *
+     * @return The estimated size in bytes, or a negative value if unknown
+     */
+    public long getSizeHint() {
+        return -1;
+    }
 }
@@ -23,7 +23,9 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import net.sourceforge.pmd.cache.ContentAddressedAnalysisCache;
 import net.sourceforge.pmd.cache.FileAnalysisCache;
+import net.sourceforge.pmd.cache.MappedFileAnalysisCache;
 import net.sourceforge.pmd.cache.NoopAnalysisCache;
 import net.sourceforge.pmd.renderers.CSVRenderer;
 import net.sourceforge.pmd.renderers.Renderer;
@@ -250,6 +252,28 @@ public class ConfigurationTest {
         assertNotNull("Not null cache location produces null cache", configuration.getAnalysisCache());
         assertTrue("File cache location doesn't produce a file cache",
                 configuration.getAnalysisCache() instanceof FileAnalysisCache);
+
+        configuration.setMappedAnalysisCache(true);
+        configuration.setAnalysisCacheLocation("pmd.cache");
+        assertTrue("Mapped cache option doesn't produce a mapped file cache",
+                configuration.getAnalysisCache() instanceof MappedFileAnalysisCache);
+
+    }
+
+    @Test
+    public void testSharedAnalysisCacheLocation() throws IOException {
+        final PMDConfiguration configuration = new PMDConfiguration();
+
+        configuration.setSharedAnalysisCacheLocation(null);
+        assertTrue("Null cache location accepted", configuration.getAnalysisCache() instanceof NoopAnalysisCache);
+
+        configuration.setSharedAnalysisCacheLocation(folder.newFolder().getPath());
+        assertTrue("Directory cache location doesn't produce a shared cache",
+                configuration.getAnalysisCache() instanceof ContentAddressedAnalysisCache);
+
+        configuration.setSharedAnalysisCacheLocation("https://cache.example.com/pmd/");
+        assertTrue("URL cache location doesn't produce a shared cache",
+                configuration.getAnalysisCache() instanceof ContentAddressedAnalysisCache);
     }
 
 
@@ -0,0 +1,120 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.sourceforge.pmd.lang.rule.RuleReference;
+
+public class RuleSetSnapshotTest {
+
+    private static final String REFERENCE_RULESET = "net/sourceforge/pmd/rulesets/reference-ruleset.xml";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testSnapshotRulesAreTheSame() throws IOException {
+        File snapshot = new File(tempFolder.getRoot(), "rulesets.bin");
+        RuleSet expected = new RuleSetLoader().loadFromResource(REFERENCE_RULESET);
+
+        RuleSet written = loadWithSnapshot(REFERENCE_RULESET, snapshot);
+        assertTrue(snapshot.isFile());
+        long lastModified = snapshot.lastModified();
+        RuleSet read = loadWithSnapshot(REFERENCE_RULESET, snapshot);
+        assertEquals(lastModified, snapshot.lastModified());
+
+        assertSameRuleSet(expected, written);
+        assertSameRuleSet(expected, read);
+    }
+
+    @Test
+    public void testSnapshotIsInvalidatedByChangedRuleSet() throws IOException {
+        File snapshot = new File(tempFolder.getRoot(), "rulesets.bin");
+        File ruleSetFile = tempFolder.newFile("ruleset.xml");
+        writeRuleSet(ruleSetFile, "MockRule1");
+
+        assertEquals("MockRule1", loadWithSnapshot(ruleSetFile.getPath(), snapshot).getRules().iterator().next().getName());
+        writeRuleSet(ruleSetFile, "MockRule2");
+        assertEquals("MockRule2", loadWithSnapshot(ruleSetFile.getPath(), snapshot).getRules().iterator().next().getName());
+    }
+
+    @Test
+    public void testCorruptSnapshotIsIgnored() throws IOException {
+        File snapshot = tempFolder.newFile("rulesets.bin");
+        Files.write(snapshot.toPath(), "not a snapshot".getBytes(StandardCharsets.UTF_8));
+
+        RuleSet ruleSet = loadWithSnapshot(REFERENCE_RULESET, snapshot);
+        assertSameRuleSet(new RuleSetLoader().loadFromResource(REFERENCE_RULESET), ruleSet);
+    }
+
+    private static RuleSet loadWithSnapshot(String path, File snapshot) {
+        List<RuleSet> ruleSets = new RuleSetLoader().loadFromResources(Collections.singletonList(path), snapshot);
+        assertEquals(1, ruleSets.size());
+        return ruleSets.get(0);
+    }
+
+    private static void writeRuleSet(File file, String ruleName) throws IOException {
+        String xml = "<?xml version=\"1.0\"?>\n"
+            + "<ruleset name=\"Custom ruleset\" xmlns=\"http://pmd.sourceforge.net/ruleset/2.0.0\">\n"
+            + "  <description>Test</description>\n"
+            + "  <rule ref=\"net/sourceforge/pmd/TestRuleset1.xml/" + ruleName + "\"/>\n"
+            + "</ruleset>\n";
+        Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertSameRuleSet(RuleSet expected, RuleSet actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getFileName(), actual.getFileName());
+        assertEquals(expected.getChecksum(), actual.getChecksum());
+        assertEquals(expected.size(), actual.size());
+        for (net.sourceforge.pmd.Rule expectedRule : expected.getRules()) {
+            assertSameRule(expectedRule, actual.getRuleByName(expectedRule.getName()));
+        }
+    }
+
+    private static void assertSameRule(net.sourceforge.pmd.Rule expected, net.sourceforge.pmd.Rule actual) {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getRuleSetName(), actual.getRuleSetName());
+        assertEquals(expected.getLanguage(), actual.getLanguage());
+        assertEquals(expected.getSince(), actual.getSince());
+        assertEquals(expected.getMessage(), actual.getMessage());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getExternalInfoUrl(), actual.getExternalInfoUrl());
+        assertEquals(expected.getPriority(), actual.getPriority());
+        assertEquals(expected.getExamples(), actual.getExamples());
+        assertEquals(expected.isDeprecated(), actual.isDeprecated());
+        assertEquals(expected.getPropertiesByPropertyDescriptor(), actual.getPropertiesByPropertyDescriptor());
+        assertEquals(expected.getOverriddenPropertiesByPropertyDescriptor(),
+                     actual.getOverriddenPropertiesByPropertyDescriptor());
+
+        assertEquals(expected instanceof RuleReference, actual instanceof RuleReference);
+        if (expected instanceof RuleReference) {
+            RuleReference expectedReference = (RuleReference) expected;
+            RuleReference actualReference = (RuleReference) actual;
+            assertEquals(expectedReference.getOverriddenName(), actualReference.getOverriddenName());
+            assertEquals(expectedReference.getOverriddenMessage(), actualReference.getOverriddenMessage());
+            assertEquals(expectedReference.getOverriddenPriority(), actualReference.getOverriddenPriority());
+            assertEquals(expectedReference.getOverriddenExamples(), actualReference.getOverriddenExamples());
+            assertEquals(expectedReference.getRuleSetReference().getRuleSetFileName(),
+                         actualReference.getRuleSetReference().getRuleSetFileName());
+            assertSameRule(expectedReference.getRule(), actualReference.getRule());
+        }
+    }
+}
@@ -9,6 +9,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -34,6 +35,8 @@ import net.sourceforge.pmd.lang.ast.DummyNode;
 import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.rule.MockRule;
 import net.sourceforge.pmd.lang.rule.RuleReference;
+import net.sourceforge.pmd.lang.rule.XPathRule;
+import net.sourceforge.pmd.lang.rule.xpath.XPathVersion;
 import net.sourceforge.pmd.util.CollectionUtil;
 
 public class RuleSetTest {
@@ -132,6 +135,33 @@ public class RuleSetTest {
         assertEquals("ruleset size wrong", 2, set2.size());
     }
 
+    @Test
+    public void testForkForThreadSharesThreadSafeRules() {
+        XPathRule xpathRule = new XPathRule(XPathVersion.XPATH_2_0, "//dummyNode");
+        xpathRule.setName("xpath");
+        xpathRule.setLanguage(LanguageRegistry.getLanguage(DummyLanguageModule.NAME));
+        RuleReference reference = new RuleReference(xpathRule, null);
+        reference.setName("reference");
+        XPathRule jaxenRule = new XPathRule(XPathVersion.XPATH_1_0, "//dummyNode");
+        jaxenRule.setName("jaxen");
+        jaxenRule.setLanguage(LanguageRegistry.getLanguage(DummyLanguageModule.NAME));
+        MockRule mock = new MockRule("name", "desc", "msg", "rulesetname");
+        RuleSet set = createRuleSetBuilder("ruleset")
+                .addRule(xpathRule)
+                .addRule(reference)
+                .addRule(jaxenRule)
+                .addRule(mock)
+                .build();
+
+        RuleSet fork = RuleSet.forkForThread(set);
+        assertEquals(set.size(), fork.size());
+        Iterator<Rule> rules = fork.getRules().iterator();
+        assertSame(xpathRule, rules.next());
+        assertSame(reference, rules.next());
+        assertNotSame(jaxenRule, rules.next());
+        assertNotSame(mock, rules.next());
+    }
+
     @Test(expected = RuntimeException.class)
     public void testAddRuleSetByReferenceBad() {
         RuleSet set1 = createRuleSetBuilder("ruleset1")
@@ -0,0 +1,82 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.sourceforge.pmd.RuleViolation;
+
+public class AnalysisResultTest {
+
+    private static final long PREVIOUS_CHECKSUM = 42;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File sourceFile;
+
+    @Before
+    public void setUp() throws IOException {
+        sourceFile = tempFolder.newFile("Source.java");
+        Files.write(sourceFile.toPath(), "class Source {}".getBytes(StandardCharsets.UTF_8));
+        // old enough not to be considered as racy
+        sourceFile.setLastModified(System.currentTimeMillis() - 60000);
+    }
+
+    @Test
+    public void testUnchangedAttributesSkipChecksum() {
+        final AnalysisResult current = new AnalysisResult(sourceFile);
+        final AnalysisResult previous = previousResult(current.getFileSize(), current.getLastModified(), current.getFileKey());
+
+        assertEquals("Checksum of unchanged file should be reused",
+                PREVIOUS_CHECKSUM, new AnalysisResult(sourceFile, previous, false).getFileChecksum());
+    }
+
+    @Test
+    public void testChangedAttributesComputeChecksum() {
+        final AnalysisResult current = new AnalysisResult(sourceFile);
+        final AnalysisResult previous = previousResult(current.getFileSize() + 1, current.getLastModified(), current.getFileKey());
+
+        assertEquals("Checksum of changed file should be computed",
+                current.getFileChecksum(), new AnalysisResult(sourceFile, previous, false).getFileChecksum());
+    }
+
+    @Test
+    public void testRacyModificationTimeIsNotRecorded() throws IOException {
+        Files.write(sourceFile.toPath(), "class Source { }".getBytes(StandardCharsets.UTF_8));
+
+        final AnalysisResult current = new AnalysisResult(sourceFile);
+        assertEquals(AnalysisResult.UNKNOWN, current.getLastModified());
+
+        final AnalysisResult previous = previousResult(current.getFileSize(), AnalysisResult.UNKNOWN, current.getFileKey());
+        assertEquals("Checksum should be computed if the modification time is unknown",
+                current.getFileChecksum(), new AnalysisResult(sourceFile, previous, false).getFileChecksum());
+    }
+
+    @Test
+    public void testFastChecksum() {
+        final AnalysisResult adler = new AnalysisResult(sourceFile, null, false);
+        final AnalysisResult xxHash = new AnalysisResult(sourceFile, null, true);
+
+        assertNotEquals(adler.getFileChecksum(), xxHash.getFileChecksum());
+        assertEquals(xxHash.getFileChecksum(), new AnalysisResult(sourceFile, null, true).getFileChecksum());
+    }
+
+    private AnalysisResult previousResult(final long size, final long lastModified, final long fileKey) {
+        return new AnalysisResult(PREVIOUS_CHECKSUM, size, lastModified, fileKey, new ArrayList<RuleViolation>());
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.lang.Language;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class ContentAddressedAnalysisCacheTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File storeDirectory;
+    private File worktree1;
+    private File worktree2;
+    private File sourceFile;
+    private File otherWorktreeSourceFile;
+    private RuleSets ruleSets;
+    private ClassLoader classLoader;
+    private PMDConfiguration configuration;
+
+    @Before
+    public void setUp() throws IOException {
+        storeDirectory = tempFolder.newFolder("store");
+        worktree1 = tempFolder.newFolder("worktree1");
+        worktree2 = tempFolder.newFolder("worktree2");
+        sourceFile = new File(worktree1, "Source.java");
+        otherWorktreeSourceFile = new File(worktree2, "Source.java");
+        Files.write(sourceFile.toPath(), "class Source { }".getBytes(StandardCharsets.UTF_8));
+        Files.write(otherWorktreeSourceFile.toPath(), "class Source { }".getBytes(StandardCharsets.UTF_8));
+        ruleSets = mock(RuleSets.class);
+        classLoader = mock(ClassLoader.class);
+        configuration = new PMDConfiguration();
+    }
+
+    @Test
+    public void testUnknownFileIsNotUpToDate() {
+        final ContentAddressedAnalysisCache cache = newCache(new DirectoryResultStore(storeDirectory));
+        assertFalse("Cache believes an unknown file is up to date", cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testEntriesAreSharedByAnalyses() {
+        analyzeWithViolation(new DirectoryResultStore(storeDirectory), sourceFile);
+
+        final ContentAddressedAnalysisCache cache = newCache(new DirectoryResultStore(storeDirectory));
+        assertTrue("Cache believes a file with the same contents is not up to date",
+                cache.isUpToDate(sourceFile));
+
+        final List<RuleViolation> cachedViolations = cache.getCachedViolations(sourceFile);
+        assertEquals("Cached rule violations count mismatch", 1, cachedViolations.size());
+        assertEquals("Cached rule violation file name mismatch",
+                sourceFile.getPath(), cachedViolations.get(0).getFilename());
+    }
+
+    @Test
+    public void testSameRelativePathInOtherWorktreeHitsEntries() {
+        configuration.setInputPaths(worktree1.getPath());
+        analyzeWithViolation(new DirectoryResultStore(storeDirectory), sourceFile);
+
+        configuration.setInputPaths(worktree2.getPath());
+        final ContentAddressedAnalysisCache cache = newCache(new DirectoryResultStore(storeDirectory));
+        assertTrue("Cache believes a file at the same relative path in another worktree is not up to date",
+                cache.isUpToDate(otherWorktreeSourceFile));
+        final List<RuleViolation> cachedViolations = cache.getCachedViolations(otherWorktreeSourceFile);
+        assertEquals("Cached rule violation file name mismatch",
+                otherWorktreeSourceFile.getPath(), cachedViolations.get(0).getFilename());
+    }
+
+    @Test
+    public void testSameContentsAtOtherPathMissesEntries() {
+        configuration.setInputPaths(tempFolder.getRoot().getPath());
+        analyzeWithViolation(new DirectoryResultStore(storeDirectory), sourceFile);
+
+        final ContentAddressedAnalysisCache cache = newCache(new DirectoryResultStore(storeDirectory));
+        assertFalse("Cache believes a file at another path is up to date",
+                cache.isUpToDate(otherWorktreeSourceFile));
+    }
+
+    @Test
+    public void testSuppressMarkerChangeMissesEntries() {
+        analyzeWithViolation(new DirectoryResultStore(storeDirectory), sourceFile);
+
+        configuration.setSuppressMarker("NOLINT");
+        final ContentAddressedAnalysisCache cache = newCache(new DirectoryResultStore(storeDirectory));
+        assertFalse("Cache believes unmodified file is up to date after suppress marker changed",
+                cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testFileIsNotUpToDateWhenEdited() throws IOException {
+        analyzeWithViolation(new DirectoryResultStore(storeDirectory), sourceFile);
+
+        Files.write(sourceFile.toPath(), "class Source { int i; }".getBytes(StandardCharsets.UTF_8));
+
+        final ContentAddressedAnalysisCache cache = newCache(new DirectoryResultStore(storeDirectory));
+        assertFalse("Cache believes a changed file is up to date", cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testRulesetChangeMissesEntries() {
+        analyzeWithViolation(new DirectoryResultStore(storeDirectory), sourceFile);
+
+        when(ruleSets.getChecksum()).thenReturn(1L);
+        final ContentAddressedAnalysisCache cache = newCache(new DirectoryResultStore(storeDirectory));
+        assertFalse("Cache believes unmodified file is up to date after ruleset changed",
+                cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testFailingStoreIsIgnored() throws IOException {
+        final AnalysisResultStore store = mock(AnalysisResultStore.class);
+        when(store.get(Mockito.anyString())).thenThrow(new IOException("unreachable"));
+
+        final ContentAddressedAnalysisCache cache = newCache(store);
+        assertFalse(cache.isUpToDate(sourceFile));
+        cache.persist();
+        Mockito.verify(store, Mockito.never()).put(Mockito.anyString(), Mockito.any(byte[].class));
+    }
+
+    @Test
+    public void testMalformedEntryIsIgnored() throws IOException {
+        final AnalysisResultStore store = mock(AnalysisResultStore.class);
+        // a huge violation count, followed by nothing
+        when(store.get(Mockito.anyString())).thenReturn(new byte[] { 0x7f, -1, -1, -1 });
+
+        final ContentAddressedAnalysisCache cache = newCache(store);
+        assertFalse("Cache believes a file with a malformed entry is up to date", cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testDirectoryStoreMissingEntry() throws IOException {
+        assertNull(new DirectoryResultStore(storeDirectory).get("0123456789abcdef"));
+    }
+
+    @Test
+    public void testHttpStore() throws IOException {
+        final Map<String, byte[]> entries = new ConcurrentHashMap<>();
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/cache/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                final String path = exchange.getRequestURI().getPath();
+                // the request body must be consumed, or the server closes the connection
+                // which the client keeps alive for the next request
+                final byte[] requestBody;
+                try (InputStream body = exchange.getRequestBody()) {
+                    requestBody = IOUtils.toByteArray(body);
+                }
+                if ("PUT".equals(exchange.getRequestMethod())) {
+                    entries.put(path, requestBody);
+                    exchange.sendResponseHeaders(201, -1);
+                } else if (entries.containsKey(path)) {
+                    final byte[] entry = entries.get(path);
+                    exchange.sendResponseHeaders(200, entry.length);
+                    try (OutputStream body = exchange.getResponseBody()) {
+                        body.write(entry);
+                    }
+                } else {
+                    exchange.sendResponseHeaders(404, -1);
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        try {
+            final String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/cache";
+            analyzeWithViolation(new HttpResultStore(url), sourceFile);
+            assertEquals("Entry not uploaded", 1, entries.size());
+
+            final ContentAddressedAnalysisCache cache = newCache(new HttpResultStore(url));
+            assertTrue("Cache believes a file with the same contents is not up to date",
+                    cache.isUpToDate(sourceFile));
+            assertEquals(1, cache.getCachedViolations(sourceFile).size());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private ContentAddressedAnalysisCache newCache(final AnalysisResultStore store) {
+        final ContentAddressedAnalysisCache cache = new ContentAddressedAnalysisCache(store, configuration);
+        cache.checkValidity(ruleSets, classLoader);
+        return cache;
+    }
+
+    private void analyzeWithViolation(final AnalysisResultStore store, final File file) {
+        final ContentAddressedAnalysisCache cache = newCache(store);
+        assertFalse(cache.isUpToDate(file));
+        cache.ruleViolationAdded(mockViolation(file));
+        cache.persist();
+    }
+
+    private RuleViolation mockViolation(final File file) {
+        final RuleViolation rv = mock(RuleViolation.class);
+        when(rv.getFilename()).thenReturn(file.getPath());
+        final net.sourceforge.pmd.Rule rule = mock(net.sourceforge.pmd.Rule.class, Mockito.RETURNS_SMART_NULLS);
+        when(rule.getLanguage()).thenReturn(mock(Language.class));
+        when(rv.getRule()).thenReturn(rule);
+        return rv;
+    }
+}
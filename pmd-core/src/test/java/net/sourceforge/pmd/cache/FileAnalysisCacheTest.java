@@ -367,6 +367,37 @@ public class FileAnalysisCacheTest {
                 cache.isUpToDate(sourceFile));
     }
 
+    @Test
+    public void testOtherFormatVersionInvalidatesCache() throws IOException {
+        setupCacheWithFiles(newCacheFile, mock(RuleSets.class), mock(ClassLoader.class), sourceFile);
+
+        // the format version follows the PMD version
+        final byte[] bytes = Files.readAllBytes(newCacheFile.toPath());
+        final int formatVersionPosition = 2 + ((bytes[0] & 0xFF) << 8 | bytes[1] & 0xFF);
+        bytes[formatVersionPosition + 3]++;
+        Files.write(newCacheFile.toPath(), bytes);
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class));
+        assertFalse("Cache believes a known file is up to date with another cache format",
+                cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testMalformedViolationCountIsIgnored() throws IOException {
+        setupCacheWithFiles(newCacheFile, mock(RuleSets.class), mock(ClassLoader.class), sourceFile);
+
+        // the file ends with the violation count of its only entry
+        final byte[] bytes = Files.readAllBytes(newCacheFile.toPath());
+        bytes[bytes.length - 4] = 0x7F;
+        Files.write(newCacheFile.toPath(), bytes);
+
+        final FileAnalysisCache cache = new FileAnalysisCache(newCacheFile);
+        cache.checkValidity(mock(RuleSets.class), mock(ClassLoader.class));
+        assertFalse("Cache believes a known file is up to date with a malformed cache file",
+                cache.isUpToDate(sourceFile));
+    }
+
     private void setupCacheWithFiles(final File cacheFile, final RuleSets ruleSets,
             final ClassLoader classLoader, final File... files) {
         // Setup a cache file with an entry for an empty Source.java with no violations
@@ -0,0 +1,193 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import net.sourceforge.pmd.RuleSets;
+import net.sourceforge.pmd.RuleViolation;
+import net.sourceforge.pmd.lang.Language;
+
+public class MappedFileAnalysisCacheTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File cacheFile;
+    private File sourceFile;
+    private File otherSourceFile;
+    private RuleSets ruleSets;
+    private ClassLoader classLoader;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheFile = new File(tempFolder.getRoot(), "pmd-analysis.cache");
+        sourceFile = tempFolder.newFile("Source.java");
+        otherSourceFile = tempFolder.newFile("Other.java");
+        ruleSets = mock(RuleSets.class);
+        classLoader = mock(ClassLoader.class);
+    }
+
+    @Test
+    public void testStoreCreatesFile() {
+        final MappedFileAnalysisCache cache = new MappedFileAnalysisCache(cacheFile);
+        cache.persist();
+        assertTrue("Cache file doesn't exist after store", cacheFile.exists());
+    }
+
+    @Test
+    public void testStoreOnDirectoryShouldntThrow() {
+        final MappedFileAnalysisCache cache = new MappedFileAnalysisCache(tempFolder.getRoot());
+        cache.checkValidity(ruleSets, classLoader);
+        cache.persist();
+    }
+
+    @Test
+    public void testMalformedFileIsIgnored() throws IOException {
+        Files.write(cacheFile.toPath(), "not a cache file, but long enough to have a header".getBytes(StandardCharsets.UTF_8));
+
+        final MappedFileAnalysisCache cache = new MappedFileAnalysisCache(cacheFile);
+        cache.checkValidity(ruleSets, classLoader);
+        assertFalse("Cache believes a file is up to date with a malformed cache file",
+                cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testStorePersistsFilesWithViolations() {
+        final MappedFileAnalysisCache cache = new MappedFileAnalysisCache(cacheFile);
+        cache.checkValidity(ruleSets, classLoader);
+        cache.isUpToDate(sourceFile);
+        cache.ruleViolationAdded(mockViolation(sourceFile));
+        cache.persist();
+
+        final MappedFileAnalysisCache reloadedCache = new MappedFileAnalysisCache(cacheFile);
+        reloadedCache.checkValidity(ruleSets, classLoader);
+        assertTrue("Cache believes unmodified file with violations is not up to date",
+                reloadedCache.isUpToDate(sourceFile));
+
+        final List<RuleViolation> cachedViolations = reloadedCache.getCachedViolations(sourceFile);
+        assertEquals("Cached rule violations count mismatch", 1, cachedViolations.size());
+        assertEquals("Cached rule violation file name mismatch", sourceFile.getPath(), cachedViolations.get(0).getFilename());
+    }
+
+    @Test
+    public void testFileIsNotUpToDateWhenEdited() throws IOException {
+        setupCacheWithFiles(sourceFile);
+
+        Files.write(sourceFile.toPath(), "some text".getBytes(StandardCharsets.UTF_8));
+
+        final MappedFileAnalysisCache cache = new MappedFileAnalysisCache(cacheFile);
+        cache.checkValidity(ruleSets, classLoader);
+        assertFalse("Cache believes a known, changed file is up to date",
+                cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testUnknownFileIsNotUpToDate() {
+        setupCacheWithFiles(sourceFile);
+
+        final MappedFileAnalysisCache cache = new MappedFileAnalysisCache(cacheFile);
+        cache.checkValidity(ruleSets, classLoader);
+        assertFalse("Cache believes an unknown file is up to date",
+                cache.isUpToDate(otherSourceFile));
+    }
+
+    @Test
+    public void testRulesetChangeInvalidatesCache() {
+        setupCacheWithFiles(sourceFile);
+
+        final MappedFileAnalysisCache cache = new MappedFileAnalysisCache(cacheFile);
+        when(ruleSets.getChecksum()).thenReturn(1L);
+        cache.checkValidity(ruleSets, classLoader);
+        assertFalse("Cache believes unmodified file is up to date after ruleset changed",
+                cache.isUpToDate(sourceFile));
+    }
+
+    @Test
+    public void testUnchangedRecordsAreReused() throws IOException {
+        final MappedFileAnalysisCache cache = new MappedFileAnalysisCache(cacheFile);
+        cache.checkValidity(ruleSets, classLoader);
+        cache.isUpToDate(sourceFile);
+        cache.ruleViolationAdded(mockViolation(sourceFile));
+        cache.isUpToDate(otherSourceFile);
+        cache.persist();
+
+        Files.write(otherSourceFile.toPath(), "some text".getBytes(StandardCharsets.UTF_8));
+
+        // second run: the unchanged file reports its cached violation again
+        final MappedFileAnalysisCache secondCache = new MappedFileAnalysisCache(cacheFile);
+        secondCache.checkValidity(ruleSets, classLoader);
+        assertTrue(secondCache.isUpToDate(sourceFile));
+        for (final RuleViolation rv : secondCache.getCachedViolations(sourceFile)) {
+            secondCache.ruleViolationAdded(rv);
+        }
+        assertFalse(secondCache.isUpToDate(otherSourceFile));
+        secondCache.persist();
+
+        final MappedFileAnalysisCache thirdCache = new MappedFileAnalysisCache(cacheFile);
+        thirdCache.checkValidity(ruleSets, classLoader);
+        assertTrue("Cache believes unmodified file is not up to date after rewrite",
+                thirdCache.isUpToDate(sourceFile));
+        assertEquals("Cached rule violations count mismatch after rewrite",
+                1, thirdCache.getCachedViolations(sourceFile).size());
+        assertTrue("Cache believes changed file is not up to date after rewrite",
+                thirdCache.isUpToDate(otherSourceFile));
+        assertTrue(thirdCache.getCachedViolations(otherSourceFile).isEmpty());
+    }
+
+    @Test
+    public void testCacheFileOfFileAnalysisCacheIsReplaced() {
+        final FileAnalysisCache previousCache = new FileAnalysisCache(cacheFile);
+        previousCache.checkValidity(ruleSets, classLoader);
+        previousCache.isUpToDate(sourceFile);
+        previousCache.persist();
+
+        final MappedFileAnalysisCache cache = new MappedFileAnalysisCache(cacheFile);
+        cache.checkValidity(ruleSets, classLoader);
+        assertFalse("Cache believes a file is up to date with a cache file of another format",
+                cache.isUpToDate(sourceFile));
+        cache.persist();
+
+        final MappedFileAnalysisCache reloadedCache = new MappedFileAnalysisCache(cacheFile);
+        reloadedCache.checkValidity(ruleSets, classLoader);
+        assertTrue("Cache believes unmodified file is not up to date after replacing the cache file",
+                reloadedCache.isUpToDate(sourceFile));
+    }
+
+    private RuleViolation mockViolation(final File file) {
+        final RuleViolation rv = mock(RuleViolation.class);
+        when(rv.getFilename()).thenReturn(file.getPath());
+        final net.sourceforge.pmd.Rule rule = mock(net.sourceforge.pmd.Rule.class, Mockito.RETURNS_SMART_NULLS);
+        when(rule.getLanguage()).thenReturn(mock(Language.class));
+        when(rv.getRule()).thenReturn(rule);
+        return rv;
+    }
+
+    private void setupCacheWithFiles(final File... files) {
+        final MappedFileAnalysisCache cache = new MappedFileAnalysisCache(cacheFile);
+        cache.checkValidity(ruleSets, classLoader);
+
+        for (final File f : files) {
+            cache.isUpToDate(f);
+        }
+        cache.persist();
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cache.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class XxHash64Test {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testReferenceValues() {
+        assertEquals(0xEF46DB3751D8E999L, hash(""));
+        assertEquals(0x44BC2CF5AD770999L, hash("abc"));
+        // longer than 32 bytes, uses all the stages of the algorithm
+        assertEquals(0xFBCEA83C8A378BF1L, hash("Nobody inspects the spammish repetition"));
+    }
+
+    @Test
+    public void testBufferPositionIsRespected() {
+        final ByteBuffer buffer = ByteBuffer.wrap("xxabc".getBytes(StandardCharsets.UTF_8));
+        buffer.position(2);
+        assertEquals(0x44BC2CF5AD770999L, XxHash64.hash(buffer));
+        assertEquals(2, buffer.position());
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        final File file = tempFolder.newFile();
+        Files.write(file.toPath(), "Nobody inspects the spammish repetition".getBytes(StandardCharsets.UTF_8));
+        assertEquals(0xFBCEA83C8A378BF1L, XxHash64.hash(file));
+    }
+
+    private static long hash(final String input) {
+        return XxHash64.hash(ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8)));
+    }
+}
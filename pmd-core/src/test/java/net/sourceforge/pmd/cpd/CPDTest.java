@@ -5,13 +5,20 @@
 package net.sourceforge.pmd.cpd;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.SystemUtils;
 import org.junit.Assert;
 import org.junit.Assume;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * Unit test for {@link CPD}
@@ -21,6 +28,9 @@ public class CPDTest {
     private static final String BASE_TEST_RESOURCE_PATH = "src/test/resources/net/sourceforge/pmd/cpd/files/";
     private static final String TARGET_TEST_RESOURCE_PATH = "target/classes/net/sourceforge/pmd/cpd/files/";
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     private CPD cpd;
 
     // Symlinks are not well supported under Windows - so the tests are
@@ -130,6 +140,109 @@ public class CPDTest {
         }
     }
 
+    @Test
+    public void testMultiThreadedMatchesAreSameAsSingleThreaded() throws Exception {
+        List<File> files = Arrays.asList(new File(BASE_TEST_RESOURCE_PATH, "dup2.java"),
+                new File(BASE_TEST_RESOURCE_PATH, "dup1.java"));
+        cpd.add(files);
+        cpd.go();
+
+        CPDConfiguration configuration = new CPDConfiguration();
+        configuration.setLanguage(new AnyLanguage("java"));
+        configuration.setMinimumTileSize(10);
+        configuration.setThreads(3);
+        configuration.postContruct();
+        CPD multiThreadedCpd = new CPD(configuration);
+        NoFileAssertListener listener = new NoFileAssertListener(2);
+        multiThreadedCpd.setCpdListener(listener);
+        multiThreadedCpd.add(files);
+        multiThreadedCpd.go();
+        listener.verify();
+
+        assertSameMatches(cpd.getMatches(), multiThreadedCpd.getMatches());
+    }
+
+    @Test
+    public void testCachedTokensGiveSameMatches() throws Exception {
+        List<File> files = copyDuplicates();
+        cpd.add(files);
+        cpd.go();
+
+        File cacheFile = new File(tempFolder.getRoot(), "cpd.cache");
+        newCachedCpd(cacheFile, false, files).go();
+        Assert.assertTrue(cacheFile.isFile());
+
+        CPD cachedCpd = newCachedCpd(cacheFile, false, files);
+        cachedCpd.go();
+        assertSameMatches(cpd.getMatches(), cachedCpd.getMatches());
+    }
+
+    @Test
+    public void testChangedOnlyReportsMatchesOfChangedFiles() throws Exception {
+        List<File> files = copyDuplicates();
+        File cacheFile = new File(tempFolder.getRoot(), "cpd.cache");
+        CPD firstCpd = newCachedCpd(cacheFile, true, files);
+        firstCpd.go();
+        Assert.assertTrue("Every file is changed on the first run", firstCpd.getMatches().hasNext());
+
+        CPD unchangedCpd = newCachedCpd(cacheFile, true, files);
+        unchangedCpd.go();
+        Assert.assertFalse(unchangedCpd.getMatches().hasNext());
+
+        File changedFile = files.get(1);
+        FileUtils.writeStringToFile(changedFile, "\n// changed\n", StandardCharsets.UTF_8, true);
+        CPD changedCpd = newCachedCpd(cacheFile, true, files);
+        changedCpd.go();
+        Iterator<Match> matches = changedCpd.getMatches();
+        Assert.assertTrue(matches.hasNext());
+        while (matches.hasNext()) {
+            boolean hasChangedMark = false;
+            for (Mark mark : matches.next()) {
+                hasChangedMark |= mark.getFilename().equals(changedFile.getAbsolutePath());
+            }
+            Assert.assertTrue(hasChangedMark);
+        }
+    }
+
+    private List<File> copyDuplicates() throws Exception {
+        List<File> files = new ArrayList<>();
+        for (String name : new String[] {"dup1.java", "dup2.java", "dup1.java"}) {
+            File copy = new File(tempFolder.getRoot(), files.size() + name);
+            FileUtils.copyFile(new File(BASE_TEST_RESOURCE_PATH, name), copy);
+            files.add(copy);
+        }
+        return files;
+    }
+
+    private CPD newCachedCpd(File cacheFile, boolean changedOnly, List<File> files) throws Exception {
+        CPDConfiguration configuration = new CPDConfiguration();
+        configuration.setLanguage(new AnyLanguage("any"));
+        configuration.setMinimumTileSize(10);
+        configuration.setCacheLocation(cacheFile.getPath());
+        configuration.setChangedOnly(changedOnly);
+        configuration.postContruct();
+        CPD cachedCpd = new CPD(configuration);
+        cachedCpd.add(files);
+        return cachedCpd;
+    }
+
+    private static void assertSameMatches(Iterator<Match> expected, Iterator<Match> actual) {
+        Assert.assertTrue(expected.hasNext());
+        while (expected.hasNext()) {
+            Assert.assertTrue(actual.hasNext());
+            Match expectedMatch = expected.next();
+            Match actualMatch = actual.next();
+            Assert.assertEquals(expectedMatch.getTokenCount(), actualMatch.getTokenCount());
+            Assert.assertEquals(expectedMatch.getLineCount(), actualMatch.getLineCount());
+            Assert.assertEquals(expectedMatch.getMarkCount(), actualMatch.getMarkCount());
+            Assert.assertEquals(expectedMatch.getFirstMark().getFilename(), actualMatch.getFirstMark().getFilename());
+            Assert.assertEquals(expectedMatch.getFirstMark().getBeginLine(), actualMatch.getFirstMark().getBeginLine());
+            Assert.assertEquals(expectedMatch.getSecondMark().getFilename(), actualMatch.getSecondMark().getFilename());
+            Assert.assertEquals(expectedMatch.getSecondMark().getBeginLine(), actualMatch.getSecondMark().getBeginLine());
+        }
+        Assert.assertFalse(actual.hasNext());
+    }
+
     /**
      * Simple listener that fails, if too many files were added and not skipped.
      */
@@ -7,14 +7,21 @@ package net.sourceforge.pmd.cpd;
 import static org.junit.Assert.assertEquals;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import net.sourceforge.pmd.cpd.SourceCode.FileCodeLoader;
 
 public class SourceCodeTest {
     private static final String BASE_RESOURCE_PATH = "src/test/resources/net/sourceforge/pmd/cpd/files/";
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     private static final String SAMPLE_CODE = "Line 1\n" + "Line 2\n" + "Line 3\n" + "Line 4\n";
 
     @Test
@@ -30,6 +37,46 @@ public class SourceCodeTest {
         assertEquals("Line 1\nLine 2", sourceCode.getSlice(1, 2));
     }
 
+    @Test
+    public void testFileSliceIsReadFromLineOffsets() throws Exception {
+        File file = tempFolder.newFile("Foo.java");
+        FileUtils.writeStringToFile(file, "Line 1\r\nLine 2\rLine 3\n\nLine 5 \u00e9", StandardCharsets.UTF_8);
+        SourceCode sourceCode = new SourceCode(new SourceCode.FileCodeLoader(file, "UTF-8"));
+
+        assertEquals("Line 1", sourceCode.getSlice(1, 1));
+        assertEquals("Line 2\nLine 3", sourceCode.getSlice(2, 3));
+        // the empty line 4 doesn't start the slice with a line terminator
+        assertEquals("Line 5 \u00e9", sourceCode.getSlice(4, 5));
+        assertEquals("Line 5 \u00e9", sourceCode.getSlice(5, 7));
+        assertEquals(sourceCode.getSlice(1, 5) + "\n", sourceCode.getCodeBuffer().toString());
+    }
+
+    @Test
+    public void testFileSliceOfLargeFile() throws Exception {
+        // the line terminators end up on both sides of the boundaries of the read buffer
+        StringBuilder code = new StringBuilder();
+        for (int i = 1; i <= 3000; i++) {
+            code.append("Line ").append(i).append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        File file = tempFolder.newFile("Large.java");
+        FileUtils.writeStringToFile(file, code.toString(), StandardCharsets.UTF_8);
+        SourceCode sourceCode = new SourceCode(new SourceCode.FileCodeLoader(file, "UTF-8"));
+
+        for (int i = 1; i <= 2999; i++) {
+            assertEquals("Line " + i + "\nLine " + (i + 1), sourceCode.getSlice(i, i + 1));
+        }
+        assertEquals("Line 3000", sourceCode.getSlice(3000, 3001));
+    }
+
+    @Test
+    public void testFileSliceWithBOM() throws Exception {
+        SourceCode sourceCode = new SourceCode(new SourceCode.FileCodeLoader(
+                new File(BASE_RESOURCE_PATH + "file_with_utf8_bom.java"), "ISO-8859-1"));
+
+        assertEquals("/**", sourceCode.getSlice(1, 1));
+        assertEquals(" * \u00e4", sourceCode.getSlice(4, 4));
+    }
+
     @Test
     public void testEncodingDetectionFromBOM() throws Exception {
         FileCodeLoader loader = new SourceCode.FileCodeLoader(new File(BASE_RESOURCE_PATH + "file_with_utf8_bom.java"),
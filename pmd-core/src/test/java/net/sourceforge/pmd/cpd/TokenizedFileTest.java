@@ -0,0 +1,50 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TokenizedFileTest {
+
+    @Before
+    public void setUp() {
+        TokenEntry.clearImages();
+    }
+
+    @Test
+    public void testImagesLongerThan64KAreCached() throws IOException {
+        char[] chars = new char[70000];
+        Arrays.fill(chars, '\u00e9'); // two bytes in UTF-8
+        final String longImage = new String(chars);
+        Tokenizer tokenizer = new Tokenizer() {
+            @Override
+            public void tokenize(SourceCode sourceCode, Tokens tokenEntries) {
+                tokenEntries.add(new TokenEntry("s", "Foo.java", 1, 1, 1));
+                tokenEntries.add(new TokenEntry(longImage, "Foo.java", 1, 5, 70004));
+                tokenEntries.add(TokenEntry.getEOF());
+            }
+        };
+        SourceCode sourceCode = new SourceCode(new SourceCode.StringCodeLoader("", "Foo.java"));
+
+        byte[] bytes = TokenizedFile.tokenize(tokenizer, sourceCode).toBytes();
+        TokenizedFile cached = TokenizedFile.fromBytes(bytes);
+        assertTrue(cached.isFromCache());
+
+        Tokens tokens = new Tokens();
+        cached.appendTo(tokens);
+        List<TokenEntry> entries = tokens.getTokens();
+        assertEquals(3, entries.size());
+        assertEquals("s", entries.get(0).toString());
+        assertEquals(longImage, entries.get(1).toString());
+    }
+}
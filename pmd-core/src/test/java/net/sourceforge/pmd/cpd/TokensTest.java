@@ -0,0 +1,76 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.cpd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TokensTest {
+
+    private Tokens tokens;
+
+    @Before
+    public void setUp() {
+        TokenEntry.clearImages();
+        tokens = new Tokens();
+    }
+
+    @Test
+    public void testTokensAreStoredByColumns() {
+        tokens.add(new TokenEntry("public", "Foo.java", 1, 1, 6));
+        tokens.add(new TokenEntry("class", "Foo.java", 1, 8, 12));
+        tokens.add(TokenEntry.getEOF());
+        tokens.add(new TokenEntry("public", "Bar.java", 3, 2, 7));
+        tokens.add(TokenEntry.getEOF());
+
+        List<TokenEntry> entries = tokens.getTokens();
+        assertEquals(5, entries.size());
+
+        TokenEntry clazz = entries.get(1);
+        assertEquals("class", clazz.toString());
+        assertEquals("Foo.java", clazz.getTokenSrcID());
+        assertEquals(1, clazz.getIndex());
+        assertEquals(1, clazz.getBeginLine());
+        assertEquals(8, clazz.getBeginColumn());
+        assertEquals(12, clazz.getEndColumn());
+
+        assertSame(TokenEntry.EOF, entries.get(2));
+
+        TokenEntry bar = entries.get(3);
+        assertEquals("public", bar.toString());
+        assertEquals("Bar.java", bar.getTokenSrcID());
+        assertEquals(3, bar.getIndex());
+        assertEquals(entries.get(0).getIdentifier(), bar.getIdentifier());
+    }
+
+    @Test
+    public void testLastTokenCanBeUpdated() {
+        tokens.add(new TokenEntry("Foo", "Foo.java", 1, 1, 3));
+        tokens.add(new TokenEntry("ID", "Foo.java", 1, 5, 6));
+        tokens.getTokens().get(1).setImage("Foo");
+        tokens.add(TokenEntry.getEOF());
+
+        assertEquals(tokens.getTokens().get(0).getIdentifier(), tokens.getTokens().get(1).getIdentifier());
+    }
+
+    @Test
+    public void testStateRestore() {
+        tokens.add(new TokenEntry("public", "Foo.java", 1, 1, 6));
+        tokens.add(TokenEntry.getEOF());
+        TokenEntry.State state = new TokenEntry.State();
+        tokens.add(new TokenEntry("class", "Bar.java", 1, 1, 5));
+        state.restore(tokens);
+
+        assertEquals(2, tokens.size());
+        tokens.add(new TokenEntry("class", "Baz.java", 1, 1, 5));
+        assertEquals("Baz.java", tokens.getTokens().get(2).getTokenSrcID());
+        assertEquals(2, tokens.getTokens().get(2).getIndex());
+    }
+}
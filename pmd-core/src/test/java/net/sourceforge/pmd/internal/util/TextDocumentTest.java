@@ -0,0 +1,80 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.internal.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Adler32;
+
+import org.junit.Test;
+
+import net.sourceforge.pmd.cache.internal.XxHash64;
+import net.sourceforge.pmd.util.datasource.internal.AbstractDataSource;
+
+public class TextDocumentTest {
+
+    @Test
+    public void testChecksumsMatchTheBytes() throws IOException {
+        byte[] bytes = new byte[20000];
+        Arrays.fill(bytes, (byte) 'a');
+        CountingDataSource source = new CountingDataSource(bytes, -1);
+        TextDocument document = new TextDocument(source, StandardCharsets.UTF_8);
+
+        Adler32 adler32 = new Adler32();
+        adler32.update(bytes);
+        assertEquals(adler32.getValue(), document.getChecksum(false));
+        assertEquals(XxHash64.hash(ByteBuffer.wrap(bytes)), document.getChecksum(true));
+        assertEquals(bytes.length, document.getText().length());
+        assertEquals(1, source.opened);
+    }
+
+    @Test
+    public void testTextIsDecodedOnce() throws IOException {
+        byte[] bytes = "class Foo { String s = \"é\"; }".getBytes(StandardCharsets.UTF_8);
+        CountingDataSource source = new CountingDataSource(bytes, bytes.length);
+        TextDocument document = new TextDocument(source, StandardCharsets.UTF_8);
+
+        assertEquals("class Foo { String s = \"é\"; }", document.getText());
+        char[] buffer = new char[100];
+        int read = document.newReader().read(buffer);
+        assertEquals(document.getText(), new String(buffer, 0, read));
+        assertEquals(bytes.length, document.getBytes().remaining());
+        assertEquals(1, source.opened);
+    }
+
+    private static final class CountingDataSource extends AbstractDataSource {
+
+        private final byte[] bytes;
+        private final long sizeHint;
+        private int opened;
+
+        CountingDataSource(byte[] bytes, long sizeHint) {
+            this.bytes = bytes;
+            this.sizeHint = sizeHint;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            opened++;
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public long getSizeHint() {
+            return sizeHint;
+        }
+
+        @Override
+        public String getNiceFileName(boolean shortNames, String inputFileName) {
+            return "Foo.java";
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.ast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class NodeIndexTest {
+
+    private int id;
+
+    @Before
+    public void setUp() {
+        id = 0;
+    }
+
+    private DummyNode newNode(boolean boundary, String xpathName) {
+        return new DummyNode(id++, boundary, xpathName);
+    }
+
+    private static void addChild(Node parent, Node child) {
+        parent.jjtAddChild(child, parent.getNumChildren());
+        child.jjtSetParent(parent);
+    }
+
+    /**
+     * Builds a tree with some find boundaries, which is large enough
+     * for the index not to be scanned linearly from the root.
+     */
+    private DummyNode buildTree(int depth) {
+        DummyNode node = newNode(id % 7 == 3, id % 2 == 0 ? "even" : "odd");
+        if (depth > 0) {
+            for (int i = 0; i < 3; i++) {
+                addChild(node, buildTree(depth - 1));
+            }
+        }
+        return node;
+    }
+
+    private static List<Node> preorder(Node root) {
+        List<Node> nodes = new ArrayList<>();
+        nodes.add(root);
+        for (int i = 0; i < root.getNumChildren(); i++) {
+            nodes.addAll(preorder(root.getChild(i)));
+        }
+        return nodes;
+    }
+
+    @Test
+    public void testFindDescendantsIsUnchanged() {
+        DummyNode root = buildTree(5);
+        List<Node> nodes = preorder(root);
+        List<List<DummyNode>> expected = new ArrayList<>();
+        List<List<DummyNode>> expectedCrossing = new ArrayList<>();
+        for (Node node : nodes) {
+            expected.add(node.findDescendantsOfType(DummyNode.class));
+            expectedCrossing.add(node.findDescendantsOfType(DummyNode.class, true));
+        }
+
+        NodeIndex index = NodeIndex.get(root);
+        assertEquals(nodes.size(), index.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            assertSame(node, index.getNode(i));
+            assertEquals(expected.get(i), node.findDescendantsOfType(DummyNode.class));
+            assertEquals(expectedCrossing.get(i), node.findDescendantsOfType(DummyNode.class, true));
+        }
+    }
+
+    @Test
+    public void testPositionsAreInDocumentOrder() {
+        DummyNode root = buildTree(4);
+        NodeIndex index = NodeIndex.get(root);
+        Node child = root.getChild(1);
+        int position = index.positionOf(child);
+        int[] positions = index.getPositions("even", position, index.getSubtreeEnd(position));
+
+        List<Node> expected = new ArrayList<>();
+        for (Node node : preorder(child)) {
+            if ("even".equals(node.getXPathNodeName())) {
+                expected.add(node);
+            }
+        }
+        assertEquals(expected.size(), positions.length);
+        for (int i = 0; i < positions.length; i++) {
+            assertSame(expected.get(i), index.getNode(positions[i]));
+        }
+        assertEquals(0, index.getPositions("unknown", 0, index.size()).length);
+    }
+
+    @Test
+    public void testIndexIsInvalidatedByChanges() {
+        DummyNode root = buildTree(2);
+        NodeIndex index = NodeIndex.get(root);
+        assertSame(index, NodeIndex.get(root.getChild(0)));
+
+        DummyNode added = newNode(false, "added");
+        addChild(root.getChild(0).getChild(0), added);
+        assertFalse(index.isValid());
+        assertTrue(root.findDescendantsOfType(DummyNode.class).contains(added));
+
+        NodeIndex rebuilt = NodeIndex.get(root);
+        assertTrue(rebuilt.isValid());
+        assertTrue(rebuilt.positionOf(added) > 0);
+    }
+}
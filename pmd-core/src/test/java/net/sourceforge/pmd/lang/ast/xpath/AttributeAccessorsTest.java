@@ -0,0 +1,80 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.ast.xpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import net.sourceforge.pmd.lang.ast.DummyNode;
+
+public class AttributeAccessorsTest {
+
+    @Test
+    public void testAttributesAreIndexedInIterationOrder() {
+        DummyNode dummyNode = new DummyNode(1);
+        dummyNode.setCoords(3, 1, 4, 2);
+        dummyNode.setImage("foo");
+
+        AttributeAccessors accessors = AttributeAccessors.forNode(dummyNode);
+        assertNotNull(accessors);
+
+        AttributeAxisIterator it = new AttributeAxisIterator(dummyNode);
+        int index = 0;
+        while (it.hasNext()) {
+            Attribute attribute = it.next();
+            assertEquals(attribute.getName(), accessors.getName(index));
+            assertEquals(index, accessors.indexOf(attribute.getName()));
+            assertEquals(attribute.getValue(), accessors.getAttribute(dummyNode, index).getValue());
+            index++;
+        }
+        assertEquals(accessors.size(), index);
+
+        assertEquals(3, accessors.getAttribute(dummyNode, accessors.indexOf("BeginLine")).getValue());
+        assertEquals("foo", accessors.getAttribute(dummyNode, accessors.indexOf("Image")).getStringValue());
+        assertEquals(-1, accessors.indexOf("Unknown"));
+    }
+
+    @Test
+    public void testFailingAccessorHasNoValue() {
+        DummyNodeWithFailingAttribute dummyNode = new DummyNodeWithFailingAttribute(1);
+        AttributeAccessors accessors = AttributeAccessors.forNode(dummyNode);
+
+        assertNull(accessors.getAttribute(dummyNode, accessors.indexOf("Failing")).getValue());
+    }
+
+    @Test
+    public void testCustomAttributesAreNotIndexed() {
+        assertNull(AttributeAccessors.forNode(new DummyNodeWithCustomAttributes(1)));
+    }
+
+    public static class DummyNodeWithFailingAttribute extends DummyNode {
+
+        public DummyNodeWithFailingAttribute(int id) {
+            super(id);
+        }
+
+        public String getFailing() {
+            throw new IllegalStateException("expected");
+        }
+    }
+
+    public static class DummyNodeWithCustomAttributes extends DummyNode {
+
+        public DummyNodeWithCustomAttributes(int id) {
+            super(id);
+        }
+
+        @Override
+        public Iterator<Attribute> getXPathAttributesIterator() {
+            return Collections.singletonList(new Attribute(this, "Custom", "value")).iterator();
+        }
+    }
+}
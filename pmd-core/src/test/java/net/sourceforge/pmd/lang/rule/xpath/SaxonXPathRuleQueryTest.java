@@ -4,6 +4,7 @@
 
 package net.sourceforge.pmd.lang.rule.xpath;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -193,6 +194,41 @@ public class SaxonXPathRuleQueryTest {
         assertExpression("DocumentSorter((LetExpression(LazyExpression(CardinalityChecker(ItemChecker(UntypedAtomicConverter(Atomizer($testClassPattern))))), (((/)/descendant::element(dummyNode, xs:anyType))[matches(CardinalityChecker(ItemChecker(UntypedAtomicConverter(Atomizer(attribute::attribute(SimpleName, xs:anyAtomicType))))), $zz:zz952562199)]))/child::element(foo, xs:anyType)))", query.nodeNameToXPaths.get(SaxonXPathRuleQuery.AST_ROOT).get(0));
     }
 
+    @Test
+    public void testCompiledExpressionIsShared() {
+        DummyNode dummy = new DummyNode(0, false, "dummyNode");
+        dummy.setImage("foo");
+
+        PropertyDescriptor<String> image = PropertyFactory.stringProperty("image").desc("test").defaultValue("foo").build();
+        SaxonXPathRuleQuery query = createQuery("//dummyNode[@Image = $image]", image);
+        SaxonXPathRuleQuery other = createQuery("//dummyNode[@Image = $image]", image);
+        Map<PropertyDescriptor<?>, Object> otherProps = new HashMap<>();
+        otherProps.put(image, "bar");
+        other.setProperties(otherProps);
+
+        Assert.assertEquals(1, query.evaluate(dummy, new RuleContext()).size());
+        Assert.assertEquals(0, other.evaluate(dummy, new RuleContext()).size());
+        Assert.assertSame(query.xpathExpression, other.xpathExpression);
+        Assert.assertSame(query.nodeNameToXPaths, other.nodeNameToXPaths);
+    }
+
+    @Test
+    public void testEvaluateSeveralNodes() {
+        DummyNode root = new DummyNode(0, false, "dummyRootNode");
+        for (int i = 0; i < 3; i++) {
+            DummyNode child = new DummyNode(i + 1, false, "dummyNode");
+            child.setImage(i == 1 ? "bar" : "foo");
+            root.jjtAddChild(child, i);
+            child.jjtSetParent(root);
+        }
+
+        SaxonXPathRuleQuery query = createQuery("//dummyNode[@Image = 'foo']");
+        Assert.assertEquals(Collections.singletonList("dummyNode"), query.getRuleChainVisits());
+        List<Node> nodes = Arrays.asList(root.getChild(2), root.getChild(1), root.getChild(0));
+        List<Node> result = query.evaluate(nodes, new RuleContext());
+        Assert.assertEquals(Arrays.asList(root.getChild(2), root.getChild(0)), result);
+    }
+
     @Test
     public void ruleChainVisitWithTwoFunctions() {
         SaxonXPathRuleQuery query = createQuery("//dummyNode[ends-with(@Image, 'foo')][pmd-dummy:typeIs('bar')]");
@@ -56,4 +56,35 @@ public class ElementNodeTest {
         Assert.assertTrue(elementFoo1.compareOrder(elementFoo2) < 0);
         Assert.assertTrue(elementFoo2.compareOrder(elementFoo1) > 0);
     }
+
+    @Test
+    public void testElementNodesAreCreatedOnDemand() {
+        DummyNode node = new DummyNode(1, false, "dummy");
+        DummyNode foo = new DummyNode(2, false, "foo");
+        foo.setCoords(1, 1, 2, 1);
+        DummyNode bar = new DummyNode(3, false, "bar");
+        bar.setCoords(1, 1, 1, 5);
+        DummyNode baz = new DummyNode(4, false, "baz");
+        baz.setCoords(3, 1, 3, 5);
+        node.jjtAddChild(foo, 0);
+        foo.jjtAddChild(bar, 0);
+        node.jjtAddChild(baz, 1);
+
+        DocumentNode document = new DocumentNode(node);
+        ElementNode elementBar = document.nodeToElementNode.get(bar);
+        ElementNode elementFoo = document.nodeToElementNode.get(foo);
+        ElementNode elementBaz = document.nodeToElementNode.get(baz);
+
+        Assert.assertSame(bar, elementBar.getUnderlyingNode());
+        Assert.assertSame(elementFoo, elementBar.getParent());
+        Assert.assertSame(document.nodeToElementNode.get(node), elementFoo.getParent());
+        Assert.assertEquals(0, elementBar.getSiblingPosition());
+        Assert.assertEquals(1, elementBaz.getSiblingPosition());
+        Assert.assertEquals(4, document.nodeToElementNode.size());
+
+        // document order, although foo and bar start at the same position
+        Assert.assertTrue(elementFoo.compareOrder(elementBar) < 0);
+        Assert.assertTrue(elementBar.compareOrder(elementFoo) > 0);
+        Assert.assertTrue(elementBar.compareOrder(elementBaz) < 0);
+    }
 }
@@ -42,9 +42,18 @@ public class MultiThreadProcessorTest {
     private SimpleReportListener reportListener;
 
     public void setUpForTest(final String ruleset) {
+        setUpForTest(ruleset, false);
+    }
+
+    public void setUpForTest(final String ruleset, final boolean largestFilesFirst) {
+        setUpForTest(ruleset, largestFilesFirst, true);
+    }
+
+    public void setUpForTest(final String ruleset, final boolean largestFilesFirst, final boolean mergeFileReports) {
         PMDConfiguration configuration = new PMDConfiguration();
         configuration.setRuleSets(ruleset);
         configuration.setThreads(2);
+        configuration.setLargestFilesFirst(largestFilesFirst);
         files = new ArrayList<>();
         files.add(new StringDataSource("file1-violation.dummy", "ABC"));
         files.add(new StringDataSource("file2-foo.dummy", "DEF"));
@@ -54,6 +63,7 @@ public class MultiThreadProcessorTest {
         ctx.getReport().addListener(reportListener);
 
         processor = new MultiThreadProcessor(configuration);
+        processor.setMergeFileReports(mergeFileReports);
         ruleSetFactory = RulesetsFactoryUtils.defaultFactory();
     }
 
@@ -75,6 +85,31 @@ public class MultiThreadProcessorTest {
         Assert.assertFalse("More configuration errors found than expected", configErrors.hasNext());
     }
 
+    @Test
+    public void testLargestFilesFirstOnWorkStealingPool() throws IOException {
+        setUpForTest("rulesets/MultiThreadProcessorTest/dysfunctional.xml", true);
+        final SimpleRenderer renderer = new SimpleRenderer(null, null);
+        renderer.start();
+        processor.processFiles(ruleSetFactory, files, ctx, Collections.<Renderer>singletonList(renderer));
+        renderer.end();
+
+        Assert.assertTrue("Dysfunctional rule not reported", renderer.getReport().configErrors().hasNext());
+        Assert.assertEquals("All files should have been analyzed", files.size(), renderer.analyzedFiles.get());
+    }
+
+    @Test
+    public void testFileReportsNotMerged() throws IOException {
+        setUpForTest("rulesets/MultiThreadProcessorTest/violation.xml", false, false);
+        final SimpleRenderer renderer = new SimpleRenderer(null, null);
+        renderer.start();
+        processor.processFiles(ruleSetFactory, files, ctx, Collections.<Renderer>singletonList(renderer));
+        renderer.end();
+
+        Assert.assertEquals("Violation not rendered", 1, renderer.getReport().getViolations().size());
+        Assert.assertEquals("Listener not notified", 1, reportListener.violations.get());
+        Assert.assertTrue("File report merged into global report", ctx.getReport().getViolations().isEmpty());
+    }
+
     @Test
     public void testRulesThreadSafety() {
         setUpForTest("rulesets/MultiThreadProcessorTest/basic.xml");
@@ -140,6 +175,15 @@ public class MultiThreadProcessorTest {
         }
     }
 
+    public static class ViolationPerFileRule extends AbstractRule {
+        @Override
+        public void apply(List<? extends Node> nodes, RuleContext ctx) {
+            if (ctx.getSourceCodeFilename().contains("violation")) {
+                addViolation(ctx, nodes.get(0));
+            }
+        }
+    }
+
     public static class DysfunctionalRule extends AbstractRule {
 
         public static final String DYSFUNCTIONAL_RULE_REASON = "dysfunctional rule is dysfunctional";
@@ -169,6 +213,7 @@ public class MultiThreadProcessorTest {
     }
 
     private static class SimpleRenderer extends AbstractAccumulatingRenderer {
+        private final AtomicInteger analyzedFiles = new AtomicInteger(0);
 
         /* default */ SimpleRenderer(String name, String description) {
             super(name, description);
@@ -179,6 +224,11 @@ public class MultiThreadProcessorTest {
             return null;
         }
 
+        @Override
+        public void startFileAnalysis(DataSource dataSource) {
+            analyzedFiles.incrementAndGet();
+        }
+
         @Override
         public void end() throws IOException {
         }
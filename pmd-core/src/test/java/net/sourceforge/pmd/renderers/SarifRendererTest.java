@@ -6,6 +6,8 @@ package net.sourceforge.pmd.renderers;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
@@ -26,6 +28,11 @@ import net.sourceforge.pmd.lang.ast.Node;
 import net.sourceforge.pmd.lang.rule.AbstractRule;
 import net.sourceforge.pmd.lang.rule.ParametricRuleViolation;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
 public class SarifRendererTest extends AbstractRendererTest {
     @Override
     public Renderer getRenderer() {
@@ -95,6 +102,58 @@ public class SarifRendererTest extends AbstractRendererTest {
         assertThat(filter(actual), containsString("\"id\": \"Boo\""));
     }
 
+    @Test
+    public void testRendererWithDistinctMessagesOfOneRule() throws Exception {
+        Report report = new Report();
+        RuleViolation first = newRuleViolation(1, "Foo");
+        report.addRuleViolation(first);
+        DummyNode node = createNode(2);
+        RuleContext ctx = new RuleContext();
+        ctx.setSourceCodeFile(new File(getSourceCodeFilename()));
+        report.addRuleViolation(new ParametricRuleViolation<Node>(first.getRule(), ctx, node, "other message"));
+
+        String actual = filter(ReportTest.render(getRenderer(), report));
+
+        // a single rule in the rule table, and the messages of the violations in their results
+        assertEquals(1, actual.split("\"id\": \"Foo\"", -1).length - 1);
+        assertEquals(2, actual.split("\"ruleIndex\": 0", -1).length - 1);
+        assertThat(actual, containsString("\"text\": \"other message\""));
+    }
+
+    @Test
+    public void testStreamedLogIsValidSarif() throws Exception {
+        Report report = new Report();
+        for (int i = 0; i < 10; i++) {
+            report.addRuleViolation(newRuleViolation(i + 1, i % 2 == 0 ? "Foo" : "Boo"));
+        }
+        report.addError(new Report.ProcessingError(new RuntimeException("Error"), "file"));
+
+        JsonObject log = new JsonParser().parse(ReportTest.render(getRenderer(), report)).getAsJsonObject();
+
+        assertEquals("2.1.0", log.get("version").getAsString());
+        assertTrue(log.get("$schema").getAsString().endsWith("sarif-schema-2.1.0.json"));
+        JsonArray runs = log.getAsJsonArray("runs");
+        assertEquals(1, runs.size());
+        JsonObject run = runs.get(0).getAsJsonObject();
+        JsonArray rules = run.getAsJsonObject("tool").getAsJsonObject("driver").getAsJsonArray("rules");
+        assertEquals(2, rules.size());
+
+        // each violation is a result, whose rule index points to its rule in the rule table
+        JsonArray results = run.getAsJsonArray("results");
+        assertEquals(10, results.size());
+        for (JsonElement element : results) {
+            JsonObject result = element.getAsJsonObject();
+            JsonObject rule = rules.get(result.get("ruleIndex").getAsInt()).getAsJsonObject();
+            assertEquals(rule.get("id").getAsString(), result.get("ruleId").getAsString());
+            assertEquals("blah", result.getAsJsonObject("message").get("text").getAsString());
+            assertEquals(1, result.getAsJsonArray("locations").size());
+        }
+
+        JsonObject invocation = run.getAsJsonArray("invocations").get(0).getAsJsonObject();
+        assertEquals(false, invocation.get("executionSuccessful").getAsBoolean());
+        assertEquals(1, invocation.getAsJsonArray("toolExecutionNotifications").size());
+    }
+
     private Report reportTwoViolations() {
         Report report = new Report();
         RuleViolation informationalRuleViolation = newRuleViolation(1, "Foo");
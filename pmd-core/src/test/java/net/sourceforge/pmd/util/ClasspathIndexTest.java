@@ -0,0 +1,148 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClasspathIndexTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File createJar(String name, String classPath, String... entries) throws IOException {
+        File jar = tempFolder.newFile(name);
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (classPath != null) {
+            manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath);
+        }
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest)) {
+            for (String entry : entries) {
+                out.putNextEntry(new ZipEntry(entry));
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    @Test
+    public void testEntriesOfJarsAndDirectories() throws IOException {
+        createJar("referenced.jar", null, "c/d/Referenced.class");
+        File jar = createJar("main.jar", "referenced.jar", "a/b/", "a/b/Main.class",
+                "META-INF/versions/11/e/Versioned.class");
+        File directory = tempFolder.newFolder("classes");
+        assertTrue(new File(directory, "f/g").mkdirs());
+        assertTrue(new File(directory, "f/g/InDirectory.class").createNewFile());
+
+        ClasspathIndex index = ClasspathIndex.build(new URL[] {jar.toURI().toURL(), directory.toURI().toURL()}, null);
+
+        assertTrue(index.mayContain("a/b/Main.class"));
+        assertTrue(index.mayContain("a/b/"));
+        assertTrue(index.mayContain("a/b"));
+        assertTrue(index.mayContain("c/d/Referenced.class"));
+        assertTrue(index.mayContain("e/Versioned.class"));
+        assertTrue(index.mayContain("f/g/InDirectory.class"));
+        assertTrue(index.mayContain("f/g/"));
+        assertTrue(index.mayContain("META-INF/MANIFEST.MF"));
+        assertFalse(index.mayContain("a/b/Other.class"));
+        assertFalse(index.mayContain("f/g/Other.class"));
+        assertFalse(index.mayContain("a/Main.class"));
+        assertFalse(index.mayContain("java/lang/String.class"));
+    }
+
+    @Test
+    public void testLinkedDirectoriesAreFollowed() throws IOException {
+        File target = tempFolder.newFolder("target");
+        assertTrue(new File(target, "InLink.class").createNewFile());
+        File directory = tempFolder.newFolder("classes");
+        try {
+            Files.createSymbolicLink(new File(directory, "h").toPath(), target.toPath());
+            // a cycle of links doesn't fail the index
+            Files.createSymbolicLink(new File(target, "loop").toPath(), directory.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            Assume.assumeNoException(e);
+        }
+
+        ClasspathIndex index = ClasspathIndex.build(new URL[] {directory.toURI().toURL()}, null);
+
+        assertTrue(index.mayContain("h/InLink.class"));
+        assertFalse(index.mayContain("h/Other.class"));
+    }
+
+    @Test
+    public void testIndexFileIsReused() throws IOException {
+        File jar = createJar("main.jar", null, "a/b/Main.class");
+        File indexFile = new File(tempFolder.getRoot(), "cache.auxclasspath");
+        URL[] urls = {jar.toURI().toURL()};
+
+        assertTrue(ClasspathIndex.build(urls, indexFile).mayContain("a/b/Main.class"));
+        assertTrue(indexFile.isFile());
+        long lastModified = indexFile.lastModified();
+        assertTrue(ClasspathIndex.build(urls, indexFile).mayContain("a/b/Main.class"));
+        assertEquals(lastModified, indexFile.lastModified());
+
+        // the jar changed
+        assertTrue(jar.delete());
+        createJar("main.jar", null, "x/y/Other.class");
+        assertTrue(jar.setLastModified(lastModified + 10000));
+        ClasspathIndex index = ClasspathIndex.build(urls, indexFile);
+        assertFalse(index.mayContain("a/b/Main.class"));
+        assertTrue(index.mayContain("x/y/Other.class"));
+    }
+
+    @Test
+    public void testIndexFileIsRebuiltWhenReferencedJarAppears() throws IOException {
+        File jar = createJar("main.jar", "referenced.jar classes/", "a/b/Main.class");
+        File indexFile = new File(tempFolder.getRoot(), "cache.auxclasspath");
+        URL[] urls = {jar.toURI().toURL()};
+
+        assertFalse(ClasspathIndex.build(urls, indexFile).mayContain("c/d/Referenced.class"));
+
+        createJar("referenced.jar", null, "c/d/Referenced.class");
+        File directory = tempFolder.newFolder("classes");
+        assertTrue(new File(directory, "InDirectory.class").createNewFile());
+        ClasspathIndex index = ClasspathIndex.build(urls, indexFile);
+        assertTrue(index.mayContain("c/d/Referenced.class"));
+        assertTrue(index.mayContain("InDirectory.class"));
+
+        // the referenced directory is listed even if the index file is reused
+        long lastModified = indexFile.lastModified();
+        long directoryModified = directory.lastModified();
+        assertTrue(new File(directory, "Added.class").createNewFile());
+        assertTrue(directory.setLastModified(directoryModified));
+        index = ClasspathIndex.build(urls, indexFile);
+        assertTrue(index.mayContain("Added.class"));
+        assertEquals(lastModified, indexFile.lastModified());
+    }
+
+    @Test
+    public void testClassLoaderSkipsUnknownPackages() throws Exception {
+        File jar = createJar("main.jar", null, "a/b/Main.class");
+        try (ClasspathClassLoader loader = new ClasspathClassLoader(Collections.singletonList(jar), getClass().getClassLoader())) {
+            assertNull(loader.getResource("c/d/Missing.class"));
+            assertEquals(String.class, loader.loadClass("java.lang.String"));
+            assertEquals(ClasspathIndexTest.class, loader.loadClass(ClasspathIndexTest.class.getName()));
+        }
+    }
+}
@@ -9,6 +9,7 @@ import static net.sourceforge.pmd.lang.java.rule.codestyle.ConfusingTernaryRule.
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Deque;
@@ -165,14 +166,9 @@ public class UnusedAssignmentRule extends AbstractJavaRule {
     }
 
     private void reportFinished(GlobalAlgoState result, RuleContext ruleCtx) {
-        if (result.usedAssignments.size() < result.allAssignments.size()) {
-            Set<AssignmentEntry> unused = result.allAssignments;
-            // note that this mutates allAssignments, so the global
-            // state is unusable after this
-            unused.removeAll(result.usedAssignments);
-
-            for (AssignmentEntry entry : unused) {
-                if (isIgnorablePrefixIncrement(entry.rhs)) {
+        if (result.usedAssignments.cardinality() < result.assignments.size()) {
+            for (AssignmentEntry entry : result.assignments) {
+                if (result.usedAssignments.get(entry.index) || isIgnorablePrefixIncrement(entry.rhs)) {
                     continue;
                 }
 
@@ -683,7 +679,7 @@ public class UnusedAssignmentRule extends AbstractJavaRule {
 
             breakTarget = globalState.breakTargets.peek();
             continueTarget = globalState.continueTargets.peek();
-            if (!continueTarget.symtable.isEmpty()) {
+            if (!continueTarget.isEmpty()) {
                 // make assignments before a continue reach the other parts of the loop
 
                 linkConditional(continueTarget, cond, continueTarget, breakTarget, true);
@@ -1128,60 +1124,61 @@ public class UnusedAssignmentRule extends AbstractJavaRule {
      */
     private static class GlobalAlgoState {
 
-        final Set<AssignmentEntry> allAssignments;
-        final Set<AssignmentEntry> usedAssignments;
+        // all the assignments, numbered in the order they're found,
+        // so that sets of assignments are bit sets of their index
+        final List<AssignmentEntry> assignments = new ArrayList<>();
+        private final Map<JavaNode, AssignmentEntry> assignmentsByRhs = new HashMap<>();
+
+        final BitSet usedAssignments = new BitSet();
 
         // track which assignments kill which
         // assignment -> killers(assignment)
-        final Map<AssignmentEntry, Set<AssignmentEntry>> killRecord;
+        final Map<AssignmentEntry, Set<AssignmentEntry>> killRecord = new HashMap<>();
 
         final TargetStack breakTargets = new TargetStack();
         // continue jumps to the condition check, while break jumps to after the loop
         final TargetStack continueTargets = new TargetStack();
 
-        private GlobalAlgoState(Set<AssignmentEntry> allAssignments,
-                                Set<AssignmentEntry> usedAssignments,
-                                Map<AssignmentEntry, Set<AssignmentEntry>> killRecord) {
-            this.allAssignments = allAssignments;
-            this.usedAssignments = usedAssignments;
-            this.killRecord = killRecord;
-
-        }
-
-        private GlobalAlgoState() {
-            this(new HashSet<AssignmentEntry>(),
-                 new HashSet<AssignmentEntry>(),
-                 new HashMap<AssignmentEntry, Set<AssignmentEntry>>());
+        /**
+         * Returns the assignment of the given rhs, which is the same
+         * every time the rhs is visited, eg when a loop is visited twice.
+         */
+        AssignmentEntry getAssignment(ASTVariableDeclaratorId var, JavaNode rhs) {
+            AssignmentEntry entry = assignmentsByRhs.get(rhs);
+            if (entry == null) {
+                entry = new AssignmentEntry(var, rhs, assignments.size());
+                assignments.add(entry);
+                assignmentsByRhs.put(rhs, entry);
+            }
+            return entry;
         }
     }
 
     // Information about a variable in a code span.
+    // Instances are immutable, so they're shared between spans.
     static class VarLocalInfo {
 
-        Set<AssignmentEntry> reachingDefs;
+        // the indices of the assignments, which must not be mutated
+        final BitSet reachingDefs;
 
-        VarLocalInfo(Set<AssignmentEntry> reachingDefs) {
+        VarLocalInfo(BitSet reachingDefs) {
             this.reachingDefs = reachingDefs;
         }
 
         VarLocalInfo absorb(VarLocalInfo other) {
-            if (this.equals(other)) {
+            if (this == other) { // NOPMD CompareObjectsWithEqual this is what we want
                 return this;
             }
-            Set<AssignmentEntry> merged = new HashSet<>(reachingDefs.size() + other.reachingDefs.size());
-            merged.addAll(reachingDefs);
-            merged.addAll(other.reachingDefs);
-            return new VarLocalInfo(merged);
+            BitSet merged = (BitSet) reachingDefs.clone();
+            merged.or(other.reachingDefs);
+            // no need for a new instance if the other defs are already there
+            return merged.equals(reachingDefs) ? this : new VarLocalInfo(merged);
         }
 
         @Override
         public String toString() {
             return "VarLocalInfo{reachingDefs=" + reachingDefs + '}';
         }
-
-        public VarLocalInfo copy() {
-            return new VarLocalInfo(this.reachingDefs);
-        }
     }
 
     /**
@@ -1209,31 +1206,55 @@ public class UnusedAssignmentRule extends AbstractJavaRule {
 
         final GlobalAlgoState global;
 
-        final Map<ASTVariableDeclaratorId, VarLocalInfo> symtable;
+        // The table is copied on write when it is shared with a fork,
+        // as most forks don't assign all the variables they inherit.
+        private Map<ASTVariableDeclaratorId, VarLocalInfo> symtable;
+        private boolean symtableShared;
 
         private SpanInfo(GlobalAlgoState global) {
-            this(null, global, new HashMap<ASTVariableDeclaratorId, VarLocalInfo>());
+            this(null, global, new HashMap<ASTVariableDeclaratorId, VarLocalInfo>(), false);
         }
 
         private SpanInfo(SpanInfo parent,
                          GlobalAlgoState global,
-                         Map<ASTVariableDeclaratorId, VarLocalInfo> symtable) {
+                         Map<ASTVariableDeclaratorId, VarLocalInfo> symtable,
+                         boolean symtableShared) {
             this.parent = parent;
             this.global = global;
             this.symtable = symtable;
+            this.symtableShared = symtableShared;
             this.myCatches = Collections.emptyList();
         }
 
+        private Map<ASTVariableDeclaratorId, VarLocalInfo> mutableSymtable() {
+            if (symtableShared) {
+                symtable = new HashMap<>(symtable);
+                symtableShared = false;
+            }
+            return symtable;
+        }
+
+        private void clearSymtable() {
+            symtable = new HashMap<>();
+            symtableShared = false;
+        }
+
+        boolean isEmpty() {
+            return symtable.isEmpty();
+        }
+
         boolean hasVar(ASTVariableDeclaratorId var) {
             return symtable.containsKey(var);
         }
 
         void assign(ASTVariableDeclaratorId var, JavaNode rhs) {
-            AssignmentEntry entry = new AssignmentEntry(var, rhs);
-            VarLocalInfo previous = symtable.put(var, new VarLocalInfo(Collections.singleton(entry)));
+            AssignmentEntry entry = global.getAssignment(var, rhs);
+            VarLocalInfo previous = mutableSymtable().put(var, entry.asReachingDefs);
             if (previous != null) {
                 // those assignments were overwritten ("killed")
-                for (AssignmentEntry killed : previous.reachingDefs) {
+                BitSet killedDefs = previous.reachingDefs;
+                for (int i = killedDefs.nextSetBit(0); i >= 0; i = killedDefs.nextSetBit(i + 1)) {
+                    AssignmentEntry killed = global.assignments.get(i);
                     if (killed.rhs instanceof ASTVariableDeclaratorId
                         && killed.rhs.getParent() instanceof ASTVariableDeclarator
                         && killed.rhs != rhs) {
@@ -1248,19 +1269,20 @@ public class UnusedAssignmentRule extends AbstractJavaRule {
                     killers.add(entry);
                 }
             }
-            global.allAssignments.add(entry);
         }
 
         void use(ASTVariableDeclaratorId var) {
             VarLocalInfo info = symtable.get(var);
             // may be null for implicit assignments, like method parameter
             if (info != null) {
-                global.usedAssignments.addAll(info.reachingDefs);
+                global.usedAssignments.or(info.reachingDefs);
             }
         }
 
         void deleteVar(ASTVariableDeclaratorId var) {
-            symtable.remove(var);
+            if (symtable.containsKey(var)) {
+                mutableSymtable().remove(var);
+            }
         }
 
         /**
@@ -1295,32 +1317,31 @@ public class UnusedAssignmentRule extends AbstractJavaRule {
         // Forks must be merged later if control flow merges again, see ::absorb
 
         SpanInfo fork() {
-            return doFork(this, copyTable());
+            return doFork(this, shareTable(), true);
         }
 
         SpanInfo forkEmpty() {
-            return doFork(this, new HashMap<ASTVariableDeclaratorId, VarLocalInfo>());
+            return doFork(this, new HashMap<ASTVariableDeclaratorId, VarLocalInfo>(), false);
         }
 
 
         SpanInfo forkEmptyNonLocal() {
-            return doFork(null, new HashMap<ASTVariableDeclaratorId, VarLocalInfo>());
+            return doFork(null, new HashMap<ASTVariableDeclaratorId, VarLocalInfo>(), false);
         }
 
         SpanInfo forkCapturingNonLocal() {
-            return doFork(null, copyTable());
+            return doFork(null, shareTable(), true);
         }
 
-        private Map<ASTVariableDeclaratorId, VarLocalInfo> copyTable() {
-            HashMap<ASTVariableDeclaratorId, VarLocalInfo> copy = new HashMap<>(this.symtable.size());
-            for (ASTVariableDeclaratorId var : this.symtable.keySet()) {
-                copy.put(var, this.symtable.get(var).copy());
-            }
-            return copy;
+        private Map<ASTVariableDeclaratorId, VarLocalInfo> shareTable() {
+            // both this span and the fork copy it before writing
+            symtableShared = true;
+            return symtable;
         }
 
-        private SpanInfo doFork(/*nullable*/ SpanInfo parent, Map<ASTVariableDeclaratorId, VarLocalInfo> reaching) {
-            return new SpanInfo(parent, this.global, reaching);
+        private SpanInfo doFork(/*nullable*/ SpanInfo parent, Map<ASTVariableDeclaratorId, VarLocalInfo> reaching,
+                                boolean shared) {
+            return new SpanInfo(parent, this.global, reaching, shared);
         }
 
         /** Abrupt completion for return, continue, break. */
@@ -1337,7 +1358,7 @@ public class UnusedAssignmentRule extends AbstractJavaRule {
                 parent = parent.parent;
             }
 
-            this.symtable.clear();
+            clearSymtable();
             return this;
         }
 
@@ -1377,7 +1398,7 @@ public class UnusedAssignmentRule extends AbstractJavaRule {
             }
 
             if (!byMethodCall) {
-                this.symtable.clear(); // following is dead code
+                clearSymtable(); // following is dead code
             }
             return this;
         }
@@ -1398,21 +1419,16 @@ public class UnusedAssignmentRule extends AbstractJavaRule {
                 return this;
             }
 
-            // we don't have to double the capacity since they're normally of the same size
-            // (vars are deleted when exiting a block)
-            Set<ASTVariableDeclaratorId> keysUnion = new HashSet<>(this.symtable.keySet());
-            keysUnion.addAll(other.symtable.keySet());
-
-            for (ASTVariableDeclaratorId var : keysUnion) {
-                VarLocalInfo thisInfo = this.symtable.get(var);
-                VarLocalInfo otherInfo = other.symtable.get(var);
+            // the variables which are only in this table are unchanged
+            for (Map.Entry<ASTVariableDeclaratorId, VarLocalInfo> otherEntry : other.symtable.entrySet()) {
+                VarLocalInfo thisInfo = this.symtable.get(otherEntry.getKey());
+                VarLocalInfo otherInfo = otherEntry.getValue();
                 if (thisInfo == otherInfo) { // NOPMD CompareObjectsWithEqual this is what we want
                     continue;
                 }
-                if (otherInfo != null && thisInfo != null) {
-                    this.symtable.put(var, thisInfo.absorb(otherInfo));
-                } else if (otherInfo != null) {
-                    this.symtable.put(var, otherInfo.copy());
+                VarLocalInfo merged = thisInfo == null ? otherInfo : thisInfo.absorb(otherInfo);
+                if (merged != thisInfo) { // NOPMD CompareObjectsWithEqual this is what we want
+                    mutableSymtable().put(otherEntry.getKey(), merged);
                 }
             }
             return this;
@@ -1467,9 +1483,19 @@ public class UnusedAssignmentRule extends AbstractJavaRule {
         // variable declarator of a foreach loop
         final JavaNode rhs;
 
-        AssignmentEntry(ASTVariableDeclaratorId var, JavaNode rhs) {
+        // the index of this assignment in the global state
+        final int index;
+
+        // the reaching defs right after this assignment
+        final VarLocalInfo asReachingDefs;
+
+        AssignmentEntry(ASTVariableDeclaratorId var, JavaNode rhs, int index) {
             this.var = var;
             this.rhs = rhs;
+            this.index = index;
+            BitSet defs = new BitSet(index + 1);
+            defs.set(index);
+            this.asReachingDefs = new VarLocalInfo(defs);
         }
 
         @Override
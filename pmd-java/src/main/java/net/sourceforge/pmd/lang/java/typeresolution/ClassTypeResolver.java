@@ -104,6 +104,7 @@ import net.sourceforge.pmd.lang.java.ast.JavaParserVisitorAdapter;
 import net.sourceforge.pmd.lang.java.ast.TypeNode;
 import net.sourceforge.pmd.lang.java.symboltable.ClassScope;
 import net.sourceforge.pmd.lang.java.symboltable.VariableNameDeclaration;
+import net.sourceforge.pmd.lang.java.typeresolution.internal.ClassSymbolTable;
 import net.sourceforge.pmd.lang.java.typeresolution.internal.NullableClassLoader;
 import net.sourceforge.pmd.lang.java.typeresolution.typedefinition.JavaTypeDefinition;
 import net.sourceforge.pmd.lang.symboltable.NameOccurrence;
@@ -569,9 +570,12 @@ public class ClassTypeResolver extends JavaParserVisitorAdapter implements Nulla
             accessingClass) {
         while (typeToSearch != null && typeToSearch.getType() != Object.class) {
             try {
-                final Field field = typeToSearch.getType().getDeclaredField(fieldImage);
-                if (isMemberVisibleFromClass(typeToSearch.getType(), field.getModifiers(), accessingClass)) {
-                    return typeToSearch.resolveTypeDefinition(field.getGenericType());
+                // reflection loads the types of all the fields, skip the classes which don't declare this one
+                if (ClassSymbolTable.forClass(typeToSearch.getType()).mayDeclareField(typeToSearch.getType(), fieldImage)) {
+                    final Field field = typeToSearch.getType().getDeclaredField(fieldImage);
+                    if (isMemberVisibleFromClass(typeToSearch.getType(), field.getModifiers(), accessingClass)) {
+                        return typeToSearch.resolveTypeDefinition(field.getGenericType());
+                    }
                 }
             } catch (final NoSuchFieldException ignored) {
                 // swallow
@@ -26,6 +26,7 @@ import net.sourceforge.pmd.lang.java.ast.ASTExpression;
 import net.sourceforge.pmd.lang.java.ast.ASTMemberSelector;
 import net.sourceforge.pmd.lang.java.ast.ASTTypeArguments;
 import net.sourceforge.pmd.lang.java.ast.TypeNode;
+import net.sourceforge.pmd.lang.java.typeresolution.internal.ClassSymbolTable;
 import net.sourceforge.pmd.lang.java.typeresolution.typedefinition.JavaTypeDefinition;
 import net.sourceforge.pmd.lang.java.typeresolution.typeinference.Bound;
 import net.sourceforge.pmd.lang.java.typeresolution.typeinference.Constraint;
@@ -473,11 +474,19 @@ public final class MethodTypeResolution {
 
         Class<?> contextClass = context.getType();
 
+        // reflection loads the types of all the members, don't search types which don't declare the method
+        ClassSymbolTable symbols = ClassSymbolTable.forClass(contextClass);
+        if (!symbols.mayDeclareMethodInHierarchy(contextClass, methodName)) {
+            return result;
+        }
+
         // search the class
         try {
-            for (Method method : contextClass.getDeclaredMethods()) {
-                if (isMethodApplicable(method, methodName, argArity, accessingClass, typeArguments)) {
-                    result.add(getTypeDefOfMethod(context, method, typeArguments));
+            if (symbols.mayDeclareMethod(contextClass, methodName)) {
+                for (Method method : contextClass.getDeclaredMethods()) {
+                    if (isMethodApplicable(method, methodName, argArity, accessingClass, typeArguments)) {
+                        result.add(getTypeDefOfMethod(context, method, typeArguments));
+                    }
                 }
             }
         } catch (final LinkageError e) {
@@ -110,7 +110,12 @@ public final class PMDASMClassLoader extends ClassLoader implements NullableClas
         return !dontBother.containsKey(name);
     }
 
-    public synchronized Map<String, String> getImportedClasses(String name) throws ClassNotFoundException {
+    /**
+     * Returns the simple names of the types referenced by the class file of
+     * the given class and its member classes, mapped to their binary name.
+     * This only reads the class files, the classes are not loaded.
+     */
+    public Map<String, String> getImportedClasses(String name) throws ClassNotFoundException {
         if (dontBother.containsKey(name)) {
             throw new ClassNotFoundException(name);
         }
@@ -0,0 +1,161 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.typeresolution.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * The declarations of a class, as read from its class file with ASM.
+ * Unlike a {@link Class}, reading a symbol doesn't define the class in
+ * the JVM, nor load the types its members refer to. This only describes
+ * the members by name, which is enough to know whether reflecting on the
+ * class may find a given member.
+ *
+ * @see ClassSymbolTable
+ */
+public final class ClassSymbol {
+
+    private static final int ASM_API = Opcodes.ASM9;
+
+    private final String binaryName;
+    private final int modifiers;
+    private final String superclassName;
+    private final List<String> interfaceNames;
+    private final Set<String> methodNames;
+    private final Set<String> fieldNames;
+
+    private ClassSymbol(SymbolVisitor visitor) {
+        this.binaryName = visitor.binaryName;
+        this.modifiers = visitor.modifiers;
+        this.superclassName = visitor.superclassName;
+        this.interfaceNames = Collections.unmodifiableList(visitor.interfaceNames);
+        this.methodNames = Collections.unmodifiableSet(visitor.methodNames);
+        this.fieldNames = Collections.unmodifiableSet(visitor.fieldNames);
+    }
+
+    /**
+     * Reads the symbol of a class file. The method bodies are skipped.
+     *
+     * @param classFile The contents of the class file
+     *
+     * @throws IOException If the class file can't be read
+     */
+    static ClassSymbol read(InputStream classFile) throws IOException {
+        SymbolVisitor visitor = new SymbolVisitor();
+        new ClassReader(classFile).accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return new ClassSymbol(visitor);
+    }
+
+    /**
+     * Returns the binary name of the class, as in {@link Class#getName()}.
+     */
+    public String getBinaryName() {
+        return binaryName;
+    }
+
+    /**
+     * Returns the access flags of the class file.
+     */
+    public int getModifiers() {
+        return modifiers;
+    }
+
+    public boolean isInterface() {
+        return (modifiers & Opcodes.ACC_INTERFACE) != 0;
+    }
+
+    /**
+     * Returns the binary name of the superclass, or null for {@link Object}.
+     * The superclass of an interface is {@link Object}.
+     */
+    public String getSuperclassName() {
+        return superclassName;
+    }
+
+    /**
+     * Returns the binary names of the direct superinterfaces.
+     */
+    public List<String> getInterfaceNames() {
+        return interfaceNames;
+    }
+
+    /**
+     * Returns the names of the methods declared by the class, including
+     * synthetic ones, like {@link Class#getDeclaredMethods()}. Constructors
+     * and static initializers are not included.
+     */
+    public Set<String> getMethodNames() {
+        return methodNames;
+    }
+
+    /**
+     * Returns the names of the fields declared by the class, including
+     * synthetic ones, like {@link Class#getDeclaredFields()}.
+     */
+    public Set<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    @Override
+    public String toString() {
+        return "ClassSymbol[" + binaryName + "]";
+    }
+
+    private static String toBinaryName(String internalName) {
+        return internalName == null ? null : internalName.replace('/', '.');
+    }
+
+    private static final class SymbolVisitor extends ClassVisitor {
+
+        private String binaryName;
+        private int modifiers;
+        private String superclassName;
+        private final List<String> interfaceNames = new ArrayList<>();
+        private final Set<String> methodNames = new HashSet<>();
+        private final Set<String> fieldNames = new HashSet<>();
+
+        SymbolVisitor() {
+            super(ASM_API);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            this.binaryName = toBinaryName(name);
+            this.modifiers = access;
+            this.superclassName = toBinaryName(superName);
+            if (interfaces != null) {
+                for (String itf : interfaces) {
+                    interfaceNames.add(toBinaryName(itf));
+                }
+            }
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            fieldNames.add(name);
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            if (!"<init>".equals(name) && !"<clinit>".equals(name)) {
+                methodNames.add(name);
+            }
+            return null;
+        }
+    }
+}
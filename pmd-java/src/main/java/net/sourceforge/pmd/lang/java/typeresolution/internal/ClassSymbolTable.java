@@ -0,0 +1,182 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java.typeresolution.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sourceforge.pmd.util.ClasspathClassLoader;
+
+/**
+ * Reads and caches the {@linkplain ClassSymbol symbols} of the classes
+ * defined by a class loader. Type resolution uses them to find out whether a
+ * class or its supertypes declare a member with a given name, before
+ * reflecting on it. Reflection on a class links it and loads the types
+ * of all its members, which is what makes type resolution slow and
+ * memory hungry on large auxclasspaths, while most lookups don't find
+ * anything.
+ *
+ * <p>The answers are conservative: if the symbol of a class can't be
+ * read, eg because the class was not loaded from a class file, the class
+ * is assumed to declare the member. The class file of a class of the
+ * auxclasspath is only searched on the auxclasspath, which is searched
+ * before its parent when loading classes, so that the class file of
+ * another class with the same name is never read instead.
+ */
+public final class ClassSymbolTable {
+
+    private static final Logger LOG = Logger.getLogger(ClassSymbolTable.class.getName());
+
+    /** The tables of the class loaders, which only keep weak references to their class loader. */
+    private static final Map<ClassLoader, ClassSymbolTable> TABLES = new WeakHashMap<>();
+
+    /** Marks the classes whose symbol can't be read. */
+    private static final Object NO_SYMBOL = Boolean.FALSE;
+
+    /** Marks the hierarchies which can't be read completely. */
+    private static final Set<String> INCOMPLETE = Collections.unmodifiableSet(new HashSet<String>());
+
+    private final WeakReference<ClassLoader> classLoader;
+    private final ConcurrentMap<String, Object> symbols = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> hierarchyMethodNames = new ConcurrentHashMap<>();
+
+    private ClassSymbolTable(ClassLoader classLoader) {
+        this.classLoader = new WeakReference<>(classLoader);
+    }
+
+    /**
+     * Returns the table of the class loader which defined the given class.
+     */
+    public static ClassSymbolTable forClass(Class<?> clazz) {
+        ClassLoader classLoader = clazz.getClassLoader();
+        if (classLoader == null) {
+            classLoader = ClassLoader.getSystemClassLoader();
+        }
+        return forClassLoader(classLoader);
+    }
+
+    /**
+     * Returns the table of the given class loader.
+     */
+    public static ClassSymbolTable forClassLoader(ClassLoader classLoader) {
+        synchronized (TABLES) {
+            ClassSymbolTable table = TABLES.get(classLoader);
+            if (table == null) {
+                table = new ClassSymbolTable(classLoader);
+                TABLES.put(classLoader, table);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Returns the symbol of the class with the given binary name, or null
+     * if there is no such class file.
+     */
+    public ClassSymbol getSymbol(String binaryName) {
+        Object symbol = symbols.get(binaryName);
+        if (symbol == null) {
+            symbol = readSymbol(binaryName);
+            symbols.putIfAbsent(binaryName, symbol);
+        }
+        return symbol instanceof ClassSymbol ? (ClassSymbol) symbol : null;
+    }
+
+    private Object readSymbol(String binaryName) {
+        final ClassLoader loader = classLoader.get();
+        if (loader == null || binaryName.startsWith("[")) {
+            // array types have no class file
+            return NO_SYMBOL;
+        }
+        final String path = binaryName.replace('.', '/') + ".class";
+        final URL classFile = loader instanceof ClasspathClassLoader
+                ? ((ClasspathClassLoader) loader).findResource(path)
+                : loader.getResource(path);
+        if (classFile == null) {
+            return NO_SYMBOL;
+        }
+        try (InputStream in = classFile.openStream()) {
+            return ClassSymbol.read(in);
+        } catch (IOException | RuntimeException e) {
+            // ASM throws IllegalArgumentException on unsupported class files
+            LOG.log(Level.FINE, "Could not read the class file of " + binaryName, e);
+            return NO_SYMBOL;
+        }
+    }
+
+    /**
+     * Returns false if the given class certainly doesn't declare a method
+     * with the given name.
+     */
+    public boolean mayDeclareMethod(Class<?> clazz, String methodName) {
+        ClassSymbol symbol = getSymbol(clazz.getName());
+        return symbol == null || symbol.getMethodNames().contains(methodName);
+    }
+
+    /**
+     * Returns false if the given class certainly doesn't declare a field
+     * with the given name.
+     */
+    public boolean mayDeclareField(Class<?> clazz, String fieldName) {
+        ClassSymbol symbol = getSymbol(clazz.getName());
+        return symbol == null || symbol.getFieldNames().contains(fieldName);
+    }
+
+    /**
+     * Returns false if neither the given class nor any of its supertypes
+     * declares a method with the given name.
+     */
+    public boolean mayDeclareMethodInHierarchy(Class<?> clazz, String methodName) {
+        Set<String> names = getHierarchyMethodNames(clazz);
+        return names == INCOMPLETE || names.contains(methodName);
+    }
+
+    private Set<String> getHierarchyMethodNames(Class<?> clazz) {
+        Set<String> names = hierarchyMethodNames.get(clazz.getName());
+        if (names == null) {
+            names = collectHierarchyMethodNames(clazz);
+            hierarchyMethodNames.putIfAbsent(clazz.getName(), names);
+        }
+        return names;
+    }
+
+    private Set<String> collectHierarchyMethodNames(Class<?> clazz) {
+        ClassSymbol symbol = getSymbol(clazz.getName());
+        if (symbol == null) {
+            return INCOMPLETE;
+        }
+        // the supertypes are loaded with the class, and may be defined by other class loaders
+        Set<String> names = new HashSet<>(symbol.getMethodNames());
+        Class<?> superclass = clazz.getSuperclass();
+        if (superclass != null && !addAll(names, forClass(superclass).getHierarchyMethodNames(superclass))) {
+            return INCOMPLETE;
+        }
+        for (Class<?> superinterface : clazz.getInterfaces()) {
+            if (!addAll(names, forClass(superinterface).getHierarchyMethodNames(superinterface))) {
+                return INCOMPLETE;
+            }
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    private static boolean addAll(Set<String> names, Set<String> superNames) {
+        if (superNames == INCOMPLETE) {
+            return false;
+        }
+        names.addAll(superNames);
+        return true;
+    }
+}
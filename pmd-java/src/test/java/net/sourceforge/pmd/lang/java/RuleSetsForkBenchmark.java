@@ -0,0 +1,128 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.lang.java;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSetLoader;
+import net.sourceforge.pmd.RuleSets;
+
+/**
+ * Compares the copies of the rulesets which are made for each analysis thread:
+ * the deep copy of {@link RuleSets#RuleSets(RuleSets)}, which was used before,
+ * and {@link RuleSets#forkForThread()}, which shares the thread-safe rules.
+ * Both copies register their rules in their own rule chain, which initializes
+ * the queries of the copied XPath rules.
+ *
+ * <p>The heap retained by each copy is measured with the {@link MemoryMXBean},
+ * by keeping a number of copies alive, as many as the analysis threads of a
+ * large machine. The time to make a copy is measured too. The results are logged.
+ *
+ * <p>This is not a test, it is run by hand with the test classpath of this
+ * module, eg from the IDE. The arguments are the rulesets to copy, by default
+ * the quickstart ruleset.
+ */
+public final class RuleSetsForkBenchmark {
+
+    private static final Logger LOG = Logger.getLogger(RuleSetsForkBenchmark.class.getName());
+
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int ITERATIONS = 500;
+    private static final int RETAINED_COPIES = 64;
+
+    private RuleSetsForkBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        List<String> paths = args.length > 0 ? Arrays.asList(args)
+                                             : Collections.singletonList("rulesets/java/quickstart.xml");
+        RuleSets ruleSets = new RuleSets(new RuleSetLoader().loadFromResources(paths));
+
+        RuleSets fork = ruleSets.forkForThread();
+        LOG.info(String.format(Locale.ROOT, "%d rules, %d shared by the fork",
+                               ruleSets.ruleCount(), countShared(ruleSets, fork)));
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            copy(ruleSets);
+            fork(ruleSets);
+        }
+        long copyNanos = 0;
+        long forkNanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            copyNanos += copy(ruleSets);
+            forkNanos += fork(ruleSets);
+        }
+        LOG.info(String.format(Locale.ROOT, "time per copy - deep copy: %.3f ms, fork: %.3f ms",
+                               copyNanos / 1e6 / ITERATIONS, forkNanos / 1e6 / ITERATIONS));
+
+        LOG.info(String.format(Locale.ROOT, "retained heap per copy - deep copy: %d KiB, fork: %d KiB",
+                               retainedBytes(ruleSets, false) / 1024, retainedBytes(ruleSets, true) / 1024));
+    }
+
+    private static long copy(RuleSets ruleSets) {
+        long start = System.nanoTime();
+        new RuleSets(ruleSets);
+        return System.nanoTime() - start;
+    }
+
+    private static long fork(RuleSets ruleSets) {
+        long start = System.nanoTime();
+        ruleSets.forkForThread();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Returns the average heap retained by a copy of the rulesets, which
+     * is the difference of the used heap before and after making several
+     * copies, each measured after a garbage collection.
+     */
+    private static long retainedBytes(RuleSets ruleSets, boolean fork) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        List<RuleSets> copies = new ArrayList<>(RETAINED_COPIES);
+        long before = usedHeapAfterGc(memory);
+        for (int i = 0; i < RETAINED_COPIES; i++) {
+            copies.add(fork ? ruleSets.forkForThread() : new RuleSets(ruleSets));
+        }
+        long after = usedHeapAfterGc(memory);
+        // the copies are used after the measure, so they're reachable until then
+        copies.clear();
+        return (after - before) / RETAINED_COPIES;
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        // several collections, as one may not collect everything unreachable
+        for (int i = 0; i < 3; i++) {
+            memory.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static int countShared(RuleSets original, RuleSets fork) {
+        Set<Rule> originalRules = Collections.newSetFromMap(new IdentityHashMap<Rule, Boolean>());
+        for (RuleSet ruleSet : original.getAllRuleSets()) {
+            originalRules.addAll(ruleSet.getRules());
+        }
+        int shared = 0;
+        for (RuleSet ruleSet : fork.getAllRuleSets()) {
+            for (Rule rule : ruleSet.getRules()) {
+                if (originalRules.contains(rule)) {
+                    shared++;
+                }
+            }
+        }
+        return shared;
+    }
+}
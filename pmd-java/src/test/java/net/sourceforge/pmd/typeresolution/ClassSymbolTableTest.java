@@ -0,0 +1,106 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.typeresolution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import net.sourceforge.pmd.lang.java.typeresolution.internal.ClassSymbol;
+import net.sourceforge.pmd.lang.java.typeresolution.internal.ClassSymbolTable;
+import net.sourceforge.pmd.util.ClasspathClassLoader;
+
+public class ClassSymbolTableTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ClassSymbolTable table = ClassSymbolTable.forClassLoader(getClass().getClassLoader());
+
+    @Test
+    public void testSymbolMatchesClass() {
+        ClassSymbol symbol = table.getSymbol(ArrayList.class.getName());
+        assertSame(symbol, table.getSymbol(ArrayList.class.getName()));
+        assertEquals(ArrayList.class.getName(), symbol.getBinaryName());
+        assertEquals(AbstractList.class.getName(), symbol.getSuperclassName());
+        assertTrue(symbol.getInterfaceNames().contains(List.class.getName()));
+        assertFalse(symbol.isInterface());
+        assertTrue(symbol.getMethodNames().contains("add"));
+        assertFalse(symbol.getMethodNames().contains("<init>"));
+    }
+
+    @Test
+    public void testMemberLookups() {
+        assertTrue(table.mayDeclareMethod(ArrayList.class, "add"));
+        assertFalse(table.mayDeclareMethod(ArrayList.class, "wait"));
+        assertTrue(table.mayDeclareMethodInHierarchy(ArrayList.class, "wait"));
+        assertFalse(table.mayDeclareMethodInHierarchy(ArrayList.class, "noSuchMethod"));
+        assertTrue(table.mayDeclareField(ArrayList.class, "size"));
+        assertFalse(table.mayDeclareField(ArrayList.class, "noSuchField"));
+    }
+
+    @Test
+    public void testClassesWithoutClassFile() {
+        assertNull(table.getSymbol("that.clazz.doesnot.Exist"));
+        assertNull(table.getSymbol(int[].class.getName()));
+        assertTrue(table.mayDeclareMethod(int[].class, "clone"));
+        assertTrue(table.mayDeclareMethodInHierarchy(int.class, "anything"));
+    }
+
+    @Test
+    public void testAuxclasspathIsSearchedFirst() throws Exception {
+        String name = Shadowed.class.getName();
+        File classFile = new File(folder.getRoot(), name.replace('.', '/') + ".class");
+        classFile.getParentFile().mkdirs();
+        Files.write(classFile.toPath(), classWithMethod(name, "fromAuxclasspath"));
+
+        try (ClasspathClassLoader loader = new ClasspathClassLoader(Collections.singletonList(folder.getRoot()),
+                getClass().getClassLoader())) {
+            Class<?> shadowing = loader.loadClass(name);
+            ClassSymbolTable auxTable = ClassSymbolTable.forClass(shadowing);
+            assertTrue(auxTable.mayDeclareMethod(shadowing, "fromAuxclasspath"));
+            assertFalse(auxTable.mayDeclareMethod(shadowing, "fromParent"));
+            assertTrue(auxTable.mayDeclareMethodInHierarchy(shadowing, "fromAuxclasspath"));
+            assertTrue(auxTable.mayDeclareMethodInHierarchy(shadowing, "wait"));
+
+            // not on the auxclasspath, the class file of the parent isn't read instead
+            assertNull(auxTable.getSymbol(ArrayList.class.getName()));
+        }
+    }
+
+    private static byte[] classWithMethod(String binaryName, String methodName) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, binaryName.replace('.', '/'), null, "java/lang/Object", null);
+        MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, methodName, "()V", null, null);
+        method.visitCode();
+        method.visitInsn(Opcodes.RETURN);
+        method.visitMaxs(0, 1);
+        method.visitEnd();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    public static class Shadowed {
+        public void fromParent() {
+            // the class file on the auxclasspath declares another method
+        }
+    }
+}
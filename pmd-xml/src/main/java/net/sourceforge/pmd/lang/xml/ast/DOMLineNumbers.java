@@ -4,6 +4,8 @@
 
 package net.sourceforge.pmd.lang.xml.ast;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -23,6 +25,7 @@ class DOMLineNumbers {
     private final Document document;
     private String xmlString;
     private SourceCodePositioner sourceCodePositioner;
+    private List<String[]> declaredEntities;
 
     DOMLineNumbers(Document document, String xmlString) {
         this.document = document;
@@ -110,16 +113,32 @@ class DOMLineNumbers {
 
     private String unexpandEntities(Node n, String te, boolean withQuotes) {
         String result = te;
-        DocumentType doctype = n.getOwnerDocument().getDoctype();
         // implicit entities
-        result = result.replaceAll(Matcher.quoteReplacement("&"), "&amp;");
-        result = result.replaceAll(Matcher.quoteReplacement("<"), "&lt;");
-        result = result.replaceAll(Matcher.quoteReplacement(">"), "&gt;");
+        result = result.replace("&", "&amp;");
+        result = result.replace("<", "&lt;");
+        result = result.replace(">", "&gt;");
         if (withQuotes) {
-            result = result.replaceAll(Matcher.quoteReplacement("\""), "&quot;");
-            result = result.replaceAll(Matcher.quoteReplacement("'"), "&apos;");
+            result = result.replace("\"", "&quot;");
+            result = result.replace("'", "&apos;");
         }
 
+        for (String[] entity : getDeclaredEntities(n.getOwnerDocument())) {
+            result = result.replace(entity[0], entity[1]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the entities declared by the doctype, as pairs of
+     * replacement text and entity reference. They are the same for
+     * every text node, and are only looked up once.
+     */
+    private List<String[]> getDeclaredEntities(Document ownerDocument) {
+        if (declaredEntities != null) {
+            return declaredEntities;
+        }
+        declaredEntities = new ArrayList<>();
+        DocumentType doctype = ownerDocument.getDoctype();
         if (doctype != null) {
             NamedNodeMap entities = doctype.getEntities();
             String internalSubset = doctype.getInternalSubset();
@@ -131,19 +150,19 @@ class DOMLineNumbers {
                 String entityName = item.getNodeName();
                 Node firstChild = item.getFirstChild();
                 if (firstChild != null) {
-                    result = result.replaceAll(Matcher.quoteReplacement(firstChild.getNodeValue()),
-                            "&" + entityName + ";");
+                    declaredEntities.add(new String[] {firstChild.getNodeValue(), "&" + entityName + ";"});
                 } else {
                     Matcher m = Pattern
-                            .compile(Matcher.quoteReplacement("<!ENTITY " + entityName + " ") + "[']([^']*)[']>")
+                            .compile(Pattern.quote("<!ENTITY " + entityName + " ") + "[']([^']*)[']>")
                             .matcher(internalSubset);
-                    if (m.find()) {
-                        result = result.replaceAll(Matcher.quoteReplacement(m.group(1)), "&" + entityName + ";");
+                    // an empty replacement text would be replaced between every character
+                    if (m.find() && !m.group(1).isEmpty()) {
+                        declaredEntities.add(new String[] {m.group(1), "&" + entityName + ";"});
                     }
                 }
             }
         }
-        return result;
+        return declaredEntities;
     }
 
     private void setBeginLocation(Node n, int index) {
@@ -25,6 +25,18 @@ import net.sourceforge.pmd.lang.xml.XmlParserOptions;
 
 
 public class XmlParser {
+
+    // Looking up the factory implementation and creating a new builder cost
+    // more than parsing most files, so each thread reuses its builders, one
+    // per configuration. They're reset before each parse.
+    private static final ThreadLocal<Map<Integer, DocumentBuilder>> DOCUMENT_BUILDERS =
+        new ThreadLocal<Map<Integer, DocumentBuilder>>() {
+            @Override
+            protected Map<Integer, DocumentBuilder> initialValue() {
+                return new HashMap<>();
+            }
+        };
+
     protected final XmlParserOptions parserOptions;
     protected Map<org.w3c.dom.Node, XmlNode> nodeCache = new HashMap<>();
 
@@ -39,17 +51,7 @@ public class XmlParser {
         try {
             String xmlData = IOUtils.toString(reader);
 
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(parserOptions.isNamespaceAware());
-            dbf.setValidating(parserOptions.isValidating());
-            dbf.setIgnoringComments(parserOptions.isIgnoringComments());
-            dbf.setIgnoringElementContentWhitespace(parserOptions.isIgnoringElementContentWhitespace());
-            dbf.setExpandEntityReferences(parserOptions.isExpandEntityReferences());
-            dbf.setCoalescing(parserOptions.isCoalescing());
-            dbf.setXIncludeAware(parserOptions.isXincludeAware());
-            dbf.setFeature("http://xml.org/sax/features/external-general-entities", false);
-            dbf.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-            DocumentBuilder documentBuilder = dbf.newDocumentBuilder();
+            DocumentBuilder documentBuilder = getDocumentBuilder();
             documentBuilder.setEntityResolver(parserOptions.getEntityResolver());
             Document document = documentBuilder.parse(new InputSource(new StringReader(xmlData)));
             DOMLineNumbers lineNumbers = new DOMLineNumbers(document, xmlData);
@@ -61,6 +63,45 @@ public class XmlParser {
     }
 
 
+    private DocumentBuilder getDocumentBuilder() throws ParserConfigurationException {
+        final int configuration = (parserOptions.isNamespaceAware() ? 1 : 0)
+            | (parserOptions.isValidating() ? 1 << 1 : 0)
+            | (parserOptions.isIgnoringComments() ? 1 << 2 : 0)
+            | (parserOptions.isIgnoringElementContentWhitespace() ? 1 << 3 : 0)
+            | (parserOptions.isExpandEntityReferences() ? 1 << 4 : 0)
+            | (parserOptions.isCoalescing() ? 1 << 5 : 0)
+            | (parserOptions.isXincludeAware() ? 1 << 6 : 0);
+
+        final Map<Integer, DocumentBuilder> builders = DOCUMENT_BUILDERS.get();
+        DocumentBuilder documentBuilder = builders.get(configuration);
+        if (documentBuilder != null) {
+            try {
+                documentBuilder.reset();
+                return documentBuilder;
+            } catch (UnsupportedOperationException e) {
+                // this implementation can't be reused, drop it but remember that
+                builders.put(configuration, null);
+            }
+        }
+
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(parserOptions.isNamespaceAware());
+        dbf.setValidating(parserOptions.isValidating());
+        dbf.setIgnoringComments(parserOptions.isIgnoringComments());
+        dbf.setIgnoringElementContentWhitespace(parserOptions.isIgnoringElementContentWhitespace());
+        dbf.setExpandEntityReferences(parserOptions.isExpandEntityReferences());
+        dbf.setCoalescing(parserOptions.isCoalescing());
+        dbf.setXIncludeAware(parserOptions.isXincludeAware());
+        dbf.setFeature("http://xml.org/sax/features/external-general-entities", false);
+        dbf.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        documentBuilder = dbf.newDocumentBuilder();
+        if (!builders.containsKey(configuration)) {
+            builders.put(configuration, documentBuilder);
+        }
+        return documentBuilder;
+    }
+
+
     public XmlNode parse(Reader reader) {
         Document document = parseDocument(reader);
         XmlNode root = new RootXmlNode(this, document);
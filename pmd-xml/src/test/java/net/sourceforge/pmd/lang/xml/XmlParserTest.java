@@ -340,6 +340,17 @@ public class XmlParserTest {
         assertLineNumbers(document.getChild(0), 1, 22, 1, 29);
     }
 
+    @Test
+    public void testLineNumbersWithEntityContainingRegexCharacters() {
+        String xml = "<!DOCTYPE r [<!ENTITY a 'x.y (z)'>]>\n<r>text &a; <e/></r>";
+        Node document = XML.parse(xml);
+
+        Node root = document.getChild(1);
+        assertTextNode(root.getChild(0), "text x.y (z) ");
+        assertLineNumbers(root.getChild(0), 2, 4, 2, 12);
+        assertLineNumbers(root.getChild(1), 2, 13, 2, 16);
+    }
+
     @Test
     public void testBug1518() throws Exception {
         XML.parseResource("parsertests/bug1518.xml");